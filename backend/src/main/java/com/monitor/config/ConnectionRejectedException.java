@@ -0,0 +1,15 @@
+package com.monitor.config;
+
+public class ConnectionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ConnectionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
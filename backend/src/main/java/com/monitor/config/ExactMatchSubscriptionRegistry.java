@@ -0,0 +1,122 @@
+package com.monitor.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Subscription registry keyed by exact destination. Publishing to
+ * {@code /topic/device/{id}} is a single map lookup that returns a prebuilt,
+ * read-only session → subscription map, so the cost no longer depends on how
+ * many other destinations have subscribers. Subscriptions that contain a
+ * pattern ({@code *} or {@code {var}}) still work but are matched one by one
+ * on every publish; the dashboard does not use them.
+ */
+public class ExactMatchSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final MultiValueMap<String, String> NONE =
+            CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>());
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    // destination -> sessionId -> subscriptionIds; values are replaced, never mutated.
+    private final Map<String, MultiValueMap<String, String>> byDestination = new ConcurrentHashMap<>();
+
+    // sessionId -> subscriptionId -> destination, used to unsubscribe and clean up on disconnect.
+    private final Map<String, Map<String, String>> bySession = new ConcurrentHashMap<>();
+
+    private final List<PatternSubscription> patterns = new CopyOnWriteArrayList<>();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination,
+            Message<?> message) {
+        bySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+
+        if (pathMatcher.isPattern(destination)) {
+            patterns.add(new PatternSubscription(sessionId, subscriptionId, destination));
+            return;
+        }
+
+        byDestination.compute(destination, (key, current) -> {
+            LinkedMultiValueMap<String, String> updated = copy(current);
+            updated.add(sessionId, subscriptionId);
+            return CollectionUtils.unmodifiableMultiValueMap(updated);
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, String> subscriptions = bySession.get(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+
+        String destination = subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            remove(sessionId, subscriptionId, destination);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> subscriptions = bySession.remove(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+
+        subscriptions.forEach((subscriptionId, destination) -> remove(sessionId, subscriptionId, destination));
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        MultiValueMap<String, String> exact = byDestination.getOrDefault(destination, NONE);
+        if (patterns.isEmpty()) {
+            return exact;
+        }
+
+        MultiValueMap<String, String> result = copy(exact);
+        for (PatternSubscription subscription : patterns) {
+            if (pathMatcher.match(subscription.pattern(), destination)) {
+                result.add(subscription.sessionId(), subscription.subscriptionId());
+            }
+        }
+        return result;
+    }
+
+    private void remove(String sessionId, String subscriptionId, String destination) {
+        if (pathMatcher.isPattern(destination)) {
+            patterns.remove(new PatternSubscription(sessionId, subscriptionId, destination));
+            return;
+        }
+
+        byDestination.computeIfPresent(destination, (key, current) -> {
+            LinkedMultiValueMap<String, String> updated = copy(current);
+            List<String> ids = updated.get(sessionId);
+            if (ids != null && ids.remove(subscriptionId) && ids.isEmpty()) {
+                updated.remove(sessionId);
+            }
+            return updated.isEmpty() ? null : CollectionUtils.unmodifiableMultiValueMap(updated);
+        });
+    }
+
+    private static LinkedMultiValueMap<String, String> copy(MultiValueMap<String, String> current) {
+        LinkedMultiValueMap<String, String> copy = new LinkedMultiValueMap<>();
+        if (current != null) {
+            current.forEach((sessionId, ids) -> copy.put(sessionId, new ArrayList<>(ids)));
+        }
+        return copy;
+    }
+
+    private record PatternSubscription(String sessionId, String subscriptionId, String pattern) {
+    }
+}
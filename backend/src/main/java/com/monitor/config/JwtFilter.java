@@ -34,9 +34,8 @@ public class JwtFilter extends OncePerRequestFilter {
 
             // Only validate and reject if token is present
             // Skip validation for excluded paths (already checked in shouldNotFilter)
-            if (jwtService.validateToken(token)) {
-                UUID companyId = jwtService.extractCompanyId(token);
-
+            UUID companyId = jwtService.resolveCompanyId(token);
+            if (companyId != null) {
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         companyId,
                         null,
@@ -1,45 +1,66 @@
 package com.monitor.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
 
+/**
+ * Per-client, per-route sliding-window rate limit. Counters are keyed on the
+ * client address and the route template ({@code /devices/{id}/metrics}, not
+ * the raw URI), live in a bounded cache that evicts keys idle for two windows,
+ * and are updated with a CAS instead of a lock. {@code /agent/**} and
+ * {@code /auth/**} have their own budgets.
+ */
 @Component
 public class RateLimitFilter extends OncePerRequestFilter {
 
-    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final int MAX_TEMPLATE_SEGMENTS = 6;
 
-    @Value("${app.rateLimit.windowSeconds:60}")
-    private long windowSeconds;
+    private final long windowMillis;
+    private final int maxRequests;
+    private final int agentMaxRequests;
+    private final int authMaxRequests;
+    private final Cache<String, SlidingWindowCounter> counters;
 
-    @Value("${app.rateLimit.maxRequests:120}")
-    private int maxRequests;
+    public RateLimitFilter(
+            @Value("${app.rateLimit.windowSeconds:60}") long windowSeconds,
+            @Value("${app.rateLimit.maxRequests:120}") int maxRequests,
+            @Value("${app.rateLimit.agentMaxRequests:1200}") int agentMaxRequests,
+            @Value("${app.rateLimit.authMaxRequests:120}") int authMaxRequests,
+            @Value("${app.rateLimit.maxKeys:100000}") long maxKeys) {
+        this.windowMillis = Math.max(windowSeconds, 1) * 1000;
+        this.maxRequests = maxRequests;
+        this.agentMaxRequests = agentMaxRequests;
+        this.authMaxRequests = authMaxRequests;
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(Math.max(maxKeys, 1))
+                .expireAfterAccess(Duration.ofMillis(windowMillis * 2))
+                .build();
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
             HttpServletResponse response,
             FilterChain filterChain) throws ServletException, IOException {
-        String key = buildKey(request);
+        String route = routeTemplate(request.getRequestURI());
+        String key = clientAddress(request) + "|" + route;
         long now = System.currentTimeMillis();
 
-        Counter counter = counters.compute(key, (k, existing) -> {
-            if (existing == null || now - existing.windowStartMs >= windowSeconds * 1000) {
-                return new Counter(now, 1);
-            }
-            existing.count++;
-            return existing;
-        });
-
-        if (counter.count > maxRequests) {
+        SlidingWindowCounter counter = counters.get(key, k -> new SlidingWindowCounter());
+        if (!counter.tryAcquire(now, windowMillis, limitFor(route))) {
+            long retryAfterSeconds = Math.max((windowMillis - now % windowMillis + 999) / 1000, 1);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
             return;
         }
@@ -47,24 +68,84 @@ public class RateLimitFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
-    private String buildKey(HttpServletRequest request) {
+    private int limitFor(String route) {
+        if (route.startsWith("/agent/")) {
+            return agentMaxRequests;
+        }
+        if (route.startsWith("/auth/")) {
+            return authMaxRequests;
+        }
+        return maxRequests;
+    }
+
+    private String clientAddress(HttpServletRequest request) {
         String ip = request.getHeader("X-Forwarded-For");
         if (ip == null || ip.isBlank()) {
-            ip = request.getRemoteAddr();
-        } else {
-            ip = ip.split(",")[0].trim();
+            return request.getRemoteAddr();
+        }
+
+        int comma = ip.indexOf(',');
+        return (comma < 0 ? ip : ip.substring(0, comma)).trim();
+    }
+
+    /**
+     * Replaces id-like path segments (UUIDs and numbers) with {@code {id}} and
+     * collapses SockJS transport URLs, so the number of keys per client is
+     * bounded by the number of routes rather than devices or sessions.
+     */
+    static String routeTemplate(String uri) {
+        if (uri == null || uri.isEmpty()) {
+            return "/";
+        }
+        if (uri.equals("/ws") || uri.startsWith("/ws/")) {
+            return "/ws/**";
+        }
+
+        StringBuilder template = new StringBuilder(uri.length());
+        int segments = 0;
+        int start = uri.charAt(0) == '/' ? 1 : 0;
+        while (start <= uri.length()) {
+            int end = uri.indexOf('/', start);
+            if (end < 0) {
+                end = uri.length();
+            }
+
+            if (end > start) {
+                if (++segments > MAX_TEMPLATE_SEGMENTS) {
+                    template.append("/**");
+                    break;
+                }
+                template.append('/');
+                if (isIdentifier(uri, start, end)) {
+                    template.append("{id}");
+                } else {
+                    template.append(uri, start, end);
+                }
+            }
+            start = end + 1;
         }
 
-        return ip + "|" + request.getRequestURI();
+        return template.length() == 0 ? "/" : template.toString();
     }
 
-    private static class Counter {
-        private final long windowStartMs;
-        private int count;
+    private static boolean isIdentifier(String uri, int start, int end) {
+        int length = end - start;
+        if (length == 36 && uri.charAt(start + 8) == '-' && uri.charAt(start + 13) == '-'
+                && uri.charAt(start + 18) == '-' && uri.charAt(start + 23) == '-') {
+            for (int i = start; i < end; i++) {
+                char c = uri.charAt(i);
+                if (c != '-' && Character.digit(c, 16) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
 
-        private Counter(long windowStartMs, int count) {
-            this.windowStartMs = windowStartMs;
-            this.count = count;
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(uri.charAt(i))) {
+                return false;
+            }
         }
+        return true;
     }
 }
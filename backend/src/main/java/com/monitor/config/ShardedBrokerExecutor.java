@@ -0,0 +1,130 @@
+package com.monitor.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for the broker channel that runs every publish on one of N
+ * single-threaded shards chosen by destination hash. Fan-out for different
+ * devices proceeds in parallel while messages for one destination keep their
+ * order. Each shard reports its dispatch latency (queue wait plus fan-out) as
+ * {@code monitor.broker.dispatch} and its backlog as
+ * {@code monitor.broker.queue.depth}. When a shard's queue is full the
+ * publishing thread waits up to {@code brokerOfferTimeoutMs} for room; after
+ * that the publish is rejected and counted as {@code monitor.broker.rejected}.
+ * It is never run on the publishing thread, where it could overtake messages
+ * still queued for the same destination.
+ */
+@Component
+@ConditionalOnProperty(name = "app.websocket.broker", havingValue = "sharded")
+public class ShardedBrokerExecutor implements Executor {
+
+    private final ThreadPoolExecutor[] shards;
+    private final Timer[] dispatchLatency;
+    private final Counter rejectedCounter;
+
+    public ShardedBrokerExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${app.websocket.brokerShards:4}") int shardCount,
+            @Value("${app.websocket.brokerQueueCapacity:10000}") int queueCapacity,
+            @Value("${app.websocket.brokerOfferTimeoutMs:1000}") long offerTimeoutMs) {
+        int count = Math.max(shardCount, 1);
+        this.shards = new ThreadPoolExecutor[count];
+        this.dispatchLatency = new Timer[count];
+        this.rejectedCounter = Counter.builder("monitor.broker.rejected")
+                .description("Publishes rejected because their broker shard stayed full")
+                .register(meterRegistry);
+        RejectedExecutionHandler waitForRoom = waitForRoom(Math.max(offerTimeoutMs, 0));
+
+        for (int i = 0; i < count; i++) {
+            String name = "broker-shard-" + i;
+            ThreadPoolExecutor shard = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    waitForRoom);
+            // The shard thread must exist before waitForRoom queues behind the executor's back.
+            shard.prestartAllCoreThreads();
+            shards[i] = shard;
+
+            String shardTag = String.valueOf(i);
+            dispatchLatency[i] = Timer.builder("monitor.broker.dispatch")
+                    .description("Time from publish to fan-out completion on a broker shard")
+                    .tag("shard", shardTag)
+                    .register(meterRegistry);
+            Gauge.builder("monitor.broker.queue.depth", shard, s -> s.getQueue().size())
+                    .description("Publishes waiting on a broker shard")
+                    .tag("shard", shardTag)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        int index = shardFor(task);
+        Timer timer = dispatchLatency[index];
+        long enqueuedAt = System.nanoTime();
+
+        shards[index].execute(() -> {
+            try {
+                task.run();
+            } finally {
+                timer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    private RejectedExecutionHandler waitForRoom(long offerTimeoutMs) {
+        return (task, shard) -> {
+            boolean queued = false;
+            if (!shard.isShutdown()) {
+                try {
+                    queued = shard.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (!queued) {
+                rejectedCounter.increment();
+                throw new RejectedExecutionException("Broker shard queue is full");
+            }
+        };
+    }
+
+    private int shardFor(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handling)) {
+            return 0;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(handling.getMessage().getHeaders());
+        if (destination == null) {
+            return 0;
+        }
+        return Math.floorMod(destination.hashCode(), shards.length);
+    }
+}
@@ -0,0 +1,25 @@
+package com.monitor.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Installs {@link ExactMatchSubscriptionRegistry} into the simple broker when
+ * {@code app.websocket.broker=sharded}. The broker handler itself, with its
+ * CONNECT, heartbeat and session handling, stays Spring's.
+ */
+@Component
+@ConditionalOnProperty(name = "app.websocket.broker", havingValue = "sharded")
+public class ShardedBrokerPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof SimpleBrokerMessageHandler handler) {
+            handler.setSubscriptionRegistry(new ExactMatchSubscriptionRegistry());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,49 @@
+package com.monitor.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding-window request counter held in a single {@link AtomicLong}: the
+ * current window index, the previous window's count and the current window's
+ * count are packed into one word and advanced with a CAS loop. The estimate
+ * weights the previous window by how much of it still overlaps the sliding
+ * window, which smooths the burst a fixed window allows at its boundary.
+ */
+final class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << (64 - 2 * COUNT_BITS)) - 1;
+
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * Counts the request and returns {@code true} if it fits in the limit;
+     * rejected requests are not counted.
+     */
+    boolean tryAcquire(long nowMillis, long windowMillis, int limit) {
+        long window = (nowMillis / windowMillis) & WINDOW_MASK;
+        double remaining = 1.0 - (nowMillis % windowMillis) / (double) windowMillis;
+
+        while (true) {
+            long current = state.get();
+            long storedWindow = current >>> (2 * COUNT_BITS);
+            long previous = (current >>> COUNT_BITS) & COUNT_MASK;
+            long count = current & COUNT_MASK;
+
+            if (storedWindow != window) {
+                previous = ((window - storedWindow) & WINDOW_MASK) == 1 ? count : 0;
+                count = 0;
+            }
+
+            if (previous * remaining + count >= limit) {
+                return false;
+            }
+
+            long next = (window << (2 * COUNT_BITS)) | (previous << COUNT_BITS) | Math.min(count + 1, COUNT_MASK);
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.monitor.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.StompSubProtocolErrorHandler;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Adds a {@code retry-after} header to the ERROR frame sent when a CONNECT is
+ * turned away by {@link WebSocketAdmissionController}. Every other error keeps
+ * Spring's default frame.
+ */
+@Component
+public class StompAdmissionErrorHandler extends StompSubProtocolErrorHandler {
+
+    @Override
+    public Message<byte[]> handleClientMessageProcessingError(Message<byte[]> clientMessage, Throwable ex) {
+        ConnectionRejectedException rejected = findRejection(ex);
+        if (rejected == null) {
+            return super.handleClientMessageProcessingError(clientMessage, ex);
+        }
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
+        accessor.setMessage(rejected.getMessage());
+        accessor.setNativeHeader("retry-after", String.valueOf(rejected.getRetryAfterSeconds()));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(rejected.getMessage().getBytes(StandardCharsets.UTF_8),
+                accessor.getMessageHeaders());
+    }
+
+    private static ConnectionRejectedException findRejection(Throwable ex) {
+        for (Throwable current = ex; current != null; current = current.getCause()) {
+            if (current instanceof ConnectionRejectedException rejected) {
+                return rejected;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.monitor.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends a STOMP ERROR frame straight to one session. Exceptions thrown from
+ * {@code @MessageMapping} handlers never reach the client on their own, so
+ * handlers that need the agent to back off use this instead.
+ */
+@Component
+public class StompErrorSender {
+
+    private final MessageChannel clientOutboundChannel;
+
+    public StompErrorSender(@Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    public void sendError(String sessionId, String message, long retryAfterSeconds) {
+        if (sessionId == null) {
+            return;
+        }
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
+        accessor.setSessionId(sessionId);
+        accessor.setMessage(message);
+        accessor.setNativeHeader("retry-after", String.valueOf(retryAfterSeconds));
+        accessor.setLeaveMutable(true);
+
+        clientOutboundChannel.send(MessageBuilder.createMessage(
+                message.getBytes(StandardCharsets.UTF_8),
+                accessor.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.monitor.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps how many {@code /ws} handshakes and STOMP CONNECTs are processed at
+ * once. A caller that finds every slot busy waits up to
+ * {@code queueTimeoutMs} in a bounded queue; beyond that it is rejected with a
+ * retry-after hint that is randomised per caller, so agents that were dropped
+ * together by a deploy do not all come back in the same second.
+ */
+@Component
+public class WebSocketAdmissionController {
+
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int maxQueued;
+    private final long queueTimeoutMs;
+    private final long retryAfterSeconds;
+    private final long retryJitterSeconds;
+    private final Counter admittedCounter;
+    private final Counter queuedCounter;
+    private final Counter rejectedCounter;
+
+    public WebSocketAdmissionController(
+            MeterRegistry meterRegistry,
+            @Value("${app.websocket.admission.maxConcurrent:64}") int maxConcurrent,
+            @Value("${app.websocket.admission.maxQueued:256}") int maxQueued,
+            @Value("${app.websocket.admission.queueTimeoutMs:1000}") long queueTimeoutMs,
+            @Value("${app.websocket.admission.retryAfterSeconds:2}") long retryAfterSeconds,
+            @Value("${app.websocket.admission.retryJitterSeconds:8}") long retryJitterSeconds) {
+        this.permits = new Semaphore(Math.max(maxConcurrent, 1));
+        this.maxQueued = Math.max(maxQueued, 0);
+        this.queueTimeoutMs = Math.max(queueTimeoutMs, 0);
+        this.retryAfterSeconds = Math.max(retryAfterSeconds, 1);
+        this.retryJitterSeconds = Math.max(retryJitterSeconds, 0);
+
+        this.admittedCounter = outcomeCounter(meterRegistry, "admitted");
+        this.queuedCounter = outcomeCounter(meterRegistry, "queued");
+        this.rejectedCounter = outcomeCounter(meterRegistry, "rejected");
+        Gauge.builder("monitor.ws.admission.waiting", waiting, AtomicInteger::get)
+                .description("Handshakes and CONNECTs waiting for an admission slot")
+                .register(meterRegistry);
+        Gauge.builder("monitor.ws.admission.active", permits,
+                        semaphore -> Math.max(maxConcurrent, 1) - semaphore.availablePermits())
+                .description("Handshakes and CONNECTs currently being processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot, waiting in the queue if needed. Every successful call must be
+     * paired with {@link #release()}.
+     */
+    public boolean tryAdmit() {
+        if (permits.tryAcquire()) {
+            admittedCounter.increment();
+            return true;
+        }
+
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            rejectedCounter.increment();
+            return false;
+        }
+
+        queuedCounter.increment();
+        try {
+            if (permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                admittedCounter.increment();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        rejectedCounter.increment();
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public long nextRetryAfterSeconds() {
+        return retryAfterSeconds + ThreadLocalRandom.current().nextLong(retryJitterSeconds + 1);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("monitor.ws.admission")
+                .description("WebSocket handshakes and STOMP CONNECTs by admission outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
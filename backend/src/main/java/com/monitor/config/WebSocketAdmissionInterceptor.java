@@ -0,0 +1,42 @@
+package com.monitor.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Admission control for the {@code /ws} handshake. Rejected handshakes get a
+ * 503 with {@code Retry-After} before any upgrade work is done.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketAdmissionInterceptor implements HandshakeInterceptor {
+
+    private final WebSocketAdmissionController admissionController;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (admissionController.tryAdmit()) {
+            return true;
+        }
+
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                String.valueOf(admissionController.nextRetryAfterSeconds()));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Exception exception) {
+        admissionController.release();
+    }
+}
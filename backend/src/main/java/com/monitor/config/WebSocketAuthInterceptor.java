@@ -1,7 +1,6 @@
 package com.monitor.config;
 
-import com.monitor.entity.Company;
-import com.monitor.repository.CompanyRepository;
+import com.monitor.service.DeviceAuthorizationCache;
 import com.monitor.service.JwtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.Message;
@@ -21,7 +20,8 @@ import java.util.UUID;
 public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtService jwtService;
-    private final CompanyRepository companyRepository;
+    private final DeviceAuthorizationCache deviceAuthorizationCache;
+    private final WebSocketAdmissionController admissionController;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -31,7 +31,7 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
         }
 
         if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-            UUID companyId = resolveCompanyId(accessor);
+            UUID companyId = admitAndResolveCompanyId(accessor);
             if (companyId == null) {
                 throw new IllegalArgumentException("Unauthorized");
             }
@@ -48,15 +48,25 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
         return message;
     }
 
+    // Token checks run under an admission slot so a reconnect storm queues here
+    // instead of piling onto the token caches and the database.
+    private UUID admitAndResolveCompanyId(StompHeaderAccessor accessor) {
+        if (!admissionController.tryAdmit()) {
+            throw new ConnectionRejectedException("Server busy, retry later",
+                    admissionController.nextRetryAfterSeconds());
+        }
+
+        try {
+            return resolveCompanyId(accessor);
+        } finally {
+            admissionController.release();
+        }
+    }
+
     private UUID resolveCompanyId(StompHeaderAccessor accessor) {
         String authHeader = accessor.getFirstNativeHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            try {
-                return jwtService.extractCompanyId(token);
-            } catch (Exception ignored) {
-                return null;
-            }
+            return jwtService.resolveCompanyId(authHeader.substring(7));
         }
 
         String agentToken = accessor.getFirstNativeHeader("x-agent-token");
@@ -64,8 +74,10 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
             return null;
         }
 
-        return companyRepository.findByApiToken(agentToken)
-                .map(Company::getId)
-                .orElse(null);
+        try {
+            return deviceAuthorizationCache.getCompanyIdByApiToken(agentToken);
+        } catch (RuntimeException ignored) {
+            return null;
+        }
     }
 }
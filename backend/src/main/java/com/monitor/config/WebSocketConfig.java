@@ -1,7 +1,9 @@
 package com.monitor.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,29 +19,64 @@ import java.util.stream.Collectors;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final WebSocketAdmissionInterceptor webSocketAdmissionInterceptor;
+    private final StompAdmissionErrorHandler stompAdmissionErrorHandler;
+    // Only present with app.websocket.broker=sharded.
+    private final ObjectProvider<ShardedBrokerExecutor> shardedBrokerExecutor;
 
     @Value("${app.cors.allowed-origins:http://localhost:3000}")
     private String allowedOrigins;
 
+    // Same switch that moves Tomcat and the scheduler onto virtual threads.
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
         config.setApplicationDestinationPrefixes("/app");
+        if (virtualThreads) {
+            config.setPreservePublishOrder(true);
+        }
+        shardedBrokerExecutor.ifAvailable(config.configureBrokerChannel()::executor);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
-                .setAllowedOriginPatterns(parseOrigins(allowedOrigins));
+                .setAllowedOriginPatterns(parseOrigins(allowedOrigins))
+                .addInterceptors(webSocketAdmissionInterceptor);
 
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns(parseOrigins(allowedOrigins))
+                .addInterceptors(webSocketAdmissionInterceptor)
                 .withSockJS();
+
+        registry.setErrorHandler(stompAdmissionErrorHandler);
+        if (virtualThreads) {
+            registry.setPreserveReceiveOrder(true);
+        }
     }
 
+    /**
+     * With virtual threads a handler blocked on the database parks its own
+     * thread instead of one of the few pooled ones, so other sessions keep
+     * flowing. Per-session ordering, which the bounded pools gave for free, is
+     * kept by the preserve-order flags above.
+     */
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(webSocketAuthInterceptor);
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        }
     }
 
     @Override
@@ -2,17 +2,22 @@ package com.monitor.controller;
 
 import com.monitor.dto.AgentRegisterRequest;
 import com.monitor.dto.DeviceResponse;
+import com.monitor.dto.IngestResponse;
 import com.monitor.dto.MetricDetailRequest;
 import com.monitor.dto.MetricRequest;
 import com.monitor.entity.Device;
 import com.monitor.service.AgentService;
+import com.monitor.service.MetricFrameCodec;
+import com.monitor.service.StreamingBatchReader;
 import lombok.RequiredArgsConstructor;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.annotation.Validated;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/agent")
 @RequiredArgsConstructor
@@ -20,6 +25,7 @@ import java.util.List;
 public class AgentController {
 
     private final AgentService agentService;
+    private final StreamingBatchReader batchReader;
 
     @PostMapping("/register")
     public DeviceResponse register(@Valid @RequestBody AgentRegisterRequest request) {
@@ -42,10 +48,35 @@ public class AgentController {
         agentService.saveMetric(request, agentToken);
     }
 
-    @PostMapping("/metrics/batch")
-    public void sendMetricsBatch(@RequestHeader("x-agent-token") String agentToken,
-            @Valid @RequestBody List<MetricRequest> requests) {
-        agentService.saveMetricsBatch(requests, agentToken);
+    // Batches are decoded with a streaming parser rather than bound to a List of DTOs.
+    @PostMapping(value = "/metrics/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void sendMetricsBatch(@RequestHeader("x-agent-token") String agentToken, @RequestBody byte[] body) {
+        long receivedAt = System.currentTimeMillis();
+        agentService.saveMetricsBatch(batchReader.readMetrics(body, receivedAt), receivedAt, agentToken);
+    }
+
+    // Same batch as a binary frame, see MetricFrameCodec for the layout.
+    @PostMapping(value = "/metrics/batch", consumes = MetricFrameCodec.CONTENT_TYPE)
+    public void sendMetricFrame(@RequestHeader("x-agent-token") String agentToken, @RequestBody byte[] body) {
+        agentService.saveMetricsBatch(MetricFrameCodec.decode(body), System.currentTimeMillis(), agentToken);
+    }
+
+    /**
+     * Samples for any number of the company's devices. Items are validated and
+     * authorized one by one and reported in the response.
+     */
+    @PostMapping(value = "/metrics/ingest", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<IngestResponse> ingestMetrics(@RequestHeader("x-agent-token") String agentToken,
+            @RequestBody byte[] body) {
+        IngestResponse response = agentService.ingestMetrics(batchReader.readMetricRequests(body), agentToken);
+        if (response.getRetryAfterSeconds() == null) {
+            return ResponseEntity.ok(response);
+        }
+
+        HttpStatus status = response.getAccepted() == 0 ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.OK;
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(response.getRetryAfterSeconds()))
+                .body(response);
     }
 
     @PostMapping("/metrics-detail")
@@ -54,9 +85,9 @@ public class AgentController {
         agentService.saveMetricDetail(request, agentToken);
     }
 
-    @PostMapping("/metrics-detail/batch")
-    public void sendMetricDetailsBatch(@RequestHeader("x-agent-token") String agentToken,
-            @Valid @RequestBody List<MetricDetailRequest> requests) {
-        agentService.saveMetricDetailsBatch(requests, agentToken);
+    @PostMapping(value = "/metrics-detail/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void sendMetricDetailsBatch(@RequestHeader("x-agent-token") String agentToken, @RequestBody byte[] body) {
+        agentService.saveMetricDetailsBatch(batchReader.readMetricDetails(body, System.currentTimeMillis()),
+                agentToken);
     }
 }
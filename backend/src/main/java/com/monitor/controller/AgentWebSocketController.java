@@ -1,15 +1,30 @@
 package com.monitor.controller;
 
+import com.monitor.config.StompErrorSender;
+import com.monitor.dto.IngestResponse;
 import com.monitor.dto.MetricDetailRequest;
 import com.monitor.dto.MetricRequest;
-import com.monitor.entity.Device;
-import com.monitor.repository.DeviceRepository;
 import com.monitor.service.AgentService;
+import com.monitor.service.DeviceAuthorization;
+import com.monitor.service.DeviceAuthorizationCache;
+import com.monitor.service.DatabaseBusyException;
+import com.monitor.service.IngestionRejectedException;
+import com.monitor.service.MetricDetailSample;
+import com.monitor.service.MetricFrameCodec;
+import com.monitor.service.MetricSample;
+import com.monitor.service.StreamingBatchReader;
 import lombok.RequiredArgsConstructor;
 import jakarta.validation.Valid;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.MimeType;
 import org.springframework.validation.annotation.Validated;
 
 import java.security.Principal;
@@ -21,8 +36,10 @@ import java.util.UUID;
 @Validated
 public class AgentWebSocketController {
 
-    private final DeviceRepository deviceRepository;
+    private final DeviceAuthorizationCache deviceAuthorizationCache;
     private final AgentService agentService;
+    private final StompErrorSender stompErrorSender;
+    private final StreamingBatchReader batchReader;
 
     @MessageMapping("/agent/metrics")
     public void receiveMetrics(@Valid MetricRequest request, Principal principal) {
@@ -31,36 +48,55 @@ public class AgentWebSocketController {
         }
 
         UUID companyId = getCompanyId(principal);
-        Device device = deviceRepository.findById(request.getDeviceId())
-                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        DeviceAuthorization device = deviceAuthorizationCache.getDevice(request.getDeviceId());
 
-        if (!device.getCompany().getId().equals(companyId)) {
+        if (!device.companyId().equals(companyId)) {
             return;
         }
 
         agentService.saveMetric(request);
     }
 
+    /**
+     * Batch payloads are decoded from the raw frame body: a binary metric frame
+     * when the SEND frame's content-type is {@value MetricFrameCodec#CONTENT_TYPE},
+     * otherwise a JSON array read by the streaming reader.
+     */
     @MessageMapping("/agent/metrics-batch")
-    public void receiveMetricsBatch(@Valid List<MetricRequest> requests, Principal principal) {
-        if (requests == null || requests.isEmpty() || requests.get(0).getDeviceId() == null) {
+    public void receiveMetricsBatch(Message<byte[]> message, Principal principal) {
+        long receivedAt = System.currentTimeMillis();
+        MimeType contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        List<MetricSample> samples = MetricFrameCodec.isFrame(contentType)
+                ? MetricFrameCodec.decode(message.getPayload())
+                : batchReader.readMetrics(message.getPayload(), receivedAt);
+        if (samples.isEmpty()) {
             return;
         }
 
         UUID companyId = getCompanyId(principal);
-        UUID deviceId = requests.get(0).getDeviceId();
-        if (!allSameDevice(requests, deviceId)) {
+        UUID deviceId = samples.get(0).deviceId();
+        if (!allSameDevice(samples, deviceId)) {
             return;
         }
 
-        Device device = deviceRepository.findById(deviceId)
-                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        DeviceAuthorization device = deviceAuthorizationCache.getDevice(deviceId);
 
-        if (!device.getCompany().getId().equals(companyId)) {
+        if (!device.companyId().equals(companyId)) {
             return;
         }
 
-        agentService.saveMetricsBatch(requests);
+        agentService.saveMetricsBatch(samples, receivedAt);
+    }
+
+    /**
+     * Mixed-device batch; the per-item result is sent back to the calling
+     * session only, on {@code /user/topic/ingest-results}.
+     */
+    @MessageMapping("/agent/metrics-ingest")
+    @SendToUser(destinations = "/topic/ingest-results", broadcast = false)
+    public IngestResponse ingestMetrics(Message<byte[]> message, Principal principal) {
+        return agentService.ingestMetrics(batchReader.readMetricRequests(message.getPayload()),
+                getCompanyId(principal));
     }
 
     @MessageMapping("/agent/metrics-detail")
@@ -70,10 +106,9 @@ public class AgentWebSocketController {
         }
 
         UUID companyId = getCompanyId(principal);
-        Device device = deviceRepository.findById(request.getDeviceId())
-                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        DeviceAuthorization device = deviceAuthorizationCache.getDevice(request.getDeviceId());
 
-        if (!device.getCompany().getId().equals(companyId)) {
+        if (!device.companyId().equals(companyId)) {
             return;
         }
 
@@ -81,25 +116,38 @@ public class AgentWebSocketController {
     }
 
     @MessageMapping("/agent/metrics-detail-batch")
-    public void receiveMetricDetailsBatch(@Valid List<MetricDetailRequest> requests, Principal principal) {
-        if (requests == null || requests.isEmpty() || requests.get(0).getDeviceId() == null) {
+    public void receiveMetricDetailsBatch(Message<byte[]> message, Principal principal) {
+        List<MetricDetailSample> details = batchReader.readMetricDetails(message.getPayload(),
+                System.currentTimeMillis());
+        if (details.isEmpty()) {
             return;
         }
 
         UUID companyId = getCompanyId(principal);
-        UUID deviceId = requests.get(0).getDeviceId();
-        if (!allSameDeviceDetail(requests, deviceId)) {
+        UUID deviceId = details.get(0).deviceId();
+        if (!allSameDeviceDetail(details, deviceId)) {
             return;
         }
 
-        Device device = deviceRepository.findById(deviceId)
-                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        DeviceAuthorization device = deviceAuthorizationCache.getDevice(deviceId);
 
-        if (!device.getCompany().getId().equals(companyId)) {
+        if (!device.companyId().equals(companyId)) {
             return;
         }
 
-        agentService.saveMetricDetailsBatch(requests);
+        agentService.saveMetricDetailsBatch(details);
+    }
+
+    @MessageExceptionHandler(IngestionRejectedException.class)
+    public void handleIngestionRejected(IngestionRejectedException ex,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        stompErrorSender.sendError(sessionId, ex.getMessage(), ex.getRetryAfterSeconds());
+    }
+
+    @MessageExceptionHandler(DatabaseBusyException.class)
+    public void handleDatabaseBusy(DatabaseBusyException ex,
+            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        stompErrorSender.sendError(sessionId, ex.getMessage(), ex.getRetryAfterSeconds());
     }
 
     private UUID getCompanyId(Principal principal) {
@@ -115,18 +163,18 @@ public class AgentWebSocketController {
         throw new IllegalArgumentException("Unauthorized");
     }
 
-    private boolean allSameDevice(List<MetricRequest> requests, UUID deviceId) {
-        for (MetricRequest request : requests) {
-            if (request == null || request.getDeviceId() == null || !request.getDeviceId().equals(deviceId)) {
+    private boolean allSameDevice(List<MetricSample> samples, UUID deviceId) {
+        for (MetricSample sample : samples) {
+            if (!sample.deviceId().equals(deviceId)) {
                 return false;
             }
         }
         return true;
     }
 
-    private boolean allSameDeviceDetail(List<MetricDetailRequest> requests, UUID deviceId) {
-        for (MetricDetailRequest request : requests) {
-            if (request == null || request.getDeviceId() == null || !request.getDeviceId().equals(deviceId)) {
+    private boolean allSameDeviceDetail(List<MetricDetailSample> details, UUID deviceId) {
+        for (MetricDetailSample detail : details) {
+            if (!detail.deviceId().equals(deviceId)) {
                 return false;
             }
         }
@@ -0,0 +1,62 @@
+package com.monitor.controller;
+
+import com.monitor.dto.AlertEvent;
+import com.monitor.dto.AlertRuleRequest;
+import com.monitor.dto.AlertRuleResponse;
+import com.monitor.service.AlertService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/alerts")
+@RequiredArgsConstructor
+public class AlertController {
+
+    private final AlertService alertService;
+
+    // Alerts firing right now; transitions are pushed to /topic/alerts/{companyId}.
+    @GetMapping
+    public List<AlertEvent> getActiveAlerts() {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return alertService.getActiveAlerts(companyId);
+    }
+
+    @GetMapping("/rules")
+    public List<AlertRuleResponse> getRules() {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return alertService.getRules(companyId);
+    }
+
+    @PostMapping("/rules")
+    public AlertRuleResponse createRule(@Valid @RequestBody AlertRuleRequest request) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return alertService.createRule(companyId, request);
+    }
+
+    @DeleteMapping("/rules/{ruleId}")
+    public void deleteRule(@PathVariable UUID ruleId) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        alertService.deleteRule(companyId, ruleId);
+    }
+}
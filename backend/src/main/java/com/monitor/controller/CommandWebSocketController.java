@@ -2,8 +2,8 @@ package com.monitor.controller;
 
 import com.monitor.dto.CommandRequest;
 import com.monitor.dto.CommandResult;
-import com.monitor.entity.Device;
-import com.monitor.repository.DeviceRepository;
+import com.monitor.service.DeviceAuthorization;
+import com.monitor.service.DeviceAuthorizationCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -18,7 +18,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class CommandWebSocketController {
 
-    private final DeviceRepository deviceRepository;
+    private final DeviceAuthorizationCache deviceAuthorizationCache;
     private final SimpMessagingTemplate messagingTemplate;
 
     @MessageMapping("/command/{deviceId}")
@@ -26,10 +26,9 @@ public class CommandWebSocketController {
             CommandRequest request,
             Principal principal) {
         UUID companyId = getCompanyId(principal);
-        Device device = deviceRepository.findById(deviceId)
-                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        DeviceAuthorization device = deviceAuthorizationCache.getDevice(deviceId);
 
-        if (!device.getCompany().getId().equals(companyId)) {
+        if (!device.companyId().equals(companyId)) {
             return;
         }
 
@@ -50,10 +49,9 @@ public class CommandWebSocketController {
             return;
         }
 
-        Device device = deviceRepository.findById(result.getDeviceId())
-                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        DeviceAuthorization device = deviceAuthorizationCache.getDevice(result.getDeviceId());
 
-        if (!device.getCompany().getId().equals(companyId)) {
+        if (!device.companyId().equals(companyId)) {
             return;
         }
 
@@ -1,14 +1,25 @@
 package com.monitor.controller;
 
+import com.monitor.dto.AnomalyResponse;
 import com.monitor.dto.DeviceResponse;
+import com.monitor.dto.DeviceSummaryResponse;
+import com.monitor.dto.FleetStatsResponse;
 import com.monitor.dto.MetricDetailResponse;
+import com.monitor.dto.MetricRangeResponse;
+import com.monitor.dto.ProcessRangeResponse;
 import com.monitor.service.DeviceService;
+import com.monitor.service.MetricDetailPage;
 import lombok.RequiredArgsConstructor;
 import com.monitor.entity.Metric;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -29,19 +40,119 @@ public class DeviceController {
         return deviceService.getDevices(companyId);
     }
 
+    @GetMapping("/summary")
+    public List<DeviceSummaryResponse> getSummary() {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getSummary(companyId);
+    }
+
+    /**
+     * min/max/avg/percentiles of one metric across the company, over each
+     * device's latest sample or every sample of the recent window.
+     */
+    @GetMapping("/stats")
+    public FleetStatsResponse getFleetStats(@RequestParam(required = false) String metric,
+            @RequestParam(required = false) String window) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getFleetStats(companyId, metric, window);
+    }
+
+    @GetMapping("/top")
+    public List<DeviceSummaryResponse> getTopDevices(@RequestParam(required = false) String metric,
+            @RequestParam(required = false) Integer limit) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getTopDevices(companyId, metric, limit);
+    }
+
+    // Baseline and anomaly score of each metric's latest value; also pushed on /topic/device-anomaly/{id}.
+    @GetMapping("/{deviceId}/anomaly")
+    public AnomalyResponse getAnomaly(@PathVariable UUID deviceId) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getAnomaly(companyId, deviceId);
+    }
+
     @GetMapping("/{deviceId}/metrics")
     public List<Metric> getMetrics(@PathVariable UUID deviceId) {
-        return deviceService.getMetrics(deviceId);
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getMetrics(companyId, deviceId);
+    }
+
+    @GetMapping(value = "/{deviceId}/metrics", params = "from")
+    public MetricRangeResponse getMetricRange(@PathVariable UUID deviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long step,
+            @RequestParam(required = false) String agg) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getMetricRange(companyId, deviceId, from, to, step, agg);
+    }
+
+    // Series of one process name (summed over its pids, or one pid) taken from the detail snapshots.
+    @GetMapping("/{deviceId}/processes")
+    public ProcessRangeResponse getProcessRange(@PathVariable UUID deviceId,
+            @RequestParam String name,
+            @RequestParam(required = false) Integer pid,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long step,
+            @RequestParam(required = false) String agg) {
+        UUID companyId = (UUID) SecurityContextHolder
+                .getContext()
+                .getAuthentication()
+                .getPrincipal();
+
+        return deviceService.getProcessRange(companyId, deviceId, name, pid, from, to, step, agg);
     }
 
+    /**
+     * Keyset-paginated snapshots, newest first. Answers 304 when the page
+     * matches {@code If-None-Match}, before any snapshot is read.
+     */
     @GetMapping("/{deviceId}/metrics-detail")
-    public List<MetricDetailResponse> getDetailedMetrics(@PathVariable UUID deviceId) {
+    public ResponseEntity<List<MetricDetailResponse>> getDetailedMetrics(@PathVariable UUID deviceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) List<String> fields,
+            WebRequest request) {
         UUID companyId = (UUID) SecurityContextHolder
                 .getContext()
                 .getAuthentication()
                 .getPrincipal();
 
-        return deviceService.getDetailedMetrics(companyId, deviceId);
+        MetricDetailPage page = deviceService.findDetailPage(companyId, deviceId, before, beforeId, limit, fields);
+        if (request.checkNotModified(page.etag())) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(page.etag())
+                .body(deviceService.getDetailedMetrics(page));
     }
 
 }
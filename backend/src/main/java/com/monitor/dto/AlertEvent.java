@@ -0,0 +1,28 @@
+package com.monitor.dto;
+
+import com.monitor.entity.AlertRuleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertEvent {
+    private UUID ruleId;
+    private String ruleName;
+    private UUID deviceId;
+    private AlertRuleType type;
+    private AlertState state;
+    // Null for heartbeat rules.
+    private FleetMetric metric;
+    private Double threshold;
+    // Metric value, or seconds since the last heartbeat.
+    private double value;
+    private LocalDateTime at;
+}
@@ -0,0 +1,39 @@
+package com.monitor.dto;
+
+import com.monitor.entity.AlertOperator;
+import com.monitor.entity.AlertRuleType;
+import lombok.Data;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import java.util.UUID;
+
+@Data
+public class AlertRuleRequest {
+
+    @Size(max = 120)
+    private String name;
+
+    // Applies to every device of the company when absent.
+    private UUID deviceId;
+
+    @NotNull
+    private AlertRuleType type;
+
+    // cpu, memory, disk, networkIn or networkOut; threshold rules only. Network thresholds are bytes per second.
+    private String metric;
+
+    private AlertOperator operator;
+
+    private double threshold;
+
+    @PositiveOrZero
+    private double hysteresis;
+
+    @Min(0)
+    @Max(86400)
+    private int forSeconds;
+}
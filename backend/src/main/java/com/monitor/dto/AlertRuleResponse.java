@@ -0,0 +1,24 @@
+package com.monitor.dto;
+
+import com.monitor.entity.AlertOperator;
+import com.monitor.entity.AlertRuleType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class AlertRuleResponse {
+    private UUID id;
+    private String name;
+    private UUID deviceId;
+    private AlertRuleType type;
+    private FleetMetric metric;
+    private AlertOperator operator;
+    private double threshold;
+    private double hysteresis;
+    private int forSeconds;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package com.monitor.dto;
+
+public enum AlertState {
+    FIRING,
+    RESOLVED
+}
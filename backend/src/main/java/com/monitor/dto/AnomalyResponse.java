@@ -0,0 +1,22 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnomalyResponse {
+    private UUID deviceId;
+    // Samples the baseline has learned from, including those before a restart.
+    private long samples;
+    private LocalDateTime sampledAt;
+    private List<MetricAnomaly> metrics;
+}
@@ -0,0 +1,29 @@
+package com.monitor.dto;
+
+import com.monitor.entity.DeviceStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+public class DeviceSummaryResponse {
+    private UUID id;
+    private String hostname;
+    private String ipAddress;
+    private String os;
+    private DeviceStatus status;
+    private LocalDateTime lastSeenAt;
+    // Latest sample; null until the device has reported one.
+    private LocalDateTime sampledAt;
+    private Double cpuUsage;
+    private Double memoryUsage;
+    private Double diskUsage;
+    private Double networkIn;
+    private Double networkOut;
+    // Bytes per second since the previous sample; null until there are two.
+    private Double networkInRate;
+    private Double networkOutRate;
+}
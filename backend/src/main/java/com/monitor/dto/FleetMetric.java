@@ -0,0 +1,37 @@
+package com.monitor.dto;
+
+public enum FleetMetric {
+    CPU("cpu", true),
+    MEMORY("memory", true),
+    DISK("disk", true),
+    NETWORK_IN("networkIn", false),
+    NETWORK_OUT("networkOut", false);
+
+    private final String param;
+    private final boolean percent;
+
+    FleetMetric(String param, boolean percent) {
+        this.param = param;
+        this.percent = percent;
+    }
+
+    /**
+     * Whether values are percentages in [0, 100]; the others are unbounded
+     * network rates in bytes per second.
+     */
+    public boolean isPercent() {
+        return percent;
+    }
+
+    public static FleetMetric fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return CPU;
+        }
+        for (FleetMetric metric : values()) {
+            if (metric.param.equalsIgnoreCase(value.trim())) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported metric: " + value);
+    }
+}
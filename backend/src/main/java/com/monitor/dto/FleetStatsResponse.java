@@ -0,0 +1,24 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FleetStatsResponse {
+    private FleetMetric metric;
+    private FleetWindow window;
+    // Devices for LATEST, samples for RECENT; the statistics are null when 0.
+    private long count;
+    private Double min;
+    private Double max;
+    private Double avg;
+    private Double p50;
+    private Double p90;
+    private Double p95;
+    private Double p99;
+}
@@ -0,0 +1,21 @@
+package com.monitor.dto;
+
+import java.util.Locale;
+
+public enum FleetWindow {
+    // Each device's latest sample.
+    LATEST,
+    // Every sample of the last app.fleet.recentMinutes.
+    RECENT;
+
+    public static FleetWindow fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return LATEST;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unsupported window: " + value);
+        }
+    }
+}
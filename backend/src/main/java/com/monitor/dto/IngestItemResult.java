@@ -0,0 +1,19 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestItemResult {
+    private int index;
+    private UUID deviceId;
+    private boolean accepted;
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestResponse {
+    private int accepted;
+    private int rejected;
+    // Set when items were turned away by ingestion backpressure.
+    private Long retryAfterSeconds;
+    private List<IngestItemResult> items;
+}
@@ -0,0 +1,25 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A sample as pushed to live subscribers. It is published before its row is
+ * written, so it has no id; clients key it by {@code createdAt}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveMetric {
+    private LocalDateTime createdAt;
+    private double cpuUsage;
+    private double memoryUsage;
+    private double diskUsage;
+    private double networkIn;
+    private double networkOut;
+}
@@ -0,0 +1,43 @@
+package com.monitor.dto;
+
+import java.util.Locale;
+
+public enum MetricAggregation {
+    AVG("avg(%s)", "sum(%s_avg * samples) / sum(samples)"),
+    MAX("max(%s)", "max(%s_max)"),
+    P95("percentile_cont(0.95) WITHIN GROUP (ORDER BY %s)", null);
+
+    private final String sqlTemplate;
+    private final String rollupTemplate;
+
+    MetricAggregation(String sqlTemplate, String rollupTemplate) {
+        this.sqlTemplate = sqlTemplate;
+        this.rollupTemplate = rollupTemplate;
+    }
+
+    public String sql(String column) {
+        return String.format(sqlTemplate, column);
+    }
+
+    /**
+     * Whether the aggregate can be recomputed from rollup rows; percentiles need raw samples.
+     */
+    public boolean supportsRollups() {
+        return rollupTemplate != null;
+    }
+
+    public String rollupSql(String column) {
+        return String.format(rollupTemplate, column);
+    }
+
+    public static MetricAggregation fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return AVG;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unsupported aggregation: " + value);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricAnomaly {
+    private FleetMetric metric;
+    // Latest value; bytes per second for network metrics.
+    private double value;
+    private double mean;
+    private double stdDev;
+    // Deviation of the latest value from the baseline before it, in standard deviations; null while warming up.
+    private Double score;
+    private boolean anomalous;
+}
@@ -0,0 +1,22 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricPoint {
+    private LocalDateTime createdAt;
+    private double cpuUsage;
+    private double memoryUsage;
+    private double diskUsage;
+    private double networkIn;
+    private double networkOut;
+    private long samples;
+}
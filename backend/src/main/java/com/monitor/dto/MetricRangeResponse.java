@@ -0,0 +1,23 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricRangeResponse {
+    private UUID deviceId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long stepSeconds;
+    private MetricAggregation agg;
+    private List<MetricPoint> points;
+}
@@ -31,4 +31,7 @@ public class MetricRequest {
 
     @PositiveOrZero
     private double networkOut;
+
+    // Collection time in epoch milliseconds; the receive time is used when absent.
+    private Long timestamp;
 }
@@ -0,0 +1,24 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessPoint {
+    private LocalDateTime createdAt;
+    // Summed over the matching processes of each snapshot, then aggregated over the bucket.
+    private Double cpuPercent;
+    private Double rssBytes;
+    private Double ioReadBytes;
+    private Double ioWriteBytes;
+    // Most matching processes in one snapshot of the bucket.
+    private long processes;
+    private long samples;
+}
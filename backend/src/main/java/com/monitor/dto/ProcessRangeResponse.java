@@ -0,0 +1,26 @@
+package com.monitor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessRangeResponse {
+    private UUID deviceId;
+    private String name;
+    // Null when every process of that name is included.
+    private Integer pid;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long stepSeconds;
+    private MetricAggregation agg;
+    private List<ProcessPoint> points;
+}
@@ -0,0 +1,6 @@
+package com.monitor.entity;
+
+public enum AlertOperator {
+    ABOVE,
+    BELOW
+}
@@ -0,0 +1,56 @@
+package com.monitor.entity;
+
+import com.monitor.dto.FleetMetric;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A company-wide rule, or one device's when {@code deviceId} is set. A
+ * threshold rule fires once the metric has stayed past the threshold for
+ * {@code forSeconds} and resolves once it has stayed back past the threshold
+ * by {@code hysteresis} for as long. A heartbeat rule fires when the device
+ * has not reported for {@code forSeconds}.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_alert_rule_company", columnList = "company_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AlertRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    private String name;
+
+    @Column(name = "device_id")
+    private UUID deviceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AlertRuleType type;
+
+    @Enumerated(EnumType.STRING)
+    private FleetMetric metric;
+
+    @Enumerated(EnumType.STRING)
+    private AlertOperator operator;
+
+    private double threshold;
+
+    private double hysteresis;
+
+    private int forSeconds;
+
+    private LocalDateTime createdAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "company_id", nullable = false)
+    private Company company;
+}
@@ -0,0 +1,10 @@
+package com.monitor.entity;
+
+/**
+ * What an {@link AlertRule} watches: a metric crossing a threshold, or a device
+ * that has stopped reporting.
+ */
+public enum AlertRuleType {
+    THRESHOLD,
+    NO_HEARTBEAT
+}
@@ -6,6 +6,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "idx_metric_device_created_at", columnList = "device_id, created_at"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -34,6 +35,11 @@ public class Metric {
 
     private LocalDateTime createdAt;
 
+    // False when createdAt is the receive time because the agent sent no timestamp.
+    @Builder.Default
+    @Column(nullable = false, columnDefinition = "boolean default true not null")
+    private boolean agentTimestamp = true;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "device_id", nullable = false)
     private Device device;
@@ -6,6 +6,7 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = @Index(name = "idx_metric_detail_device_created_at", columnList = "device_id, created_at"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,6 +22,16 @@ public class MetricDetail {
     @Column(columnDefinition = "TEXT")
     private String detailsJson;
 
+    // Compressed snapshot; set instead of detailsJson for DEFLATE formats.
+    @Basic(fetch = FetchType.EAGER)
+    private byte[] detailsData;
+
+    @Enumerated(EnumType.STRING)
+    private MetricDetailFormat detailsFormat;
+
+    // createdAt of the keyframe a DEFLATE_DELTA row was compressed against.
+    private LocalDateTime detailsBaseAt;
+
     private LocalDateTime createdAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,11 @@
+package com.monitor.entity;
+
+/**
+ * How a {@link MetricDetail} snapshot is stored. Rows written before formats
+ * existed have no format and are plain {@code TEXT}.
+ */
+public enum MetricDetailFormat {
+    TEXT,
+    DEFLATE,
+    DEFLATE_DELTA
+}
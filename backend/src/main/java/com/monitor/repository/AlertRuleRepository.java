@@ -0,0 +1,12 @@
+package com.monitor.repository;
+
+import com.monitor.entity.AlertRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface AlertRuleRepository extends JpaRepository<AlertRule, UUID> {
+
+    List<AlertRule> findByCompanyId(UUID companyId);
+}
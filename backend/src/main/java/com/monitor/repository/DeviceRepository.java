@@ -2,8 +2,15 @@ package com.monitor.repository;
 
 import com.monitor.entity.Device;
 import com.monitor.entity.Company;
+import com.monitor.entity.DeviceStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -11,4 +18,16 @@ import java.util.UUID;
 public interface DeviceRepository extends JpaRepository<Device, UUID> {
     List<Device> findByCompany(Company company);
     Optional<Device> findByHostnameAndCompany(String hostname, Company company);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Device d SET d.lastSeenAt = :lastSeenAt, d.status = :status WHERE d.id = :id")
+    int updateLastSeen(@Param("id") UUID id,
+            @Param("lastSeenAt") LocalDateTime lastSeenAt,
+            @Param("status") DeviceStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Device d SET d.status = :status WHERE d.id IN :ids")
+    int updateStatus(@Param("ids") Collection<UUID> ids, @Param("status") DeviceStatus status);
 }
@@ -4,8 +4,11 @@ import com.monitor.entity.Device;
 import com.monitor.entity.MetricDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface MetricDetailRepository extends JpaRepository<MetricDetail, Long> {
-    List<MetricDetail> findTop20ByDeviceOrderByCreatedAtDesc(Device device);
+
+    List<MetricDetail> findByDeviceAndCreatedAtIn(Device device, Collection<LocalDateTime> createdAt);
 }
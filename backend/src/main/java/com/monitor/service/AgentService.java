@@ -3,26 +3,33 @@ package com.monitor.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.monitor.dto.AgentRegisterRequest;
+import com.monitor.dto.IngestItemResult;
+import com.monitor.dto.IngestResponse;
+import com.monitor.dto.LiveMetric;
 import com.monitor.dto.MetricDetailRequest;
 import com.monitor.dto.MetricDetailResponse;
 import com.monitor.dto.MetricRequest;
 import com.monitor.entity.Company;
 import com.monitor.entity.Device;
 import com.monitor.entity.DeviceStatus;
-import com.monitor.entity.Metric;
-import com.monitor.entity.MetricDetail;
 import com.monitor.repository.CompanyRepository;
 import com.monitor.repository.DeviceRepository;
-import com.monitor.repository.MetricDetailRepository;
-import com.monitor.repository.MetricRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -31,15 +38,35 @@ public class AgentService {
 
         private final CompanyRepository companyRepository;
         private final DeviceRepository deviceRepository;
-        private final MetricRepository metricRepository;
-        private final MetricDetailRepository metricDetailRepository;
         private final ObjectMapper objectMapper;
         private final SimpMessagingTemplate messagingTemplate;
+        private final LiveUpdatePublisher liveUpdatePublisher;
+        private final MetricIngestionPipeline ingestionPipeline;
+        private final MetricsStorageService metricsStorageService;
+        private final DeviceAuthorizationCache deviceAuthorizationCache;
+        private final AgentTokenRegistry agentTokenRegistry;
+        private final DeviceHeartbeatTracker heartbeatTracker;
+        private final DeviceStatusScheduler deviceStatusScheduler;
+        private final DatabaseBulkhead databaseBulkhead;
+        private final Validator validator;
+        private final IngestionWindow ingestionWindow;
+        private final DeviceStateStore deviceStateStore;
+        private final FleetStats fleetStats;
+        private final NetworkRates networkRates;
+        private final AlertEngine alertEngine;
+        private final AnomalyDetector anomalyDetector;
 
         public Device registerDevice(AgentRegisterRequest request) {
+                return databaseBulkhead.call(() -> register(request));
+        }
+
+        private Device register(AgentRegisterRequest request) {
 
-                Company company = companyRepository.findByApiToken(request.getToken())
-                                .orElseThrow(() -> new RuntimeException("Invalid token"));
+                UUID companyId = agentTokenRegistry.findCompanyId(request.getToken());
+                if (companyId == null) {
+                        throw new RuntimeException("Invalid token");
+                }
+                Company company = companyRepository.getReferenceById(companyId);
 
                 Device device = deviceRepository
                                 .findByHostnameAndCompany(request.getHostname(), company)
@@ -55,120 +82,185 @@ public class AgentService {
                 device.setLastSeenAt(LocalDateTime.now());
                 device.setStatus(DeviceStatus.ONLINE);
 
-                return deviceRepository.save(device);
+                Device saved = deviceRepository.save(device);
+                deviceAuthorizationCache.put(saved);
+                deviceStateStore.register(saved);
+                long registeredAt = System.currentTimeMillis();
+                heartbeatTracker.register(saved.getId(), registeredAt);
+                deviceStatusScheduler.track(saved.getId(), registeredAt);
+                return saved;
         }
 
         public void saveMetric(MetricRequest request) {
 
-                Device device = deviceRepository.findById(request.getDeviceId())
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
-
-                Metric metric = Metric.builder()
-                                .device(device)
-                                .cpuUsage(request.getCpuUsage())
-                                .memoryUsage(request.getMemoryUsage())
-                                .diskUsage(request.getDiskUsage())
-                                .networkIn(request.getNetworkIn())
-                                .networkOut(request.getNetworkOut())
-                                .createdAt(LocalDateTime.now())
-                                .build();
-
-                metricRepository.save(metric);
+                DeviceAuthorization device = deviceAuthorizationCache.getDevice(request.getDeviceId());
 
-                device.setLastSeenAt(LocalDateTime.now());
-                if (device.getStatus() != DeviceStatus.ONLINE) {
-                        device.setStatus(DeviceStatus.ONLINE);
-
-                        messagingTemplate.convertAndSend(
-                                        "/topic/device-status/" + device.getId(),
-                                        DeviceStatus.ONLINE);
+                long receivedAt = System.currentTimeMillis();
+                MetricSample sample = toSample(request, receivedAt);
+                if (!ingestionWindow.accepts(sample.timestampMillis(), receivedAt)) {
+                        throw new IllegalArgumentException("Sample timestamp is outside the accepted window");
                 }
-                deviceRepository.save(device);
+                ingestionPipeline.submit(sample);
+                MetricSample rates = networkRates.toRates(sample);
+                deviceStateStore.update(sample, rates);
+                fleetStats.record(device.companyId(), rates);
+                alertEngine.evaluate(device.companyId(), rates);
+                anomalyDetector.update(rates);
 
-                // 🔴 ADD THIS FOR LIVE STREAMING
-                messagingTemplate.convertAndSend(
-                                "/topic/device/" + device.getId(),
-                                metric);
-        }
+                markSeen(device, receivedAt);
 
-        @Transactional
-        public void saveMetricsBatch(List<MetricRequest> requests) {
-                if (requests == null || requests.isEmpty()) {
-                        return;
-                }
+                // 🔴 ADD THIS FOR LIVE STREAMING (conflated to the latest sample per tick)
+                publishLive(device.deviceId(), sample);
+        }
 
-                UUID deviceId = requests.get(0).getDeviceId();
-                if (deviceId == null) {
+        /**
+         * Batch decoded by {@link StreamingBatchReader}. Only samples of the first
+         * sample's device within the ingestion window are kept. Samples without an
+         * agent timestamp get a server stamp, in batch order.
+         */
+        public void saveMetricsBatch(List<MetricSample> batch, long receivedAt) {
+                if (batch == null || batch.isEmpty()) {
                         return;
                 }
 
-                Device device = deviceRepository.findById(deviceId)
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
+                UUID deviceId = batch.get(0).deviceId();
+                DeviceAuthorization device = deviceAuthorizationCache.getDevice(deviceId);
 
-                List<Metric> metrics = buildMetrics(device, requests);
-                if (metrics.isEmpty()) {
+                List<MetricSample> samples = new ArrayList<>(batch.size());
+                for (MetricSample sample : batch) {
+                        if (!sample.deviceId().equals(deviceId)) {
+                                continue;
+                        }
+                        MetricSample stamped = sample.agentTimestamp() ? sample
+                                        : withTimestamp(sample, ingestionWindow.serverTimestamp(deviceId, receivedAt));
+                        if (ingestionWindow.accepts(stamped.timestampMillis(), receivedAt)) {
+                                samples.add(stamped);
+                        }
+                }
+                if (samples.isEmpty()) {
                         return;
                 }
 
-                metricRepository.saveAll(metrics);
-
-                LocalDateTime now = metrics.get(metrics.size() - 1).getCreatedAt();
-                device.setLastSeenAt(now);
-                if (device.getStatus() != DeviceStatus.ONLINE) {
-                        device.setStatus(DeviceStatus.ONLINE);
-
-                        messagingTemplate.convertAndSend(
-                                        "/topic/device-status/" + device.getId(),
-                                        DeviceStatus.ONLINE);
+                ingestionPipeline.submitAll(samples);
+                RatedSample latest = null;
+                for (MetricSample sample : samples) {
+                        MetricSample rates = networkRates.toRates(sample);
+                        fleetStats.record(device.companyId(), rates);
+                        alertEngine.evaluate(device.companyId(), rates);
+                        anomalyDetector.update(rates);
+                        latest = newer(latest, new RatedSample(sample, rates));
                 }
-                deviceRepository.save(device);
 
-                Metric latestMetric = metrics.get(metrics.size() - 1);
-                messagingTemplate.convertAndSend(
-                                "/topic/device/" + device.getId(),
-                                latestMetric);
+                deviceStateStore.update(latest.sample(), latest.rates());
+                markSeen(device, receivedAt);
+
+                publishLive(device.deviceId(), latest.sample());
         }
 
         public void saveMetric(MetricRequest request, String agentToken) {
-                Company company = getCompanyByAgentToken(agentToken);
-
-                Device device = deviceRepository.findById(request.getDeviceId())
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
-
-                if (!device.getCompany().getId().equals(company.getId())) {
-                        throw new RuntimeException("Unauthorized device");
-                }
+                UUID companyId = deviceAuthorizationCache.getCompanyIdByApiToken(agentToken);
+                deviceAuthorizationCache.authorize(request.getDeviceId(), companyId);
 
                 saveMetric(request);
         }
 
-        @Transactional
-        public void saveMetricsBatch(List<MetricRequest> requests, String agentToken) {
-                if (requests == null || requests.isEmpty()) {
+        public void saveMetricsBatch(List<MetricSample> batch, long receivedAt, String agentToken) {
+                if (batch == null || batch.isEmpty()) {
                         return;
                 }
 
-                Company company = getCompanyByAgentToken(agentToken);
-                UUID deviceId = requests.get(0).getDeviceId();
-                if (deviceId == null) {
-                        return;
+                UUID companyId = deviceAuthorizationCache.getCompanyIdByApiToken(agentToken);
+                deviceAuthorizationCache.authorize(batch.get(0).deviceId(), companyId);
+
+                saveMetricsBatch(batch, receivedAt);
+        }
+
+        /**
+         * Accepts samples for any mix of the company's devices. Devices are
+         * authorized with one set-based lookup, every item is validated on its own,
+         * and the result reports each item instead of failing or dropping the batch.
+         * Once the pipeline pushes back, the remaining items are rejected without
+         * waiting again.
+         */
+        public IngestResponse ingestMetrics(List<MetricIngestItem> items, UUID companyId) {
+                if (items == null || items.isEmpty()) {
+                        return IngestResponse.builder().items(List.of()).build();
                 }
 
-                Device device = deviceRepository.findById(deviceId)
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
+                Set<UUID> deviceIds = new HashSet<>();
+                for (MetricIngestItem item : items) {
+                        if (item.error() == null && item.request() != null && item.request().getDeviceId() != null) {
+                                deviceIds.add(item.request().getDeviceId());
+                        }
+                }
+                Map<UUID, DeviceAuthorization> devices = deviceAuthorizationCache.authorizeAll(deviceIds, companyId);
+
+                IngestItemResult[] results = new IngestItemResult[items.size()];
+                Map<UUID, RatedSample> latestByDevice = new LinkedHashMap<>();
+                long receivedAt = System.currentTimeMillis();
+                IngestionRejectedException backpressure = null;
+                int accepted = 0;
+
+                for (int i = 0; i < items.size(); i++) {
+                        MetricIngestItem item = items.get(i);
+                        MetricRequest request = item.request();
+                        String error = item.error() != null ? item.error() : validateItem(request, devices);
+                        MetricSample sample = error == null ? toSample(request, receivedAt) : null;
+                        if (sample != null && !ingestionWindow.accepts(sample.timestampMillis(), receivedAt)) {
+                                error = "Timestamp outside the accepted window";
+                        }
+                        if (error == null && backpressure != null) {
+                                error = backpressure.getMessage();
+                        }
+                        if (error == null) {
+                                try {
+                                        ingestionPipeline.submit(sample);
+                                        MetricSample rates = networkRates.toRates(sample);
+                                        fleetStats.record(companyId, rates);
+                                        alertEngine.evaluate(companyId, rates);
+                                        anomalyDetector.update(rates);
+                                        latestByDevice.merge(sample.deviceId(), new RatedSample(sample, rates),
+                                                        AgentService::newer);
+                                } catch (IngestionRejectedException ex) {
+                                        backpressure = ex;
+                                        error = ex.getMessage();
+                                }
+                        }
 
-                if (!device.getCompany().getId().equals(company.getId())) {
-                        throw new RuntimeException("Unauthorized device");
+                        if (error == null) {
+                                accepted++;
+                        }
+                        results[i] = IngestItemResult.builder()
+                                        .index(i)
+                                        .deviceId(request != null ? request.getDeviceId() : null)
+                                        .accepted(error == null)
+                                        .error(error)
+                                        .build();
                 }
 
-                saveMetricsBatch(requests);
+                latestByDevice.forEach((deviceId, latest) -> {
+                        DeviceAuthorization device = devices.get(deviceId);
+                        deviceStateStore.update(latest.sample(), latest.rates());
+                        markSeen(device, receivedAt);
+                        publishLive(deviceId, latest.sample());
+                });
+
+                return IngestResponse.builder()
+                                .accepted(accepted)
+                                .rejected(items.size() - accepted)
+                                .retryAfterSeconds(backpressure != null ? backpressure.getRetryAfterSeconds() : null)
+                                .items(Arrays.asList(results))
+                                .build();
+        }
+
+        public IngestResponse ingestMetrics(List<MetricIngestItem> items, String agentToken) {
+                UUID companyId = deviceAuthorizationCache.getCompanyIdByApiToken(agentToken);
+                return ingestMetrics(items, companyId);
         }
 
-        @Transactional
         public void saveMetricDetail(MetricDetailRequest request) {
 
-                Device device = deviceRepository.findById(request.getDeviceId())
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
+                DeviceAuthorization device = deviceAuthorizationCache.getDevice(request.getDeviceId());
 
                 String detailsJson = "{}";
                 if (request.getDetails() != null) {
@@ -179,152 +271,159 @@ public class AgentService {
                         }
                 }
 
-                MetricDetail detail = MetricDetail.builder()
-                                .device(device)
-                                .detailsJson(detailsJson)
-                                .createdAt(LocalDateTime.now())
-                                .build();
-
-                MetricDetail saved = metricDetailRepository.save(detail);
+                // Written through the storage service so single snapshots get the same encoding as batches.
+                MetricDetailSample detail = new MetricDetailSample(device.deviceId(),
+                                ingestionWindow.serverTimestamp(device.deviceId(), System.currentTimeMillis()),
+                                detailsJson);
+                databaseBulkhead.run(() -> metricsStorageService.insertMetricDetails(List.of(detail)));
 
                 MetricDetailResponse response = MetricDetailResponse.builder()
-                                .id(saved.getId())
-                                .detailsJson(saved.getDetailsJson())
-                                .createdAt(saved.getCreatedAt())
+                                .detailsJson(detail.detailsJson())
+                                .createdAt(toLocalDateTime(detail.timestampMillis()))
                                 .build();
 
-                messagingTemplate.convertAndSend(
-                                "/topic/device-detail/" + device.getId(),
+                liveUpdatePublisher.publish(
+                                "/topic/device-detail/" + device.deviceId(),
                                 response);
         }
 
         public void saveMetricDetail(MetricDetailRequest request, String agentToken) {
-                Company company = getCompanyByAgentToken(agentToken);
-                Device device = deviceRepository.findById(request.getDeviceId())
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
-
-                if (!device.getCompany().getId().equals(company.getId())) {
-                        throw new RuntimeException("Unauthorized device");
-                }
+                UUID companyId = deviceAuthorizationCache.getCompanyIdByApiToken(agentToken);
+                deviceAuthorizationCache.authorize(request.getDeviceId(), companyId);
 
                 saveMetricDetail(request);
         }
 
-        @Transactional
-        public void saveMetricDetailsBatch(List<MetricDetailRequest> requests) {
-                if (requests == null || requests.isEmpty()) {
-                        return;
-                }
-
-                UUID deviceId = requests.get(0).getDeviceId();
-                if (deviceId == null) {
+        /**
+         * Batch decoded by {@link StreamingBatchReader}; the details are stored as
+         * the agent sent them, each with its own server stamp. Only the first
+         * detail's device is kept.
+         */
+        public void saveMetricDetailsBatch(List<MetricDetailSample> batch) {
+                if (batch == null || batch.isEmpty()) {
                         return;
                 }
 
-                Device device = deviceRepository.findById(deviceId)
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
+                UUID deviceId = batch.get(0).deviceId();
+                DeviceAuthorization device = deviceAuthorizationCache.getDevice(deviceId);
 
-                List<MetricDetail> details = buildMetricDetails(device, requests);
-                if (details.isEmpty()) {
-                        return;
+                List<MetricDetailSample> details = new ArrayList<>(batch.size());
+                for (MetricDetailSample detail : batch) {
+                        if (detail.deviceId().equals(deviceId)) {
+                                details.add(new MetricDetailSample(deviceId,
+                                                ingestionWindow.serverTimestamp(deviceId, detail.timestampMillis()),
+                                                detail.detailsJson()));
+                        }
                 }
 
-                List<MetricDetail> saved = metricDetailRepository.saveAll(details);
-                MetricDetail latest = saved.get(saved.size() - 1);
+                databaseBulkhead.run(() -> metricsStorageService.insertMetricDetails(details));
+
+                MetricDetailSample latest = details.get(details.size() - 1);
                 MetricDetailResponse response = MetricDetailResponse.builder()
-                                .id(latest.getId())
-                                .detailsJson(latest.getDetailsJson())
-                                .createdAt(latest.getCreatedAt())
+                                .detailsJson(latest.detailsJson())
+                                .createdAt(toLocalDateTime(latest.timestampMillis()))
                                 .build();
 
-                messagingTemplate.convertAndSend(
-                                "/topic/device-detail/" + device.getId(),
+                liveUpdatePublisher.publish(
+                                "/topic/device-detail/" + device.deviceId(),
                                 response);
         }
 
-        @Transactional
-        public void saveMetricDetailsBatch(List<MetricDetailRequest> requests, String agentToken) {
-                if (requests == null || requests.isEmpty()) {
+        public void saveMetricDetailsBatch(List<MetricDetailSample> batch, String agentToken) {
+                if (batch == null || batch.isEmpty()) {
                         return;
                 }
 
-                Company company = getCompanyByAgentToken(agentToken);
-                UUID deviceId = requests.get(0).getDeviceId();
-                if (deviceId == null) {
+                UUID companyId = deviceAuthorizationCache.getCompanyIdByApiToken(agentToken);
+                deviceAuthorizationCache.authorize(batch.get(0).deviceId(), companyId);
+
+                saveMetricDetailsBatch(batch);
+        }
+
+        // lastSeenAt is flushed in bulk by the heartbeat tracker; only an OFFLINE -> ONLINE
+        // transition is written and broadcast immediately.
+        private void markSeen(DeviceAuthorization device, long seenAtMillis) {
+                if (!heartbeatTracker.touch(device.deviceId(), seenAtMillis)) {
                         return;
                 }
 
-                Device device = deviceRepository.findById(deviceId)
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
+                deviceStatusScheduler.track(device.deviceId(), seenAtMillis);
 
-                if (!device.getCompany().getId().equals(company.getId())) {
-                        throw new RuntimeException("Unauthorized device");
-                }
+                LocalDateTime seenAt = toLocalDateTime(seenAtMillis);
+                databaseBulkhead.run(() -> deviceRepository.updateLastSeen(device.deviceId(), seenAt,
+                                DeviceStatus.ONLINE));
+                deviceAuthorizationCache.updateStatus(device.deviceId(), DeviceStatus.ONLINE, seenAt);
 
-                saveMetricDetailsBatch(requests);
+                messagingTemplate.convertAndSend(
+                                "/topic/device-status/" + device.deviceId(),
+                                DeviceStatus.ONLINE);
         }
 
-        private Company getCompanyByAgentToken(String agentToken) {
-                if (agentToken == null || agentToken.isBlank()) {
-                        throw new RuntimeException("Missing agent token");
+        private String validateItem(MetricRequest request, Map<UUID, DeviceAuthorization> devices) {
+                if (request == null) {
+                        return "Missing metric";
                 }
-                return companyRepository.findByApiToken(agentToken)
-                                .orElseThrow(() -> new RuntimeException("Invalid agent token"));
-        }
-
-        private List<Metric> buildMetrics(Device device, List<MetricRequest> requests) {
-                List<Metric> metrics = new ArrayList<>(requests.size());
 
-                for (MetricRequest request : requests) {
-                        if (request == null || request.getDeviceId() == null) {
-                                continue;
-                        }
-                        if (!request.getDeviceId().equals(device.getId())) {
-                                continue;
-                        }
+                Set<ConstraintViolation<MetricRequest>> violations = validator.validate(request);
+                if (!violations.isEmpty()) {
+                        ConstraintViolation<MetricRequest> violation = violations.iterator().next();
+                        return violation.getPropertyPath() + ": " + violation.getMessage();
+                }
 
-                        metrics.add(Metric.builder()
-                                        .device(device)
-                                        .cpuUsage(request.getCpuUsage())
-                                        .memoryUsage(request.getMemoryUsage())
-                                        .diskUsage(request.getDiskUsage())
-                                        .networkIn(request.getNetworkIn())
-                                        .networkOut(request.getNetworkOut())
-                                        .createdAt(LocalDateTime.now())
-                                        .build());
+                if (!devices.containsKey(request.getDeviceId())) {
+                        return "Unauthorized device";
                 }
+                return null;
+        }
 
-                return metrics;
+        // Samples are newest-last from the agent, but late retries can arrive after newer ones.
+        private static RatedSample newer(RatedSample current, RatedSample candidate) {
+                return current == null || candidate.sample().timestampMillis() >= current.sample().timestampMillis()
+                                ? candidate
+                                : current;
         }
 
-        private List<MetricDetail> buildMetricDetails(Device device, List<MetricDetailRequest> requests) {
-                List<MetricDetail> details = new ArrayList<>(requests.size());
+        private static MetricSample withTimestamp(MetricSample sample, long timestampMillis) {
+                return new MetricSample(sample.deviceId(), timestampMillis, sample.cpuUsage(), sample.memoryUsage(),
+                                sample.diskUsage(), sample.networkIn(), sample.networkOut(), false);
+        }
 
-                for (MetricDetailRequest request : requests) {
-                        if (request == null || request.getDeviceId() == null) {
-                                continue;
-                        }
-                        if (!request.getDeviceId().equals(device.getId())) {
-                                continue;
-                        }
+        private MetricSample toSample(MetricRequest request, long receivedAt) {
+                return new MetricSample(
+                                request.getDeviceId(),
+                                ingestionWindow.timestampOf(request.getDeviceId(), request.getTimestamp(), receivedAt),
+                                request.getCpuUsage(),
+                                request.getMemoryUsage(),
+                                request.getDiskUsage(),
+                                request.getNetworkIn(),
+                                request.getNetworkOut(),
+                                request.getTimestamp() != null);
+        }
 
-                        String detailsJson = "{}";
-                        if (request.getDetails() != null) {
-                                try {
-                                        detailsJson = objectMapper.writeValueAsString(request.getDetails());
-                                } catch (JsonProcessingException e) {
-                                        throw new RuntimeException("Failed to serialize details", e);
-                                }
-                        }
+        // Anomaly scores go out next to the live values, scored against the baseline before this sample.
+        private void publishLive(UUID deviceId, MetricSample sample) {
+                liveUpdatePublisher.publish("/topic/device/" + deviceId, toLiveMetric(sample));
+                liveUpdatePublisher.publish("/topic/device-anomaly/" + deviceId, anomalyDetector.snapshot(deviceId));
+        }
 
-                        details.add(MetricDetail.builder()
-                                        .device(device)
-                                        .detailsJson(detailsJson)
-                                        .createdAt(LocalDateTime.now())
-                                        .build());
-                }
+        // Live subscribers only need the values; the row itself is written by the ingestion pipeline.
+        private LiveMetric toLiveMetric(MetricSample sample) {
+                return LiveMetric.builder()
+                                .cpuUsage(sample.cpuUsage())
+                                .memoryUsage(sample.memoryUsage())
+                                .diskUsage(sample.diskUsage())
+                                .networkIn(sample.networkIn())
+                                .networkOut(sample.networkOut())
+                                .createdAt(toLocalDateTime(sample.timestampMillis()))
+                                .build();
+        }
+
+        private LocalDateTime toLocalDateTime(long epochMillis) {
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        }
 
-                return details;
+        // A sample and the same sample with network rates, see NetworkRates#toRates.
+        private record RatedSample(MetricSample sample, MetricSample rates) {
         }
 
 }
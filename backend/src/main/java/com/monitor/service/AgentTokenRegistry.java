@@ -0,0 +1,107 @@
+package com.monitor.service;
+
+import com.monitor.entity.Company;
+import com.monitor.repository.CompanyRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every company's agent token, held as SHA-256 → company id. Loaded once the
+ * application is ready, updated in place when a company registers or rotates
+ * its token, and reloaded periodically to pick up changes made by other
+ * instances. Once loaded, agent authentication is a hash plus a map lookup and
+ * never touches the database; until then lookups fall back to
+ * {@code findByApiToken}.
+ */
+@Component
+public class AgentTokenRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentTokenRegistry.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompanyRepository companyRepository;
+    private final Map<ByteBuffer, UUID> companiesByToken = new ConcurrentHashMap<>();
+    private final Map<UUID, ByteBuffer> tokensByCompany = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public AgentTokenRegistry(JdbcTemplate jdbcTemplate, CompanyRepository companyRepository,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.companyRepository = companyRepository;
+
+        Gauge.builder("monitor.agent.tokens", companiesByToken, Map::size)
+                .description("Agent tokens held by the in-memory registry")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+        loaded = true;
+        logger.info("Loaded {} agent tokens", companiesByToken.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.agentTokens.reloadIntervalMs:300000}",
+            initialDelayString = "${app.agentTokens.reloadIntervalMs:300000}")
+    public void reload() {
+        Map<UUID, ByteBuffer> current = new HashMap<>();
+        jdbcTemplate.query("SELECT id, api_token FROM company WHERE api_token IS NOT NULL",
+                rs -> {
+                    current.put(rs.getObject("id", UUID.class), TokenHash.sha256(rs.getString("api_token")));
+                });
+
+        current.forEach(this::index);
+        tokensByCompany.keySet().removeIf(companyId -> {
+            if (current.containsKey(companyId)) {
+                return false;
+            }
+            ByteBuffer stale = tokensByCompany.get(companyId);
+            if (stale != null) {
+                companiesByToken.remove(stale, companyId);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Returns the company owning the token, or {@code null} if there is none.
+     */
+    public UUID findCompanyId(String apiToken) {
+        if (apiToken == null || apiToken.isBlank()) {
+            return null;
+        }
+        if (!loaded) {
+            return companyRepository.findByApiToken(apiToken).map(Company::getId).orElse(null);
+        }
+        return companiesByToken.get(TokenHash.sha256(apiToken));
+    }
+
+    /**
+     * Registers a new company's token or replaces a rotated one; the previous
+     * token of the company stops resolving immediately.
+     */
+    public void put(UUID companyId, String apiToken) {
+        index(companyId, TokenHash.sha256(apiToken));
+    }
+
+    private void index(UUID companyId, ByteBuffer tokenHash) {
+        ByteBuffer previous = tokensByCompany.put(companyId, tokenHash);
+        companiesByToken.put(tokenHash, companyId);
+        if (previous != null && !previous.equals(tokenHash)) {
+            companiesByToken.remove(previous, companyId);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.monitor.service;
+
+import com.monitor.dto.AlertEvent;
+import com.monitor.dto.AlertState;
+import com.monitor.dto.FleetMetric;
+import com.monitor.entity.AlertOperator;
+import com.monitor.entity.AlertRule;
+import com.monitor.entity.AlertRuleType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates alert rules against samples as they are ingested. Rules live in
+ * memory, compiled per company into one array per device, and each device
+ * keeps two primitive arrays beside it: when the current streak of the rule's
+ * condition began, and whether the rule is firing. A threshold rule fires once
+ * its condition has held for {@code forSeconds} and, to avoid flapping,
+ * resolves only once the value has stayed back past the threshold by the
+ * rule's hysteresis for as long. Heartbeat rules are checked on a timer
+ * against {@link DeviceHeartbeatTracker}. Transitions are published to
+ * {@code /topic/alerts/{companyId}}; evaluating a sample never touches the
+ * database. Firing state is not persisted: after a restart, an alert fires
+ * again once its condition has held for {@code forSeconds}. Network rules
+ * compare the rates from {@link NetworkRates}; a sample without a rate leaves
+ * them unchanged.
+ */
+@Component
+public class AlertEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertEngine.class);
+
+    private static final long NONE = Long.MIN_VALUE;
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final DeviceHeartbeatTracker heartbeatTracker;
+    private final DeviceStateStore deviceStateStore;
+
+    private final Map<UUID, RuleSet> rules = new ConcurrentHashMap<>();
+    private final Map<UUID, DeviceAlerts> devices = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<AlertKey, AlertEvent>> firing = new ConcurrentHashMap<>();
+
+    public AlertEngine(
+            JdbcTemplate jdbcTemplate,
+            SimpMessagingTemplate messagingTemplate,
+            DeviceHeartbeatTracker heartbeatTracker,
+            DeviceStateStore deviceStateStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.heartbeatTracker = heartbeatTracker;
+        this.deviceStateStore = deviceStateStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<UUID, List<AlertRule>> byCompany = new HashMap<>();
+        jdbcTemplate.query("SELECT id, company_id, name, device_id, type, metric, operator, threshold, "
+                + "hysteresis, for_seconds FROM alert_rule",
+                rs -> {
+                    String metric = rs.getString("metric");
+                    String operator = rs.getString("operator");
+                    byCompany.computeIfAbsent(rs.getObject("company_id", UUID.class), id -> new ArrayList<>())
+                            .add(AlertRule.builder()
+                                    .id(rs.getObject("id", UUID.class))
+                                    .name(rs.getString("name"))
+                                    .deviceId(rs.getObject("device_id", UUID.class))
+                                    .type(AlertRuleType.valueOf(rs.getString("type")))
+                                    .metric(metric != null ? FleetMetric.valueOf(metric) : null)
+                                    .operator(operator != null ? AlertOperator.valueOf(operator) : null)
+                                    .threshold(rs.getDouble("threshold"))
+                                    .hysteresis(rs.getDouble("hysteresis"))
+                                    .forSeconds(rs.getInt("for_seconds"))
+                                    .build());
+                });
+        byCompany.forEach(this::replaceRules);
+        logger.info("Loaded alert rules for {} companies", byCompany.size());
+    }
+
+    /**
+     * Replaces every rule of the company. Alerts firing for a rule that is gone
+     * are resolved.
+     */
+    public void replaceRules(UUID companyId, List<AlertRule> companyRules) {
+        if (companyRules.isEmpty()) {
+            rules.remove(companyId);
+        } else {
+            rules.put(companyId, RuleSet.of(companyRules));
+        }
+
+        Map<AlertKey, AlertEvent> active = firing.get(companyId);
+        if (active == null) {
+            return;
+        }
+        Set<UUID> remaining = new HashSet<>();
+        for (AlertRule rule : companyRules) {
+            remaining.add(rule.getId());
+        }
+        for (AlertKey key : List.copyOf(active.keySet())) {
+            AlertEvent fired = remaining.contains(key.ruleId()) ? null : active.remove(key);
+            if (fired != null) {
+                publish(companyId, AlertEvent.builder()
+                        .ruleId(fired.getRuleId())
+                        .ruleName(fired.getRuleName())
+                        .deviceId(fired.getDeviceId())
+                        .type(fired.getType())
+                        .state(AlertState.RESOLVED)
+                        .metric(fired.getMetric())
+                        .threshold(fired.getThreshold())
+                        .value(fired.getValue())
+                        .at(LocalDateTime.now())
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Steps the device's threshold rules with an accepted sample. Samples older
+     * than one already evaluated for the device are skipped. {@code sample}
+     * carries network rates, see {@link NetworkRates#toRates}.
+     */
+    public void evaluate(UUID companyId, MetricSample sample) {
+        RuleSet set = rules.get(companyId);
+        if (set == null || !set.hasThresholds) {
+            return;
+        }
+        Rule[] applicable = set.forDevice(sample.deviceId());
+        if (applicable.length == 0) {
+            return;
+        }
+
+        List<AlertEvent> events = null;
+        DeviceAlerts state = state(sample.deviceId());
+        synchronized (state) {
+            state.sync(applicable);
+            if (sample.timestampMillis() < state.lastSampleMillis) {
+                return;
+            }
+            state.lastSampleMillis = sample.timestampMillis();
+
+            for (int i = 0; i < applicable.length; i++) {
+                Rule rule = applicable[i];
+                if (rule.metric() == null) {
+                    continue;
+                }
+                double value = valueOf(rule.metric(), sample);
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                AlertState transition = state.step(i, state.firing[i] ? rule.cleared(value) : rule.breached(value),
+                        sample.timestampMillis(), rule.forMillis());
+                if (transition != null) {
+                    if (events == null) {
+                        events = new ArrayList<>(2);
+                    }
+                    events.add(event(rule, sample.deviceId(), transition, value, sample.timestampMillis()));
+                }
+            }
+        }
+
+        if (events != null) {
+            for (AlertEvent event : events) {
+                transition(companyId, event);
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.alerts.heartbeatTickMs:1000}")
+    public void checkHeartbeats() {
+        long now = System.currentTimeMillis();
+        rules.forEach((companyId, set) -> {
+            if (set.minHeartbeatMillis != Long.MAX_VALUE) {
+                deviceStateStore.forEachDevice(companyId, deviceId -> checkHeartbeat(companyId, set, deviceId, now));
+            }
+        });
+    }
+
+    /**
+     * Alerts currently firing for the company's devices.
+     */
+    public List<AlertEvent> active(UUID companyId) {
+        Map<AlertKey, AlertEvent> active = firing.get(companyId);
+        return active != null ? new ArrayList<>(active.values()) : List.of();
+    }
+
+    private void checkHeartbeat(UUID companyId, RuleSet set, UUID deviceId, long now) {
+        long lastSeen = heartbeatTracker.getLastSeenMillis(deviceId);
+        if (lastSeen == 0L) {
+            return;
+        }
+        long silence = now - lastSeen;
+        DeviceAlerts state = devices.get(deviceId);
+        // Nothing can fire and nothing is firing: skip without allocating state.
+        if (state == null && silence < set.minHeartbeatMillis) {
+            return;
+        }
+        Rule[] applicable = set.forDevice(deviceId);
+        if (state == null) {
+            state = state(deviceId);
+        }
+
+        List<AlertEvent> events = null;
+        synchronized (state) {
+            state.sync(applicable);
+            for (int i = 0; i < applicable.length; i++) {
+                Rule rule = applicable[i];
+                if (rule.type() != AlertRuleType.NO_HEARTBEAT || (silence >= rule.forMillis()) == state.firing[i]) {
+                    continue;
+                }
+                state.firing[i] = !state.firing[i];
+                if (events == null) {
+                    events = new ArrayList<>(1);
+                }
+                events.add(event(rule, deviceId, state.firing[i] ? AlertState.FIRING : AlertState.RESOLVED,
+                        TimeUnit.MILLISECONDS.toSeconds(silence), now));
+            }
+        }
+
+        if (events != null) {
+            for (AlertEvent event : events) {
+                transition(companyId, event);
+            }
+        }
+    }
+
+    private DeviceAlerts state(UUID deviceId) {
+        DeviceAlerts state = devices.get(deviceId);
+        if (state == null) {
+            state = devices.computeIfAbsent(deviceId, id -> new DeviceAlerts());
+        }
+        return state;
+    }
+
+    private void transition(UUID companyId, AlertEvent event) {
+        AlertKey key = new AlertKey(event.getRuleId(), event.getDeviceId());
+        if (event.getState() == AlertState.FIRING) {
+            firing.computeIfAbsent(companyId, id -> new ConcurrentHashMap<>()).put(key, event);
+        } else {
+            Map<AlertKey, AlertEvent> active = firing.get(companyId);
+            if (active != null) {
+                active.remove(key);
+            }
+        }
+        publish(companyId, event);
+    }
+
+    private void publish(UUID companyId, AlertEvent event) {
+        logger.info("Alert {} {} for device {}", event.getState(), event.getRuleId(), event.getDeviceId());
+        messagingTemplate.convertAndSend("/topic/alerts/" + companyId, event);
+    }
+
+    private static AlertEvent event(Rule rule, UUID deviceId, AlertState state, double value, long atMillis) {
+        return AlertEvent.builder()
+                .ruleId(rule.id())
+                .ruleName(rule.name())
+                .deviceId(deviceId)
+                .type(rule.type())
+                .state(state)
+                .metric(rule.metric())
+                .threshold(rule.metric() != null ? rule.threshold() : null)
+                .value(value)
+                .at(LocalDateTime.ofInstant(Instant.ofEpochMilli(atMillis), ZoneId.systemDefault()))
+                .build();
+    }
+
+    private static double valueOf(FleetMetric metric, MetricSample sample) {
+        return switch (metric) {
+            case CPU -> sample.cpuUsage();
+            case MEMORY -> sample.memoryUsage();
+            case DISK -> sample.diskUsage();
+            case NETWORK_IN -> sample.networkIn();
+            case NETWORK_OUT -> sample.networkOut();
+        };
+    }
+
+    private record AlertKey(UUID ruleId, UUID deviceId) {
+    }
+
+    private record Rule(
+            UUID id,
+            String name,
+            AlertRuleType type,
+            FleetMetric metric,
+            boolean above,
+            double threshold,
+            double hysteresis,
+            long forMillis) {
+
+        private static Rule of(AlertRule rule) {
+            return new Rule(rule.getId(), rule.getName(), rule.getType(),
+                    rule.getType() == AlertRuleType.THRESHOLD ? rule.getMetric() : null,
+                    rule.getOperator() != AlertOperator.BELOW, rule.getThreshold(), rule.getHysteresis(),
+                    TimeUnit.SECONDS.toMillis(rule.getForSeconds()));
+        }
+
+        private boolean breached(double value) {
+            return above ? value > threshold : value < threshold;
+        }
+
+        private boolean cleared(double value) {
+            return above ? value <= threshold - hysteresis : value >= threshold + hysteresis;
+        }
+    }
+
+    // Company-wide rules, plus for each device with rules of its own, those followed by the company's.
+    private static final class RuleSet {
+        private final Rule[] companyWide;
+        private final Map<UUID, Rule[]> byDevice;
+        private final boolean hasThresholds;
+        private final long minHeartbeatMillis;
+
+        private RuleSet(Rule[] companyWide, Map<UUID, Rule[]> byDevice, boolean hasThresholds,
+                long minHeartbeatMillis) {
+            this.companyWide = companyWide;
+            this.byDevice = byDevice;
+            this.hasThresholds = hasThresholds;
+            this.minHeartbeatMillis = minHeartbeatMillis;
+        }
+
+        private static RuleSet of(List<AlertRule> rules) {
+            List<Rule> companyWide = new ArrayList<>();
+            Map<UUID, List<Rule>> deviceRules = new HashMap<>();
+            boolean hasThresholds = false;
+            long minHeartbeatMillis = Long.MAX_VALUE;
+            for (AlertRule source : rules) {
+                Rule rule = Rule.of(source);
+                if (source.getDeviceId() == null) {
+                    companyWide.add(rule);
+                } else {
+                    deviceRules.computeIfAbsent(source.getDeviceId(), id -> new ArrayList<>()).add(rule);
+                }
+                if (rule.type() == AlertRuleType.NO_HEARTBEAT) {
+                    minHeartbeatMillis = Math.min(minHeartbeatMillis, rule.forMillis());
+                } else if (rule.metric() != null) {
+                    hasThresholds = true;
+                }
+            }
+
+            Rule[] shared = companyWide.toArray(NO_RULES);
+            Map<UUID, Rule[]> byDevice = new HashMap<>();
+            deviceRules.forEach((deviceId, own) -> {
+                Rule[] merged = Arrays.copyOf(own.toArray(NO_RULES), own.size() + shared.length);
+                System.arraycopy(shared, 0, merged, own.size(), shared.length);
+                byDevice.put(deviceId, merged);
+            });
+            return new RuleSet(shared, byDevice, hasThresholds, minHeartbeatMillis);
+        }
+
+        private Rule[] forDevice(UUID deviceId) {
+            Rule[] rules = byDevice.get(deviceId);
+            return rules != null ? rules : companyWide;
+        }
+    }
+
+    // Per-device state, aligned with the rule array it was last synced to. Guarded by itself.
+    private static final class DeviceAlerts {
+        private Rule[] rules = NO_RULES;
+        private long[] since = new long[0];
+        private boolean[] firing = new boolean[0];
+        private long lastSampleMillis = Long.MIN_VALUE;
+
+        // Re-aligns to a new rule array, carrying the state of rules that are still there.
+        private void sync(Rule[] current) {
+            if (current == rules) {
+                return;
+            }
+            long[] nextSince = new long[current.length];
+            boolean[] nextFiring = new boolean[current.length];
+            Arrays.fill(nextSince, NONE);
+            for (int i = 0; i < current.length; i++) {
+                for (int j = 0; j < rules.length; j++) {
+                    if (rules[j].id().equals(current[i].id())) {
+                        nextSince[i] = since[j];
+                        nextFiring[i] = firing[j];
+                        break;
+                    }
+                }
+            }
+            rules = current;
+            since = nextSince;
+            firing = nextFiring;
+        }
+
+        // Extends or breaks the streak of the condition that would flip the rule; flips it once the streak is long enough.
+        private AlertState step(int i, boolean holding, long atMillis, long forMillis) {
+            if (!holding) {
+                since[i] = NONE;
+                return null;
+            }
+            if (since[i] == NONE) {
+                since[i] = atMillis;
+            }
+            if (atMillis - since[i] < forMillis) {
+                return null;
+            }
+            since[i] = NONE;
+            firing[i] = !firing[i];
+            return firing[i] ? AlertState.FIRING : AlertState.RESOLVED;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.monitor.service;
+
+import com.monitor.dto.AlertEvent;
+import com.monitor.dto.AlertRuleRequest;
+import com.monitor.dto.AlertRuleResponse;
+import com.monitor.dto.FleetMetric;
+import com.monitor.entity.AlertOperator;
+import com.monitor.entity.AlertRule;
+import com.monitor.entity.AlertRuleType;
+import com.monitor.repository.AlertRuleRepository;
+import com.monitor.repository.CompanyRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Alert rule CRUD. Every change reloads the company's rules into
+ * {@link AlertEngine}, which is the only reader on the ingest path.
+ */
+@Service
+@RequiredArgsConstructor
+public class AlertService {
+
+        private final AlertRuleRepository alertRuleRepository;
+        private final CompanyRepository companyRepository;
+        private final DeviceAuthorizationCache deviceAuthorizationCache;
+        private final AlertEngine alertEngine;
+
+        @Value("${app.alerts.maxRulesPerCompany:100}")
+        private int maxRulesPerCompany;
+
+        public List<AlertRuleResponse> getRules(UUID companyId) {
+                return alertRuleRepository.findByCompanyId(companyId).stream()
+                                .map(AlertService::toResponse)
+                                .toList();
+        }
+
+        public AlertRuleResponse createRule(UUID companyId, AlertRuleRequest request) {
+                if (request.getDeviceId() != null) {
+                        deviceAuthorizationCache.authorize(request.getDeviceId(), companyId);
+                }
+
+                AlertRule.AlertRuleBuilder rule = AlertRule.builder()
+                                .name(request.getName())
+                                .deviceId(request.getDeviceId())
+                                .type(request.getType())
+                                .forSeconds(request.getForSeconds())
+                                .createdAt(LocalDateTime.now())
+                                .company(companyRepository.getReferenceById(companyId));
+
+                if (request.getType() == AlertRuleType.THRESHOLD) {
+                        if (request.getMetric() == null || request.getMetric().isBlank()) {
+                                throw new IllegalArgumentException("'metric' is required for threshold rules");
+                        }
+                        rule.metric(FleetMetric.fromParam(request.getMetric()))
+                                        .operator(request.getOperator() != null ? request.getOperator()
+                                                        : AlertOperator.ABOVE)
+                                        .threshold(request.getThreshold())
+                                        .hysteresis(request.getHysteresis());
+                } else if (request.getForSeconds() <= 0) {
+                        throw new IllegalArgumentException("'forSeconds' must be positive for heartbeat rules");
+                }
+
+                List<AlertRule> rules = alertRuleRepository.findByCompanyId(companyId);
+                if (rules.size() >= maxRulesPerCompany) {
+                        throw new IllegalArgumentException("A company can have at most " + maxRulesPerCompany
+                                        + " alert rules");
+                }
+
+                AlertRule saved = alertRuleRepository.save(rule.build());
+                reload(companyId);
+                return toResponse(saved);
+        }
+
+        public void deleteRule(UUID companyId, UUID ruleId) {
+                AlertRule rule = alertRuleRepository.findById(ruleId)
+                                .filter(found -> found.getCompany().getId().equals(companyId))
+                                .orElseThrow(() -> new RuntimeException("Alert rule not found"));
+
+                alertRuleRepository.delete(rule);
+                reload(companyId);
+        }
+
+        public List<AlertEvent> getActiveAlerts(UUID companyId) {
+                return alertEngine.active(companyId);
+        }
+
+        private void reload(UUID companyId) {
+                alertEngine.replaceRules(companyId, alertRuleRepository.findByCompanyId(companyId));
+        }
+
+        private static AlertRuleResponse toResponse(AlertRule rule) {
+                return AlertRuleResponse.builder()
+                                .id(rule.getId())
+                                .name(rule.getName())
+                                .deviceId(rule.getDeviceId())
+                                .type(rule.getType())
+                                .metric(rule.getMetric())
+                                .operator(rule.getOperator())
+                                .threshold(rule.getThreshold())
+                                .hysteresis(rule.getHysteresis())
+                                .forSeconds(rule.getForSeconds())
+                                .createdAt(rule.getCreatedAt())
+                                .build();
+        }
+}
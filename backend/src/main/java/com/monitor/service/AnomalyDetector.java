@@ -0,0 +1,292 @@
+package com.monitor.service;
+
+import com.monitor.dto.AnomalyResponse;
+import com.monitor.dto.FleetMetric;
+import com.monitor.dto.MetricAnomaly;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-device baselines of the five metrics, learned online from every accepted
+ * sample as an exponentially weighted mean and variance, so each device costs
+ * a few dozen primitives however long it reports. A sample is scored against
+ * the baseline before it is folded in: the score is its distance from the
+ * mean in standard deviations, and {@code app.anomaly.threshold} or more is
+ * anomalous. Network baselines learn the rates from {@link NetworkRates}; a
+ * sample without a rate leaves them unchanged. Baselines are checkpointed to
+ * {@code device_baseline} every {@code app.anomaly.checkpointIntervalMs} and
+ * on shutdown, and reloaded at startup.
+ */
+@Component
+public class AnomalyDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetector.class);
+
+    private static final FleetMetric[] METRICS = FleetMetric.values();
+    private static final int CHECKPOINT_CHUNK_SIZE = 500;
+    private static final String[] COLUMNS = { "cpu", "memory", "disk", "network_in", "network_out" };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double alpha;
+    private final long warmupSamples;
+    private final double threshold;
+    private final Map<UUID, Baseline> baselines = new ConcurrentHashMap<>();
+    private volatile boolean checkpointing;
+
+    public AnomalyDetector(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.anomaly.alpha:0.01}") double alpha,
+            @Value("${app.anomaly.warmupSamples:60}") long warmupSamples,
+            @Value("${app.anomaly.threshold:4}") double threshold) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("app.anomaly.alpha must be in (0, 1]");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.alpha = alpha;
+        this.warmupSamples = Math.max(warmupSamples, 1);
+        this.threshold = threshold;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            StringBuilder ddl = new StringBuilder("CREATE TABLE IF NOT EXISTS device_baseline ("
+                    + "device_id UUID PRIMARY KEY, samples BIGINT NOT NULL, sampled_at TIMESTAMP NOT NULL");
+            for (String column : COLUMNS) {
+                ddl.append(", ").append(column).append("_mean DOUBLE PRECISION NOT NULL, ")
+                        .append(column).append("_var DOUBLE PRECISION NOT NULL");
+            }
+            jdbcTemplate.execute(ddl.append(')').toString());
+
+            jdbcTemplate.query("SELECT * FROM device_baseline", rs -> {
+                Baseline baseline = new Baseline();
+                long samples = rs.getLong("samples");
+                baseline.samples = samples;
+                baseline.sampledAt = rs.getTimestamp("sampled_at").getTime();
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    baseline.counts[i] = samples;
+                    baseline.means[i] = rs.getDouble(COLUMNS[i] + "_mean");
+                    baseline.variances[i] = rs.getDouble(COLUMNS[i] + "_var");
+                    baseline.values[i] = baseline.means[i];
+                }
+                baselines.put(rs.getObject("device_id", UUID.class), baseline);
+            });
+            checkpointing = true;
+            logger.info("Loaded anomaly baselines for {} devices", baselines.size());
+        } catch (Exception ex) {
+            logger.warn("Anomaly baselines unavailable, they will be learned again and not checkpointed", ex);
+        }
+    }
+
+    /**
+     * Scores the sample against its device's baseline, then folds it in.
+     * Samples not newer than the last one learned are ignored. {@code sample}
+     * carries network rates, see {@link NetworkRates#toRates}.
+     */
+    public void update(MetricSample sample) {
+        Baseline baseline = baselines.get(sample.deviceId());
+        if (baseline == null) {
+            baseline = baselines.computeIfAbsent(sample.deviceId(), id -> new Baseline());
+        }
+
+        synchronized (baseline) {
+            long timestamp = sample.timestampMillis();
+            if (timestamp <= baseline.sampledAt) {
+                return;
+            }
+            learn(baseline, 0, sample.cpuUsage());
+            learn(baseline, 1, sample.memoryUsage());
+            learn(baseline, 2, sample.diskUsage());
+            if (!Double.isNaN(sample.networkIn())) {
+                learn(baseline, 3, sample.networkIn());
+            }
+            if (!Double.isNaN(sample.networkOut())) {
+                learn(baseline, 4, sample.networkOut());
+            }
+            baseline.sampledAt = timestamp;
+            baseline.samples++;
+            baseline.version++;
+        }
+    }
+
+    /**
+     * Baseline and score of the device's latest sample for each metric it has
+     * learned. Devices without a baseline have no metrics.
+     */
+    public AnomalyResponse snapshot(UUID deviceId) {
+        AnomalyResponse.AnomalyResponseBuilder response = AnomalyResponse.builder().deviceId(deviceId);
+        Baseline baseline = baselines.get(deviceId);
+        if (baseline == null) {
+            return response.metrics(List.of()).build();
+        }
+
+        List<MetricAnomaly> metrics = new ArrayList<>(METRICS.length);
+        synchronized (baseline) {
+            for (FleetMetric metric : METRICS) {
+                int i = metric.ordinal();
+                if (baseline.counts[i] == 0) {
+                    continue;
+                }
+                double score = baseline.scores[i];
+                metrics.add(MetricAnomaly.builder()
+                        .metric(metric)
+                        .value(baseline.values[i])
+                        .mean(baseline.means[i])
+                        .stdDev(Math.sqrt(baseline.variances[i]))
+                        .score(Double.isNaN(score) ? null : score)
+                        .anomalous(Math.abs(score) >= threshold)
+                        .build());
+            }
+            response.samples(baseline.samples)
+                    .sampledAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(baseline.sampledAt),
+                            ZoneId.systemDefault()));
+        }
+        return response.metrics(metrics).build();
+    }
+
+    @Scheduled(fixedDelayString = "${app.anomaly.checkpointIntervalMs:60000}")
+    public void checkpoint() {
+        if (!checkpointing) {
+            return;
+        }
+
+        List<Checkpoint> dirty = new ArrayList<>();
+        baselines.forEach((deviceId, baseline) -> {
+            synchronized (baseline) {
+                if (baseline.version != baseline.checkpointedVersion) {
+                    dirty.add(new Checkpoint(deviceId, baseline, baseline.version, baseline.samples,
+                            baseline.sampledAt, baseline.means.clone(), baseline.variances.clone()));
+                }
+            }
+        });
+
+        for (int from = 0; from < dirty.size(); from += CHECKPOINT_CHUNK_SIZE) {
+            List<Checkpoint> chunk = dirty.subList(from, Math.min(from + CHECKPOINT_CHUNK_SIZE, dirty.size()));
+            try {
+                writeChunk(chunk);
+                for (Checkpoint checkpoint : chunk) {
+                    synchronized (checkpoint.baseline()) {
+                        checkpoint.baseline().checkpointedVersion = checkpoint.version();
+                    }
+                }
+            } catch (Exception ex) {
+                logger.error("Failed to checkpoint {} anomaly baselines", chunk.size(), ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    private void learn(Baseline baseline, int i, double value) {
+        double mean = baseline.means[i];
+        double variance = baseline.variances[i];
+        if (baseline.counts[i] >= warmupSamples) {
+            baseline.scores[i] = (value - mean) / stdDevFloor(METRICS[i], mean, variance);
+        } else {
+            baseline.scores[i] = Double.NaN;
+        }
+
+        if (baseline.counts[i] == 0) {
+            baseline.means[i] = value;
+            baseline.variances[i] = 0;
+        } else {
+            double diff = value - mean;
+            double increment = alpha * diff;
+            baseline.means[i] = mean + increment;
+            baseline.variances[i] = (1 - alpha) * (variance + diff * increment);
+        }
+        baseline.counts[i]++;
+        baseline.values[i] = value;
+    }
+
+    // A flat series would make any change infinitely anomalous; never divide by less than this.
+    private static double stdDevFloor(FleetMetric metric, double mean, double variance) {
+        double floor = metric.isPercent() ? 0.5 : Math.max(1.0, Math.abs(mean) * 0.01);
+        return Math.max(Math.sqrt(variance), floor);
+    }
+
+    private void writeChunk(List<Checkpoint> chunk) {
+        StringBuilder columns = new StringBuilder("device_id, samples, sampled_at");
+        StringBuilder updates = new StringBuilder("samples = EXCLUDED.samples, sampled_at = EXCLUDED.sampled_at");
+        StringBuilder row = new StringBuilder("(?::uuid, ?, ?");
+        for (String column : COLUMNS) {
+            columns.append(", ").append(column).append("_mean, ").append(column).append("_var");
+            updates.append(", ").append(column).append("_mean = EXCLUDED.").append(column).append("_mean, ")
+                    .append(column).append("_var = EXCLUDED.").append(column).append("_var");
+            row.append(", ?, ?");
+        }
+        row.append(')');
+
+        StringBuilder sql = new StringBuilder(128 + chunk.size() * row.length())
+                .append("INSERT INTO device_baseline (").append(columns).append(") VALUES ");
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(row);
+        }
+        sql.append(" ON CONFLICT (device_id) DO UPDATE SET ").append(updates)
+                .append(" WHERE device_baseline.samples <= EXCLUDED.samples");
+
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            int index = 1;
+            for (Checkpoint checkpoint : chunk) {
+                ps.setObject(index++, checkpoint.deviceId());
+                ps.setLong(index++, checkpoint.samples());
+                ps.setTimestamp(index++, new Timestamp(checkpoint.sampledAt()));
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    ps.setDouble(index++, checkpoint.means()[i]);
+                    ps.setDouble(index++, checkpoint.variances()[i]);
+                }
+            }
+            return ps;
+        });
+    }
+
+    private record Checkpoint(
+            UUID deviceId,
+            Baseline baseline,
+            long version,
+            long samples,
+            long sampledAt,
+            double[] means,
+            double[] variances) {
+    }
+
+    // Guarded by itself. Indexed by FleetMetric ordinal.
+    private static final class Baseline {
+        private final long[] counts = new long[METRICS.length];
+        private final double[] means = new double[METRICS.length];
+        private final double[] variances = new double[METRICS.length];
+        private final double[] values = new double[METRICS.length];
+        private final double[] scores = new double[METRICS.length];
+        private long samples;
+        private long sampledAt;
+        private long version;
+        private long checkpointedVersion;
+
+        private Baseline() {
+            Arrays.fill(scores, Double.NaN);
+        }
+    }
+}
@@ -18,6 +18,7 @@ public class AuthService {
     private final CompanyRepository companyRepository;
     private final JwtService jwtService;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final AgentTokenRegistry agentTokenRegistry;
 
     public Company register(RegisterRequest request) {
 
@@ -31,7 +32,9 @@ public class AuthService {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        return companyRepository.save(company);
+        Company saved = companyRepository.save(company);
+        agentTokenRegistry.put(saved.getId(), saved.getApiToken());
+        return saved;
     }
 
     public String login(LoginRequest request) {
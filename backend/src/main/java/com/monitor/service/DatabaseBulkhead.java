@@ -0,0 +1,108 @@
+package com.monitor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many request threads touch the database at once. With virtual
+ * threads there is no pool size to do that implicitly, and thousands of
+ * sessions would otherwise queue inside Hikari and fail after its connection
+ * timeout. Permits default to the Hikari pool minus the connections held by the
+ * ingestion shards, so request work never starves the batch writers. It stays
+ * on with platform threads too: Tomcat's thread pool is still far larger than
+ * the connection pool, and the permits are what hold back the shards'
+ * connections. Callers that cannot get a permit within
+ * {@code acquireTimeoutMs} fail with a {@link DatabaseBusyException}. Nested
+ * calls on the same thread reuse the outer permit.
+ */
+@Component
+public class DatabaseBulkhead {
+
+    private static final ThreadLocal<Boolean> HOLDING = new ThreadLocal<>();
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    private final long retryAfterSeconds;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public DatabaseBulkhead(
+            MeterRegistry meterRegistry,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${app.ingest.shards:4}") int ingestShards,
+            @Value("${app.db.maxConcurrent:0}") int maxConcurrent,
+            @Value("${app.db.acquireTimeoutMs:5000}") long acquireTimeoutMs,
+            @Value("${app.db.retryAfterSeconds:2}") long retryAfterSeconds) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Math.max(poolSize - Math.max(ingestShards, 0), 1);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.acquireTimeoutMs = Math.max(acquireTimeoutMs, 0);
+        this.retryAfterSeconds = Math.max(retryAfterSeconds, 1);
+
+        this.waitTimer = Timer.builder("monitor.db.bulkhead.wait")
+                .description("Time spent waiting for a database permit")
+                .register(meterRegistry);
+        Gauge.builder("monitor.db.bulkhead.waiting", waiting, AtomicInteger::get)
+                .description("Threads waiting for a database permit")
+                .register(meterRegistry);
+        Gauge.builder("monitor.db.bulkhead.active", permits, s -> this.maxConcurrent - s.availablePermits())
+                .description("Threads currently holding a database permit")
+                .register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> work) {
+        if (HOLDING.get() != null) {
+            return work.get();
+        }
+
+        acquire();
+        HOLDING.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            HOLDING.remove();
+            permits.release();
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired = false;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+
+        if (!acquired) {
+            throw new DatabaseBusyException("Database busy, retry later", retryAfterSeconds);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.monitor.service;
+
+public class DatabaseBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public DatabaseBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,21 @@
+package com.monitor.service;
+
+import com.monitor.entity.DeviceStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The slice of a {@link com.monitor.entity.Device} that the ingest paths need
+ * to authorize a sample and decide whether a status change must be broadcast.
+ */
+public record DeviceAuthorization(
+        UUID deviceId,
+        UUID companyId,
+        DeviceStatus status,
+        LocalDateTime lastSeenAt) {
+
+    public DeviceAuthorization withStatus(DeviceStatus newStatus, LocalDateTime seenAt) {
+        return new DeviceAuthorization(deviceId, companyId, newStatus, seenAt != null ? seenAt : lastSeenAt);
+    }
+}
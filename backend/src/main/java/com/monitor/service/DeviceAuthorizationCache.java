@@ -0,0 +1,133 @@
+package com.monitor.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.monitor.entity.Device;
+import com.monitor.entity.DeviceStatus;
+import com.monitor.repository.DeviceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded, TTL-evicting lookups shared by every ingest and command entry point
+ * so that a sample costs no device or company query once its device is warm.
+ * Agent tokens are resolved by {@link AgentTokenRegistry}.
+ * Entries are refreshed on registration and on status changes; anything else
+ * that mutates a device row must call {@link #invalidate(UUID)}.
+ */
+@Component
+public class DeviceAuthorizationCache {
+
+    private final DeviceRepository deviceRepository;
+    private final AgentTokenRegistry agentTokenRegistry;
+    private final DatabaseBulkhead databaseBulkhead;
+    private final Cache<UUID, DeviceAuthorization> devices;
+
+    public DeviceAuthorizationCache(
+            DeviceRepository deviceRepository,
+            AgentTokenRegistry agentTokenRegistry,
+            DatabaseBulkhead databaseBulkhead,
+            MeterRegistry meterRegistry,
+            @Value("${app.authCache.maxDevices:100000}") long maxDevices,
+            @Value("${app.authCache.ttlSeconds:300}") long ttlSeconds) {
+        this.deviceRepository = deviceRepository;
+        this.agentTokenRegistry = agentTokenRegistry;
+        this.databaseBulkhead = databaseBulkhead;
+
+        Duration ttl = Duration.ofSeconds(Math.max(ttlSeconds, 1));
+        this.devices = Caffeine.newBuilder()
+                .maximumSize(Math.max(maxDevices, 1))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, devices, "deviceAuthorization");
+    }
+
+    public DeviceAuthorization getDevice(UUID deviceId) {
+        DeviceAuthorization authorization = devices.get(deviceId, id -> databaseBulkhead
+                .call(() -> deviceRepository.findById(id))
+                .map(DeviceAuthorizationCache::toAuthorization)
+                .orElse(null));
+        if (authorization == null) {
+            throw new RuntimeException("Device not found");
+        }
+        return authorization;
+    }
+
+    /**
+     * Returns the device if it belongs to the company, otherwise throws the same
+     * errors the ingest paths have always surfaced.
+     */
+    public DeviceAuthorization authorize(UUID deviceId, UUID companyId) {
+        DeviceAuthorization authorization = getDevice(deviceId);
+        if (!authorization.companyId().equals(companyId)) {
+            throw new RuntimeException("Unauthorized device");
+        }
+        return authorization;
+    }
+
+    /**
+     * Authorizes a set of devices at once. Devices missing from the cache are
+     * loaded with a single {@code IN} query. The result holds only the devices
+     * that exist and belong to the company.
+     */
+    public Map<UUID, DeviceAuthorization> authorizeAll(Collection<UUID> deviceIds, UUID companyId) {
+        Map<UUID, DeviceAuthorization> found = devices.getAll(deviceIds, missing -> {
+            Map<UUID, DeviceAuthorization> loaded = new HashMap<>();
+            databaseBulkhead.call(() -> deviceRepository.findAllById(List.copyOf(missing)))
+                    .forEach(device -> loaded.put(device.getId(), toAuthorization(device)));
+            return loaded;
+        });
+
+        Map<UUID, DeviceAuthorization> authorized = new HashMap<>(found.size());
+        found.forEach((deviceId, authorization) -> {
+            if (authorization.companyId().equals(companyId)) {
+                authorized.put(deviceId, authorization);
+            }
+        });
+        return authorized;
+    }
+
+    public UUID getCompanyIdByApiToken(String apiToken) {
+        if (apiToken == null || apiToken.isBlank()) {
+            throw new RuntimeException("Missing agent token");
+        }
+
+        UUID companyId = agentTokenRegistry.findCompanyId(apiToken);
+        if (companyId == null) {
+            throw new RuntimeException("Invalid agent token");
+        }
+        return companyId;
+    }
+
+    public void put(Device device) {
+        devices.put(device.getId(), toAuthorization(device));
+    }
+
+    public void updateStatus(UUID deviceId, DeviceStatus status, LocalDateTime seenAt) {
+        devices.asMap().computeIfPresent(deviceId, (id, current) -> current.withStatus(status, seenAt));
+    }
+
+    public void invalidate(UUID deviceId) {
+        devices.invalidate(deviceId);
+    }
+
+    private static DeviceAuthorization toAuthorization(Device device) {
+        return new DeviceAuthorization(
+                device.getId(),
+                device.getCompany().getId(),
+                device.getStatus(),
+                device.getLastSeenAt());
+    }
+}
@@ -0,0 +1,189 @@
+package com.monitor.service;
+
+import com.monitor.entity.DeviceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory last-seen table for every known device. Ingest only moves a
+ * primitive timestamp forward, and {@link #flush()} periodically writes the
+ * devices that changed with a single {@code UPDATE ... FROM (VALUES ...)}
+ * instead of one full-row UPDATE per sample. This table, not the
+ * {@code device} row, is what offline detection reads. It is loaded by
+ * {@link DeviceStatusScheduler} at startup so liveness tracking sees every
+ * device that was online before the restart.
+ */
+@Component
+public class DeviceHeartbeatTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceHeartbeatTracker.class);
+
+    private static final int FLUSH_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<UUID, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    public DeviceHeartbeatTracker(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void load() {
+        jdbcTemplate.query("SELECT id, last_seen_at, status FROM device WHERE last_seen_at IS NOT NULL", rs -> {
+            Heartbeat heartbeat = heartbeats.computeIfAbsent(rs.getObject("id", UUID.class), id -> new Heartbeat());
+            long lastSeen = rs.getTimestamp("last_seen_at").getTime();
+            heartbeat.advance(lastSeen);
+            heartbeat.flushedMillis = lastSeen;
+            if (DeviceStatus.ONLINE.name().equals(rs.getString("status"))) {
+                heartbeat.online.set(true);
+            }
+        });
+        logger.info("Loaded heartbeats for {} devices", heartbeats.size());
+    }
+
+    /**
+     * Records a sample for the device. Returns {@code true} when the device was
+     * considered offline, so the caller can persist and broadcast the transition.
+     */
+    public boolean touch(UUID deviceId, long seenAtMillis) {
+        Heartbeat heartbeat = heartbeats.get(deviceId);
+        if (heartbeat == null) {
+            heartbeat = heartbeats.computeIfAbsent(deviceId, id -> new Heartbeat());
+        }
+
+        heartbeat.advance(seenAtMillis);
+        return !heartbeat.online.get() && heartbeat.online.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks a freshly registered device online without waiting for its first sample.
+     */
+    public void register(UUID deviceId, long seenAtMillis) {
+        Heartbeat heartbeat = heartbeats.computeIfAbsent(deviceId, id -> new Heartbeat());
+        heartbeat.advance(seenAtMillis);
+        heartbeat.flushedMillis = seenAtMillis;
+        heartbeat.online.set(true);
+    }
+
+    public long getLastSeenMillis(UUID deviceId) {
+        Heartbeat heartbeat = heartbeats.get(deviceId);
+        return heartbeat != null ? heartbeat.lastSeenMillis.get() : 0L;
+    }
+
+    public DeviceStatus getStatus(UUID deviceId) {
+        Heartbeat heartbeat = heartbeats.get(deviceId);
+        if (heartbeat == null) {
+            return null;
+        }
+        return heartbeat.online.get() ? DeviceStatus.ONLINE : DeviceStatus.OFFLINE;
+    }
+
+    /**
+     * Flips the device to offline if it is online and was last seen before
+     * {@code cutoffMillis}. Returns {@code false} when the device reported in the
+     * meantime, in which case it stays online.
+     */
+    public boolean markOffline(UUID deviceId, long cutoffMillis) {
+        Heartbeat heartbeat = heartbeats.get(deviceId);
+        if (heartbeat == null
+                || heartbeat.lastSeenMillis.get() >= cutoffMillis
+                || !heartbeat.online.compareAndSet(true, false)) {
+            return false;
+        }
+        if (heartbeat.lastSeenMillis.get() >= cutoffMillis) {
+            heartbeat.online.compareAndSet(false, true);
+            return false;
+        }
+        return true;
+    }
+
+    public void forEachOnline(BiConsumer<UUID, Long> consumer) {
+        heartbeats.forEach((deviceId, heartbeat) -> {
+            if (heartbeat.online.get()) {
+                consumer.accept(deviceId, heartbeat.lastSeenMillis.get());
+            }
+        });
+    }
+
+    public int size() {
+        return heartbeats.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.heartbeat.flushIntervalMs:5000}")
+    public void flush() {
+        List<UUID> ids = new ArrayList<>();
+        List<Long> seen = new ArrayList<>();
+
+        heartbeats.forEach((deviceId, heartbeat) -> {
+            long lastSeen = heartbeat.lastSeenMillis.get();
+            if (lastSeen > heartbeat.flushedMillis) {
+                ids.add(deviceId);
+                seen.add(lastSeen);
+            }
+        });
+
+        for (int from = 0; from < ids.size(); from += FLUSH_CHUNK_SIZE) {
+            int to = Math.min(from + FLUSH_CHUNK_SIZE, ids.size());
+            try {
+                writeChunk(ids.subList(from, to), seen.subList(from, to));
+                for (int i = from; i < to; i++) {
+                    heartbeats.get(ids.get(i)).flushedMillis = seen.get(i);
+                }
+            } catch (Exception ex) {
+                logger.error("Failed to flush {} device heartbeats", to - from, ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeChunk(List<UUID> ids, List<Long> seen) {
+        StringBuilder sql = new StringBuilder(96 + ids.size() * 28);
+        sql.append("UPDATE device SET last_seen_at = v.seen_at FROM (VALUES ");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "(?::uuid, ?::timestamp)" : ", (?::uuid, ?::timestamp)");
+        }
+        sql.append(") AS v(id, seen_at) WHERE device.id = v.id")
+                .append(" AND (device.last_seen_at IS NULL OR device.last_seen_at < v.seen_at)");
+
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            int index = 1;
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setObject(index++, ids.get(i));
+                ps.setTimestamp(index++, new Timestamp(seen.get(i)));
+            }
+            return ps;
+        });
+    }
+
+    private static final class Heartbeat {
+        private final AtomicLong lastSeenMillis = new AtomicLong();
+        private final AtomicBoolean online = new AtomicBoolean();
+        private volatile long flushedMillis;
+
+        private void advance(long seenAtMillis) {
+            long current = lastSeenMillis.get();
+            while (seenAtMillis > current && !lastSeenMillis.compareAndSet(current, seenAtMillis)) {
+                current = lastSeenMillis.get();
+            }
+        }
+    }
+}
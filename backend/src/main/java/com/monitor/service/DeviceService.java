@@ -1,10 +1,24 @@
 package com.monitor.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.monitor.dto.AnomalyResponse;
 import com.monitor.dto.DeviceResponse;
+import com.monitor.dto.DeviceSummaryResponse;
+import com.monitor.dto.FleetMetric;
+import com.monitor.dto.FleetStatsResponse;
+import com.monitor.dto.FleetWindow;
+import com.monitor.dto.MetricAggregation;
 import com.monitor.dto.MetricDetailResponse;
+import com.monitor.dto.MetricRangeResponse;
+import com.monitor.dto.ProcessRangeResponse;
 import com.monitor.entity.Company;
 import com.monitor.entity.Device;
+import com.monitor.entity.DeviceStatus;
 import com.monitor.entity.MetricDetail;
+import com.monitor.entity.MetricDetailFormat;
 import com.monitor.repository.CompanyRepository;
 import com.monitor.repository.DeviceRepository;
 import lombok.RequiredArgsConstructor;
@@ -12,21 +26,57 @@ import com.monitor.entity.Metric;
 import com.monitor.repository.MetricDetailRepository;
 import com.monitor.repository.MetricRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class DeviceService {
 
+        private static final Logger logger = LoggerFactory.getLogger(DeviceService.class);
+        private static final Pattern DETAIL_FIELD = Pattern.compile("[A-Za-z0-9_]{1,64}");
+
         private final CompanyRepository companyRepository;
         private final DeviceRepository deviceRepository;
         private final MetricRepository metricRepository;
         private final MetricDetailRepository metricDetailRepository;
+        private final DeviceAuthorizationCache deviceAuthorizationCache;
+        private final DeviceHeartbeatTracker heartbeatTracker;
+        private final MetricsStorageService metricsStorageService;
+        private final MetricDetailCodec metricDetailCodec;
+        private final DatabaseBulkhead databaseBulkhead;
+        private final ObjectMapper objectMapper;
+        private final DeviceStateStore deviceStateStore;
+        private final FleetStats fleetStats;
+        private final AnomalyDetector anomalyDetector;
+
+        @Value("${app.metrics.maxPoints:500}")
+        private int maxPoints;
+
+        @Value("${app.metrics.detailPageSize:20}")
+        private int detailPageSize;
+
+        @Value("${app.metrics.detailMaxPageSize:100}")
+        private int detailMaxPageSize;
+
+        @Value("${app.fleet.maxTop:100}")
+        private int maxTopDevices;
 
         public List<DeviceResponse> getDevices(UUID companyId) {
 
@@ -40,41 +90,242 @@ public class DeviceService {
                                                 .hostname(device.getHostname())
                                                 .ipAddress(device.getIpAddress())
                                                 .os(device.getOs())
-                                                .status(device.getStatus())
-                                                .lastSeenAt(device.getLastSeenAt())
+                                                .status(currentStatus(device))
+                                                .lastSeenAt(currentLastSeenAt(device))
                                                 .build())
                                 .collect(Collectors.toList());
         }
 
-        public List<Metric> getMetrics(UUID deviceId) {
+        // Served from memory; see DeviceStateStore.
+        public List<DeviceSummaryResponse> getSummary(UUID companyId) {
+                return deviceStateStore.summarize(companyId);
+        }
 
-                Device device = deviceRepository.findById(deviceId)
-                                .orElseThrow();
+        public FleetStatsResponse getFleetStats(UUID companyId, String metric, String window) {
+                return fleetStats.stats(companyId, FleetMetric.fromParam(metric), FleetWindow.fromParam(window));
+        }
+
+        public List<DeviceSummaryResponse> getTopDevices(UUID companyId, String metric, Integer limit) {
+                int count = limit != null ? limit : 20;
+                if (count < 1 || count > maxTopDevices) {
+                        throw new IllegalArgumentException("'limit' must be between 1 and " + maxTopDevices);
+                }
+                return deviceStateStore.top(companyId, FleetMetric.fromParam(metric), count);
+        }
+
+        // Served from memory; see AnomalyDetector.
+        public AnomalyResponse getAnomaly(UUID companyId, UUID deviceId) {
+                deviceAuthorizationCache.authorize(deviceId, companyId);
+                return anomalyDetector.snapshot(deviceId);
+        }
+
+        public List<Metric> getMetrics(UUID companyId, UUID deviceId) {
+
+                deviceAuthorizationCache.authorize(deviceId, companyId);
+                Device device = deviceRepository.getReferenceById(deviceId);
 
                 return metricRepository.findTop50ByDeviceOrderByCreatedAtDesc(device);
         }
 
-        @Transactional(readOnly = true)
-        public List<MetricDetailResponse> getDetailedMetrics(UUID companyId, UUID deviceId) {
-                Company company = companyRepository.findById(companyId)
-                                .orElseThrow(() -> new RuntimeException("Company not found"));
+        /**
+         * Downsampled series for {@code [from, to)}. The effective step is widened so
+         * that no more than {@code app.metrics.maxPoints} buckets are returned.
+         */
+        public MetricRangeResponse getMetricRange(UUID companyId, UUID deviceId, LocalDateTime from,
+                        LocalDateTime to, Long stepSeconds, String agg) {
+
+                deviceAuthorizationCache.authorize(deviceId, companyId);
+
+                LocalDateTime end = to != null ? to : LocalDateTime.now();
+                if (!from.isBefore(end)) {
+                        throw new IllegalArgumentException("'from' must be before 'to'");
+                }
+
+                MetricAggregation aggregation = MetricAggregation.fromParam(agg);
+                long step = effectiveStep(from, end, stepSeconds);
+
+                return MetricRangeResponse.builder()
+                                .deviceId(deviceId)
+                                .from(from)
+                                .to(end)
+                                .stepSeconds(step)
+                                .agg(aggregation)
+                                .points(databaseBulkhead.call(() -> metricsStorageService
+                                                .queryMetricRange(deviceId, from, end, step, aggregation)))
+                                .build();
+        }
+
+        /**
+         * Downsampled series of one process name, optionally one pid, extracted
+         * from the device's detail snapshots. Capped like {@link #getMetricRange}.
+         */
+        public ProcessRangeResponse getProcessRange(UUID companyId, UUID deviceId, String name, Integer pid,
+                        LocalDateTime from, LocalDateTime to, Long stepSeconds, String agg) {
+
+                deviceAuthorizationCache.authorize(deviceId, companyId);
+
+                if (name == null || name.isBlank() || name.length() > 255) {
+                        throw new IllegalArgumentException("'name' must be between 1 and 255 characters");
+                }
+                LocalDateTime end = to != null ? to : LocalDateTime.now();
+                if (!from.isBefore(end)) {
+                        throw new IllegalArgumentException("'from' must be before 'to'");
+                }
+
+                MetricAggregation aggregation = MetricAggregation.fromParam(agg);
+                long step = effectiveStep(from, end, stepSeconds);
+
+                return ProcessRangeResponse.builder()
+                                .deviceId(deviceId)
+                                .name(name)
+                                .pid(pid)
+                                .from(from)
+                                .to(end)
+                                .stepSeconds(step)
+                                .agg(aggregation)
+                                .points(databaseBulkhead.call(() -> metricsStorageService
+                                                .queryProcessRange(deviceId, name, pid, from, end, step, aggregation)))
+                                .build();
+        }
+
+        // The requested step, widened so that no more than app.metrics.maxPoints buckets come back.
+        private long effectiveStep(LocalDateTime from, LocalDateTime to, Long stepSeconds) {
+                long rangeSeconds = Math.max(Duration.between(from, to).getSeconds(), 1);
+                long minStep = (rangeSeconds + Math.max(maxPoints, 1) - 1) / Math.max(maxPoints, 1);
+                return Math.max(Math.max(stepSeconds != null ? stepSeconds : 0L, minStep), 1L);
+        }
+
+        /**
+         * Locates a page of detail snapshots, newest first, without reading them.
+         * The cursor is exclusive: pass the {@code createdAt} and {@code id} of the
+         * last item as {@code before} and {@code beforeId} to get the next page.
+         * {@code fields} limits each snapshot to those top-level keys.
+         */
+        public MetricDetailPage findDetailPage(UUID companyId, UUID deviceId, LocalDateTime before, Long beforeId,
+                        Integer limit, List<String> fields) {
+                deviceAuthorizationCache.authorize(deviceId, companyId);
 
-                Device device = deviceRepository.findById(deviceId)
-                                .orElseThrow(() -> new RuntimeException("Device not found"));
+                int pageSize = limit != null ? limit : detailPageSize;
+                if (pageSize < 1 || pageSize > detailMaxPageSize) {
+                        throw new IllegalArgumentException("'limit' must be between 1 and " + detailMaxPageSize);
+                }
+                if (beforeId != null && before == null) {
+                        throw new IllegalArgumentException("'beforeId' requires 'before'");
+                }
 
-                if (!device.getCompany().getId().equals(company.getId())) {
-                        throw new RuntimeException("Unauthorized");
+                List<String> projection = new ArrayList<>();
+                if (fields != null) {
+                        for (String field : fields) {
+                                String name = field.trim();
+                                if (name.isEmpty() || projection.contains(name)) {
+                                        continue;
+                                }
+                                if (!DETAIL_FIELD.matcher(name).matches()) {
+                                        throw new IllegalArgumentException("Invalid field '" + name + "'");
+                                }
+                                projection.add(name);
+                        }
                 }
 
-                List<MetricDetail> details = metricDetailRepository
-                                .findTop20ByDeviceOrderByCreatedAtDesc(device);
+                return databaseBulkhead.call(() -> metricsStorageService
+                                .findDetailPage(deviceId, before, beforeId, pageSize, List.copyOf(projection)));
+        }
 
-                return details.stream()
-                                .map(detail -> MetricDetailResponse.builder()
+        public List<MetricDetailResponse> getDetailedMetrics(MetricDetailPage page) {
+                if (page.ids().isEmpty()) {
+                        return List.of();
+                }
+
+                return databaseBulkhead.call(() -> {
+                        List<MetricDetail> details = metricsStorageService.queryDetailPage(page);
+                        Map<LocalDateTime, MetricDetail> keyframes = loadKeyframes(
+                                        deviceRepository.getReferenceById(page.deviceId()), details);
+
+                        List<MetricDetailResponse> responses = new ArrayList<>(details.size());
+                        for (MetricDetail detail : details) {
+                                String detailsJson;
+                                try {
+                                        detailsJson = metricDetailCodec.decode(detail,
+                                                        keyframes.get(detail.getDetailsBaseAt()));
+                                        if (isCompressed(detail) && !page.fields().isEmpty()) {
+                                                detailsJson = project(detailsJson, page.fields());
+                                        }
+                                } catch (RuntimeException ex) {
+                                        // Corrupt, or a delta read after its keyframe expired but before the
+                                        // nightly cleanup removed it with that keyframe.
+                                        logger.warn("Skipping undecodable metric detail {}", detail.getId(), ex);
+                                        continue;
+                                }
+
+                                responses.add(MetricDetailResponse.builder()
                                                 .id(detail.getId())
-                                                .detailsJson(detail.getDetailsJson())
+                                                .detailsJson(detailsJson)
                                                 .createdAt(detail.getCreatedAt())
-                                                .build())
-                                .collect(Collectors.toList());
+                                                .build());
+                        }
+                        return responses;
+                });
+        }
+
+        private static boolean isCompressed(MetricDetail detail) {
+                return detail.getDetailsFormat() != null && detail.getDetailsFormat() != MetricDetailFormat.TEXT;
+        }
+
+        // Same result as the JSONB projection TEXT rows get in the database.
+        private String project(String detailsJson, List<String> fields) {
+                try {
+                        JsonNode document = objectMapper.readTree(detailsJson);
+                        ObjectNode projected = objectMapper.createObjectNode();
+                        for (String field : fields) {
+                                JsonNode value = document.get(field);
+                                if (value != null) {
+                                        projected.set(field, value);
+                                }
+                        }
+                        return objectMapper.writeValueAsString(projected);
+                } catch (JsonProcessingException e) {
+                        throw new RuntimeException("Malformed metric detail document", e);
+                }
+        }
+
+        // Keyframes referenced by delta rows; most are already on the page.
+        private Map<LocalDateTime, MetricDetail> loadKeyframes(Device device, List<MetricDetail> details) {
+                Map<LocalDateTime, MetricDetail> keyframes = new HashMap<>();
+                Set<LocalDateTime> missing = new HashSet<>();
+                for (MetricDetail detail : details) {
+                        if (detail.getDetailsFormat() == MetricDetailFormat.DEFLATE) {
+                                keyframes.put(detail.getCreatedAt(), detail);
+                        }
+                }
+                for (MetricDetail detail : details) {
+                        LocalDateTime baseAt = detail.getDetailsBaseAt();
+                        if (detail.getDetailsFormat() == MetricDetailFormat.DEFLATE_DELTA
+                                        && baseAt != null && !keyframes.containsKey(baseAt)) {
+                                missing.add(baseAt);
+                        }
+                }
+
+                if (!missing.isEmpty()) {
+                        for (MetricDetail keyframe : metricDetailRepository.findByDeviceAndCreatedAtIn(device, missing)) {
+                                if (keyframe.getDetailsFormat() == MetricDetailFormat.DEFLATE) {
+                                        keyframes.put(keyframe.getCreatedAt(), keyframe);
+                                }
+                        }
+                }
+                return keyframes;
+        }
+
+        // The device row lags the heartbeat tracker by up to one flush interval.
+        private DeviceStatus currentStatus(Device device) {
+                DeviceStatus status = heartbeatTracker.getStatus(device.getId());
+                return status != null ? status : device.getStatus();
+        }
+
+        private LocalDateTime currentLastSeenAt(Device device) {
+                long lastSeenMillis = heartbeatTracker.getLastSeenMillis(device.getId());
+                if (lastSeenMillis == 0L) {
+                        return device.getLastSeenAt();
+                }
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSeenMillis), ZoneId.systemDefault());
         }
 }
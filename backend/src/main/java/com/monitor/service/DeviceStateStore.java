@@ -0,0 +1,349 @@
+package com.monitor.service;
+
+import com.monitor.dto.DeviceSummaryResponse;
+import com.monitor.dto.FleetMetric;
+import com.monitor.entity.Device;
+import com.monitor.entity.DeviceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.VarHandle;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Latest sample of every known device, kept in memory so the fleet overview
+ * never touches the database. Each device owns a slot in fixed-size pages of
+ * primitive arrays; ingestion overwrites the slot under a per-slot sequence
+ * number and readers retry if a write overlapped their copy. Each company holds
+ * a copy-on-write array of its slots, so a summary is one pass over the
+ * company's devices. Loaded at startup with every device and its newest sample
+ * from the last {@code app.deviceState.seedMinutes}; devices are added as they
+ * register. Every replaced sample is also moved in {@link FleetStats}, which
+ * narrows top-N queries down to the devices worth comparing. The fleet side
+ * (stats and top-N) uses the network rates from {@link NetworkRates}.
+ */
+@Component
+public class DeviceStateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceStateStore.class);
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    // cpu, memory, disk, network in/out counters, network in/out rates.
+    private static final int FIELDS = 7;
+    // Field of each FleetMetric, by ordinal.
+    private static final int[] FLEET_FIELDS = { 0, 1, 2, 5, 6 };
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeviceHeartbeatTracker heartbeatTracker;
+    private final FleetStats fleetStats;
+    private final long seedMillis;
+
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private final Map<UUID, int[]> companySlots = new ConcurrentHashMap<>();
+    private volatile Page[] pages = new Page[0];
+    private int size;
+
+    public DeviceStateStore(
+            JdbcTemplate jdbcTemplate,
+            DeviceHeartbeatTracker heartbeatTracker,
+            FleetStats fleetStats,
+            @Value("${app.deviceState.seedMinutes:60}") long seedMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.heartbeatTracker = heartbeatTracker;
+        this.fleetStats = fleetStats;
+        this.seedMillis = TimeUnit.MINUTES.toMillis(Math.max(seedMinutes, 0));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        jdbcTemplate.query("SELECT id, company_id, hostname, ip_address, os, status, last_seen_at FROM device",
+                rs -> {
+                    String status = rs.getString("status");
+                    Timestamp lastSeenAt = rs.getTimestamp("last_seen_at");
+                    register(new DeviceInfo(
+                            rs.getObject("id", UUID.class),
+                            rs.getObject("company_id", UUID.class),
+                            rs.getString("hostname"),
+                            rs.getString("ip_address"),
+                            rs.getString("os"),
+                            status != null ? DeviceStatus.valueOf(status) : null,
+                            lastSeenAt != null ? lastSeenAt.toLocalDateTime() : null));
+                });
+
+        if (seedMillis > 0) {
+            jdbcTemplate.query("SELECT DISTINCT ON (device_id) device_id, created_at, cpu_usage, memory_usage, "
+                    + "disk_usage, network_in, network_out FROM metric WHERE created_at >= ? "
+                    + "ORDER BY device_id, created_at DESC",
+                    rs -> {
+                        // A single sample per device has no rate.
+                        update(new MetricSample(
+                                rs.getObject("device_id", UUID.class),
+                                rs.getTimestamp("created_at").getTime(),
+                                rs.getDouble("cpu_usage"),
+                                rs.getDouble("memory_usage"),
+                                rs.getDouble("disk_usage"),
+                                rs.getDouble("network_in"),
+                                rs.getDouble("network_out")), Double.NaN, Double.NaN);
+                    },
+                    new Timestamp(System.currentTimeMillis() - seedMillis));
+        }
+        logger.info("Loaded latest state for {} devices", slots.size());
+    }
+
+    public void register(Device device) {
+        register(new DeviceInfo(device.getId(), device.getCompany().getId(), device.getHostname(),
+                device.getIpAddress(), device.getOs(), device.getStatus(), device.getLastSeenAt()));
+    }
+
+    /**
+     * Records the sample if it is at least as new as the one held for its device.
+     * {@code rates} is the same sample from {@link NetworkRates#toRates}. Samples
+     * of devices the store does not know are ignored.
+     */
+    public void update(MetricSample sample, MetricSample rates) {
+        update(sample, rates.networkIn(), rates.networkOut());
+    }
+
+    private void update(MetricSample sample, double inRate, double outRate) {
+        Integer slot = slots.get(sample.deviceId());
+        if (slot == null) {
+            return;
+        }
+
+        Page page = pages[slot >>> PAGE_SHIFT];
+        int index = slot & PAGE_MASK;
+        long version = lock(page.versions, index);
+        try {
+            long previousAt = page.sampledAt[index];
+            long sampledAt = sample.timestampMillis();
+            if (sampledAt >= previousAt) {
+                int offset = index * FIELDS;
+                double[] previous = previousAt != 0L ? fleetValues(page.values, offset) : null;
+                // A repeat of the same timestamp has no rate of its own and keeps the one already held.
+                boolean repeat = sampledAt == previousAt;
+                double[] current = { sample.cpuUsage(), sample.memoryUsage(), sample.diskUsage(),
+                        sample.networkIn(), sample.networkOut(),
+                        repeat ? page.values[offset + 5] : inRate,
+                        repeat ? page.values[offset + 6] : outRate };
+                System.arraycopy(current, 0, page.values, offset, FIELDS);
+                page.sampledAt[index] = sampledAt;
+                fleetStats.replaceLatest(page.devices.get(index).companyId(), previous, fleetValues(current, 0));
+            }
+        } finally {
+            page.versions.set(index, version + 2);
+        }
+    }
+
+    /**
+     * Status and latest sample of every device of the company, read from memory.
+     */
+    public List<DeviceSummaryResponse> summarize(UUID companyId) {
+        int[] members = companySlots.getOrDefault(companyId, NO_SLOTS);
+        Page[] current = pages;
+        double[] values = new double[FIELDS];
+        List<DeviceSummaryResponse> summaries = new ArrayList<>(members.length);
+        for (int slot : members) {
+            summaries.add(summarize(current, slot, values));
+        }
+        return summaries;
+    }
+
+    /**
+     * The company's {@code limit} devices with the highest latest value of the
+     * metric, highest first. Only devices at or above the cutoff bucket from
+     * {@link FleetStats} are compared.
+     */
+    public List<DeviceSummaryResponse> top(UUID companyId, FleetMetric metric, int limit) {
+        int cutoff = fleetStats.topCutoff(companyId, metric, limit);
+        if (cutoff < 0) {
+            return List.of();
+        }
+
+        int[] members = companySlots.getOrDefault(companyId, NO_SLOTS);
+        Page[] current = pages;
+        List<Candidate> candidates = collect(current, members, metric, cutoff);
+        // The histogram can trail the slots by a write; widen to every device if that left too few.
+        if (candidates.size() < limit && cutoff > 0) {
+            candidates = collect(current, members, metric, 0);
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::value).reversed());
+
+        double[] values = new double[FIELDS];
+        List<DeviceSummaryResponse> summaries = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Candidate candidate : candidates.subList(0, Math.min(limit, candidates.size()))) {
+            summaries.add(summarize(current, candidate.slot(), values));
+        }
+        return summaries;
+    }
+
+    /**
+     * Calls the action with the id of every device of the company.
+     */
+    public void forEachDevice(UUID companyId, Consumer<UUID> action) {
+        int[] members = companySlots.getOrDefault(companyId, NO_SLOTS);
+        Page[] current = pages;
+        for (int slot : members) {
+            action.accept(current[slot >>> PAGE_SHIFT].devices.get(slot & PAGE_MASK).deviceId());
+        }
+    }
+
+    private List<Candidate> collect(Page[] current, int[] members, FleetMetric metric, int cutoff) {
+        double threshold = FleetStats.lowerBound(metric, cutoff);
+        List<Candidate> candidates = new ArrayList<>();
+        for (int slot : members) {
+            double value = readValue(current[slot >>> PAGE_SHIFT], slot & PAGE_MASK, FLEET_FIELDS[metric.ordinal()]);
+            if (value >= threshold) {
+                candidates.add(new Candidate(slot, value));
+            }
+        }
+        return candidates;
+    }
+
+    private DeviceSummaryResponse summarize(Page[] current, int slot, double[] values) {
+        Page page = current[slot >>> PAGE_SHIFT];
+        int index = slot & PAGE_MASK;
+        long sampledAt = read(page, index, values);
+        DeviceInfo info = page.devices.get(index);
+
+        DeviceStatus status = heartbeatTracker.getStatus(info.deviceId());
+        long lastSeenMillis = heartbeatTracker.getLastSeenMillis(info.deviceId());
+        DeviceSummaryResponse.DeviceSummaryResponseBuilder summary = DeviceSummaryResponse.builder()
+                .id(info.deviceId())
+                .hostname(info.hostname())
+                .ipAddress(info.ipAddress())
+                .os(info.os())
+                .status(status != null ? status : info.status())
+                .lastSeenAt(lastSeenMillis != 0L ? toLocalDateTime(lastSeenMillis) : info.lastSeenAt());
+        if (sampledAt != 0L) {
+            summary.sampledAt(toLocalDateTime(sampledAt))
+                    .cpuUsage(values[0])
+                    .memoryUsage(values[1])
+                    .diskUsage(values[2])
+                    .networkIn(values[3])
+                    .networkOut(values[4])
+                    .networkInRate(Double.isNaN(values[5]) ? null : values[5])
+                    .networkOutRate(Double.isNaN(values[6]) ? null : values[6]);
+        }
+        return summary.build();
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    private synchronized void register(DeviceInfo info) {
+        Integer slot = slots.get(info.deviceId());
+        if (slot == null) {
+            if (size == pages.length * PAGE_SIZE) {
+                Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = new Page();
+                pages = grown;
+            }
+            slot = size++;
+            pages[slot >>> PAGE_SHIFT].devices.set(slot & PAGE_MASK, info);
+            int[] members = companySlots.getOrDefault(info.companyId(), NO_SLOTS);
+            int[] appended = Arrays.copyOf(members, members.length + 1);
+            appended[members.length] = slot;
+            companySlots.put(info.companyId(), appended);
+            slots.put(info.deviceId(), slot);
+            return;
+        }
+        pages[slot >>> PAGE_SHIFT].devices.set(slot & PAGE_MASK, info);
+    }
+
+    private static double[] fleetValues(double[] values, int offset) {
+        double[] fleet = new double[FLEET_FIELDS.length];
+        for (int i = 0; i < FLEET_FIELDS.length; i++) {
+            fleet[i] = values[offset + FLEET_FIELDS[i]];
+        }
+        return fleet;
+    }
+
+    // Writers of the same slot take turns; the version is odd while a write is in progress.
+    private static long lock(AtomicLongArray versions, int index) {
+        while (true) {
+            long version = versions.get(index);
+            if ((version & 1) == 0 && versions.compareAndSet(index, version, version + 1)) {
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static long read(Page page, int index, double[] values) {
+        int offset = index * FIELDS;
+        while (true) {
+            long version = page.versions.get(index);
+            if ((version & 1) == 0) {
+                System.arraycopy(page.values, offset, values, 0, FIELDS);
+                long sampledAt = page.sampledAt[index];
+                VarHandle.acquireFence();
+                if (page.versions.get(index) == version) {
+                    return sampledAt;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // One field of the slot, or NaN before the first sample.
+    private static double readValue(Page page, int index, int field) {
+        while (true) {
+            long version = page.versions.get(index);
+            if ((version & 1) == 0) {
+                double value = page.sampledAt[index] != 0L ? page.values[index * FIELDS + field] : Double.NaN;
+                VarHandle.acquireFence();
+                if (page.versions.get(index) == version) {
+                    return value;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private record Candidate(int slot, double value) {
+    }
+
+    private record DeviceInfo(
+            UUID deviceId,
+            UUID companyId,
+            String hostname,
+            String ipAddress,
+            String os,
+            DeviceStatus status,
+            LocalDateTime lastSeenAt) {
+    }
+
+    private static final class Page {
+        private final AtomicReferenceArray<DeviceInfo> devices = new AtomicReferenceArray<>(PAGE_SIZE);
+        private final AtomicLongArray versions = new AtomicLongArray(PAGE_SIZE);
+        private final long[] sampledAt = new long[PAGE_SIZE];
+        private final double[] values = new double[PAGE_SIZE * FIELDS];
+    }
+}
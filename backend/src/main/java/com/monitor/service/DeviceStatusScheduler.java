@@ -1,48 +1,131 @@
 package com.monitor.service;
 
-import com.monitor.entity.Device;
 import com.monitor.entity.DeviceStatus;
 import com.monitor.repository.DeviceRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Event-driven offline detection. Each online device holds one deadline in a
+ * {@link LivenessTimerWheel}; heartbeats never touch the wheel; when a deadline
+ * fires, the device is either re-armed from its latest heartbeat or flipped to
+ * OFFLINE. A tick therefore only costs the devices whose deadline elapsed.
+ */
 @Component
-@RequiredArgsConstructor
 public class DeviceStatusScheduler {
 
+    private static final Logger logger = LoggerFactory.getLogger(DeviceStatusScheduler.class);
+
     private final DeviceRepository deviceRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final DeviceAuthorizationCache deviceAuthorizationCache;
+    private final DeviceHeartbeatTracker heartbeatTracker;
+    private final long graceMillis;
+    private final LivenessTimerWheel wheel;
+    private final Set<UUID> tracked = ConcurrentHashMap.newKeySet();
+    private final Timer detectionLatency;
 
-    // Runs every 30 seconds
-    @Scheduled(fixedRate = 30000)
-    public void checkOfflineDevices() {
+    public DeviceStatusScheduler(
+            DeviceRepository deviceRepository,
+            SimpMessagingTemplate messagingTemplate,
+            DeviceAuthorizationCache deviceAuthorizationCache,
+            DeviceHeartbeatTracker heartbeatTracker,
+            MeterRegistry meterRegistry,
+            @Value("${app.liveness.graceSeconds:30}") long graceSeconds,
+            @Value("${app.liveness.tickMs:1000}") long tickMillis,
+            @Value("${app.liveness.wheelSlots:512}") int wheelSlots) {
+        this.deviceRepository = deviceRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.deviceAuthorizationCache = deviceAuthorizationCache;
+        this.heartbeatTracker = heartbeatTracker;
+        this.graceMillis = TimeUnit.SECONDS.toMillis(Math.max(graceSeconds, 1));
+        this.wheel = new LivenessTimerWheel(Math.max(tickMillis, 10), Math.max(wheelSlots, 16),
+                System.currentTimeMillis());
 
-        List<Device> devices = deviceRepository.findAll();
+        this.detectionLatency = Timer.builder("monitor.liveness.detection.latency")
+                .description("Delay between a device's grace deadline and it being marked OFFLINE")
+                .register(meterRegistry);
+        Gauge.builder("monitor.liveness.tracked", tracked, Set::size)
+                .description("Online devices with an armed liveness deadline")
+                .register(meterRegistry);
+    }
 
-        for (Device device : devices) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        heartbeatTracker.load();
+        heartbeatTracker.forEachOnline(this::track);
+        logger.info("Liveness tracking armed for {} online devices", tracked.size());
+    }
 
-            if (device.getLastSeenAt() == null)
+    /**
+     * Arms the liveness deadline for a device that just came online. Safe to call
+     * repeatedly; a device holds at most one deadline.
+     */
+    public void track(UUID deviceId, long lastSeenMillis) {
+        if (tracked.add(deviceId)) {
+            wheel.schedule(deviceId, lastSeenMillis + graceMillis);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.liveness.tickMs:1000}")
+    public void checkOfflineDevices() {
+        long now = System.currentTimeMillis();
+        List<UUID> due = wheel.advance(now);
+        if (due.isEmpty()) {
+            return;
+        }
+
+        List<UUID> expired = new ArrayList<>();
+        for (UUID deviceId : due) {
+            long lastSeen = heartbeatTracker.getLastSeenMillis(deviceId);
+            long deadline = lastSeen + graceMillis;
+            if (deadline > now) {
+                wheel.schedule(deviceId, deadline);
                 continue;
+            }
+
+            tracked.remove(deviceId);
+            if (heartbeatTracker.markOffline(deviceId, now - graceMillis)) {
+                expired.add(deviceId);
+                detectionLatency.record(now - deadline, TimeUnit.MILLISECONDS);
+            } else if (heartbeatTracker.getStatus(deviceId) == DeviceStatus.ONLINE) {
+                // Reported between the deadline check and the flip.
+                track(deviceId, heartbeatTracker.getLastSeenMillis(deviceId));
+            }
+        }
+
+        if (expired.isEmpty()) {
+            return;
+        }
 
-            boolean shouldBeOffline = device.getLastSeenAt().isBefore(LocalDateTime.now().minusSeconds(30));
+        deviceRepository.updateStatus(expired, DeviceStatus.OFFLINE);
 
-            if (shouldBeOffline && device.getStatus() != DeviceStatus.OFFLINE) {
+        for (UUID deviceId : expired) {
 
-                device.setStatus(DeviceStatus.OFFLINE);
-                deviceRepository.save(device);
+            deviceAuthorizationCache.updateStatus(deviceId, DeviceStatus.OFFLINE, null);
 
-                System.out.println("Device marked OFFLINE: " + device.getHostname());
+            logger.info("Device marked OFFLINE: {}", deviceId);
 
-                // 🔴 Broadcast status change
-                messagingTemplate.convertAndSend(
-                        "/topic/device-status/" + device.getId(),
-                        device.getStatus());
-            }
+            // 🔴 Broadcast status change
+            messagingTemplate.convertAndSend(
+                    "/topic/device-status/" + deviceId,
+                    DeviceStatus.OFFLINE);
         }
     }
 }
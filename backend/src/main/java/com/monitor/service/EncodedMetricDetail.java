@@ -0,0 +1,20 @@
+package com.monitor.service;
+
+import com.monitor.entity.MetricDetailFormat;
+
+import java.util.UUID;
+
+/**
+ * Detail snapshot in its storage format, ready to be written by
+ * {@link MetricBulkWriter}. Exactly one of {@code detailsJson} and
+ * {@code detailsData} is set; {@code baseTimestampMillis} is only meaningful
+ * for {@link MetricDetailFormat#DEFLATE_DELTA}.
+ */
+public record EncodedMetricDetail(
+        UUID deviceId,
+        long timestampMillis,
+        MetricDetailFormat format,
+        String detailsJson,
+        byte[] detailsData,
+        long baseTimestampMillis) {
+}
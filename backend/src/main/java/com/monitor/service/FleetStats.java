@@ -0,0 +1,268 @@
+package com.monitor.service;
+
+import com.monitor.dto.FleetMetric;
+import com.monitor.dto.FleetStatsResponse;
+import com.monitor.dto.FleetWindow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Per-company distributions of the five metrics, maintained on ingest so a
+ * fleet statistic or a top-N cutoff is a walk over a fixed number of buckets
+ * rather than a read per device. Network metrics are per-second rates (see
+ * {@link NetworkRates}); a sample without a rate is left out of them.
+ * Percentages use 0.5-point buckets and network rates log buckets 4% wide, so
+ * min, max and percentiles are within 0.25 points or 2% of the exact value.
+ * Averages come from running sums: {@code RECENT} sums start over every minute,
+ * while the {@code LATEST} sum is never reset and gathers floating-point
+ * rounding as values are moved, so its average is approximate as well.
+ * {@code LATEST} holds one value per device, moved between buckets as
+ * {@link DeviceStateStore} replaces it; {@code RECENT} is a ring of per-minute
+ * histograms over every accepted sample. A company costs about 75 KB once it
+ * reports.
+ */
+@Component
+public class FleetStats {
+
+    static final int PERCENT_BUCKETS = 201;
+    static final int COUNTER_BUCKETS = 1024;
+
+    private static final double COUNTER_GROWTH = Math.log(1.04);
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final FleetMetric[] METRICS = FleetMetric.values();
+
+    private final Map<UUID, CompanyStats> companies = new ConcurrentHashMap<>();
+    private final int recentMinutes;
+
+    public FleetStats(@Value("${app.fleet.recentMinutes:5}") int recentMinutes) {
+        this.recentMinutes = Math.max(recentMinutes, 1);
+    }
+
+    static int bucketOf(FleetMetric metric, double value) {
+        if (metric.isPercent()) {
+            return (int) Math.min(Math.max(Math.round(value * 2), 0), PERCENT_BUCKETS - 1);
+        }
+        return (int) Math.min(Math.max(Math.log1p(value) / COUNTER_GROWTH, 0), COUNTER_BUCKETS - 1);
+    }
+
+    // Smallest value at or above which bucketOf returns at least the bucket, rounded down a hair.
+    static double lowerBound(FleetMetric metric, int bucket) {
+        if (bucket <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (metric.isPercent()) {
+            return (bucket - 0.5) / 2 - 1e-9;
+        }
+        return Math.expm1(bucket * COUNTER_GROWTH) * (1 - 1e-9);
+    }
+
+    // Value reported for everything that fell into the bucket.
+    static double valueOf(FleetMetric metric, int bucket) {
+        if (metric.isPercent()) {
+            return bucket / 2.0;
+        }
+        return Math.expm1((bucket + 0.5) * COUNTER_GROWTH);
+    }
+
+    /**
+     * Moves a device's latest values ({@code cpu, memory, disk, networkIn,
+     * networkOut}) out of their old buckets and into new ones. {@code previous}
+     * is null for the device's first sample. Callers serialize per device.
+     */
+    void replaceLatest(UUID companyId, double[] previous, double[] current) {
+        Histograms latest = company(companyId).latest;
+        if (previous != null) {
+            latest.add(previous, -1);
+        }
+        latest.add(current, 1);
+    }
+
+    /**
+     * Adds an accepted sample, with network rates from {@link NetworkRates}, to
+     * the minute it was collected in. Samples older than the recent window are
+     * ignored.
+     */
+    public void record(UUID companyId, MetricSample sample) {
+        long minute = Math.floorDiv(sample.timestampMillis(), MINUTE_MILLIS);
+        long now = Math.floorDiv(System.currentTimeMillis(), MINUTE_MILLIS);
+        if (minute <= now - recentMinutes || minute > now + 1) {
+            return;
+        }
+
+        MinuteSlot[] ring = company(companyId).recent;
+        MinuteSlot slot = ring[(int) Math.floorMod(minute, (long) ring.length)];
+        if (slot.minute != minute) {
+            synchronized (slot) {
+                if (slot.minute < minute) {
+                    slot.histograms.reset();
+                    slot.minute = minute;
+                }
+            }
+            if (slot.minute != minute) {
+                return;
+            }
+        }
+        slot.histograms.add(new double[] { sample.cpuUsage(), sample.memoryUsage(), sample.diskUsage(),
+                sample.networkIn(), sample.networkOut() }, 1);
+    }
+
+    public FleetStatsResponse stats(UUID companyId, FleetMetric metric, FleetWindow window) {
+        long[] counts = new long[bucketCount(metric)];
+        double sum = 0;
+
+        CompanyStats stats = companies.get(companyId);
+        if (stats != null && window == FleetWindow.LATEST) {
+            sum += stats.latest.copyInto(metric, counts);
+        } else if (stats != null) {
+            long now = Math.floorDiv(System.currentTimeMillis(), MINUTE_MILLIS);
+            for (MinuteSlot slot : stats.recent) {
+                long minute = slot.minute;
+                if (minute > now - recentMinutes && minute <= now + 1) {
+                    sum += slot.histograms.copyInto(metric, counts);
+                }
+            }
+        }
+
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        FleetStatsResponse.FleetStatsResponseBuilder response = FleetStatsResponse.builder()
+                .metric(metric)
+                .window(window)
+                .count(total);
+        if (total == 0) {
+            return response.build();
+        }
+
+        int min = 0;
+        while (counts[min] == 0) {
+            min++;
+        }
+        int max = counts.length - 1;
+        while (counts[max] == 0) {
+            max--;
+        }
+        return response
+                .min(valueOf(metric, min))
+                .max(valueOf(metric, max))
+                .avg(sum / total)
+                .p50(percentile(metric, counts, total, 0.50))
+                .p90(percentile(metric, counts, total, 0.90))
+                .p95(percentile(metric, counts, total, 0.95))
+                .p99(percentile(metric, counts, total, 0.99))
+                .build();
+    }
+
+    /**
+     * Lowest bucket that still holds one of the company's {@code limit} highest
+     * latest values: every device of the top N is in this bucket or above.
+     * Returns -1 when the company has no samples.
+     */
+    int topCutoff(UUID companyId, FleetMetric metric, int limit) {
+        CompanyStats stats = companies.get(companyId);
+        if (stats == null) {
+            return -1;
+        }
+
+        AtomicIntegerArray counts = stats.latest.counts[metric.ordinal()];
+        long seen = 0;
+        for (int bucket = counts.length() - 1; bucket >= 0; bucket--) {
+            seen += counts.get(bucket);
+            if (seen >= limit) {
+                return bucket;
+            }
+        }
+        return seen > 0 ? 0 : -1;
+    }
+
+    private static double percentile(FleetMetric metric, long[] counts, long total, double quantile) {
+        long rank = Math.max((long) Math.ceil(quantile * total), 1);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return valueOf(metric, bucket);
+            }
+        }
+        return valueOf(metric, counts.length - 1);
+    }
+
+    private static int bucketCount(FleetMetric metric) {
+        return metric.isPercent() ? PERCENT_BUCKETS : COUNTER_BUCKETS;
+    }
+
+    private CompanyStats company(UUID companyId) {
+        CompanyStats stats = companies.get(companyId);
+        if (stats == null) {
+            stats = companies.computeIfAbsent(companyId, id -> new CompanyStats(recentMinutes + 2));
+        }
+        return stats;
+    }
+
+    private static final class CompanyStats {
+        private final Histograms latest = new Histograms();
+        private final MinuteSlot[] recent;
+
+        private CompanyStats(int minutes) {
+            recent = new MinuteSlot[minutes];
+            for (int i = 0; i < minutes; i++) {
+                recent[i] = new MinuteSlot();
+            }
+        }
+    }
+
+    private static final class MinuteSlot {
+        private final Histograms histograms = new Histograms();
+        private volatile long minute = Long.MIN_VALUE;
+    }
+
+    private static final class Histograms {
+        private final AtomicIntegerArray[] counts = new AtomicIntegerArray[METRICS.length];
+        private final DoubleAdder[] sums = new DoubleAdder[METRICS.length];
+
+        private Histograms() {
+            for (FleetMetric metric : METRICS) {
+                counts[metric.ordinal()] = new AtomicIntegerArray(bucketCount(metric));
+                sums[metric.ordinal()] = new DoubleAdder();
+            }
+        }
+
+        private void add(double[] values, int delta) {
+            for (FleetMetric metric : METRICS) {
+                int i = metric.ordinal();
+                if (Double.isNaN(values[i])) {
+                    continue;
+                }
+                counts[i].addAndGet(bucketOf(metric, values[i]), delta);
+                sums[i].add(values[i] * delta);
+            }
+        }
+
+        // Adds this histogram's buckets for the metric to counts and returns its sum.
+        private double copyInto(FleetMetric metric, long[] target) {
+            AtomicIntegerArray source = counts[metric.ordinal()];
+            for (int bucket = 0; bucket < target.length; bucket++) {
+                target[bucket] += source.get(bucket);
+            }
+            return sums[metric.ordinal()].sum();
+        }
+
+        private void reset() {
+            for (int i = 0; i < counts.length; i++) {
+                for (int bucket = 0; bucket < counts[i].length(); bucket++) {
+                    counts[i].set(bucket, 0);
+                }
+                sums[i].reset();
+            }
+        }
+    }
+}
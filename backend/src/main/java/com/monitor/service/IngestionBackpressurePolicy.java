@@ -0,0 +1,10 @@
+package com.monitor.service;
+
+public enum IngestionBackpressurePolicy {
+    /** Wait up to {@code app.ingest.blockTimeoutMs} for queue space, then reject. */
+    BLOCK,
+    /** Evict the oldest queued sample of the shard to make room. */
+    DROP_OLDEST,
+    /** Fail immediately; surfaces as HTTP 429 or a STOMP ERROR frame. */
+    REJECT
+}
@@ -0,0 +1,70 @@
+package com.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which agent-supplied sample timestamps are accepted. Samples may
+ * arrive late or out of order by up to {@code maxLatenessSeconds}, and may be
+ * ahead of the server clock by up to {@code maxFutureSkewSeconds}. Anything
+ * outside that window is refused and counted as
+ * {@code monitor.ingest.samples{outcome=out_of_window}}. Rows the agent sent
+ * no time for are stamped by the server, strictly increasing per device, so
+ * that {@code (device_id, created_at)} still identifies them.
+ */
+@Component
+public class IngestionWindow {
+
+    private final long maxLatenessMillis;
+    private final long maxFutureSkewMillis;
+    private final Counter outOfWindowCounter;
+    private final Map<UUID, AtomicLong> lastServerTimestamps = new ConcurrentHashMap<>();
+
+    public IngestionWindow(
+            MeterRegistry meterRegistry,
+            @Value("${app.ingest.maxLatenessSeconds:600}") long maxLatenessSeconds,
+            @Value("${app.ingest.maxFutureSkewSeconds:60}") long maxFutureSkewSeconds) {
+        this.maxLatenessMillis = Math.max(maxLatenessSeconds, 0) * 1000L;
+        this.maxFutureSkewMillis = Math.max(maxFutureSkewSeconds, 0) * 1000L;
+        this.outOfWindowCounter = Counter.builder("monitor.ingest.samples")
+                .description("Metric samples by ingestion outcome")
+                .tag("outcome", "out_of_window")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The timestamp to store: the agent's collection time, or a server stamp
+     * for agents that do not send one.
+     */
+    public long timestampOf(UUID deviceId, Long agentTimestamp, long receivedAt) {
+        return agentTimestamp != null ? agentTimestamp : serverTimestamp(deviceId, receivedAt);
+    }
+
+    /**
+     * {@code receivedAt}, or one millisecond past the device's previous server
+     * stamp if that is not earlier. Only runs ahead of the clock while a device
+     * gets more than one stamp per millisecond.
+     */
+    public long serverTimestamp(UUID deviceId, long receivedAt) {
+        AtomicLong last = lastServerTimestamps.get(deviceId);
+        if (last == null) {
+            last = lastServerTimestamps.computeIfAbsent(deviceId, id -> new AtomicLong());
+        }
+        return last.accumulateAndGet(receivedAt, (previous, now) -> Math.max(now, previous + 1));
+    }
+
+    public boolean accepts(long timestampMillis, long receivedAt) {
+        if (timestampMillis >= receivedAt - maxLatenessMillis && timestampMillis <= receivedAt + maxFutureSkewMillis) {
+            return true;
+        }
+        outOfWindowCounter.increment();
+        return false;
+    }
+}
@@ -1,19 +1,27 @@
 package com.monitor.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.time.Duration;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtService {
@@ -27,7 +35,19 @@ public class JwtService {
     @Value("${app.jwt.expirationMinutes:60}")
     private long expirationMinutes;
 
+    @Value("${app.jwt.cacheMaxTokens:10000}")
+    private long cacheMaxTokens;
+
+    private final MeterRegistry meterRegistry;
     private Key key;
+    private JwtParser parser;
+
+    // SHA-256 of the token -> verified claims; entries expire with the token.
+    private Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    public JwtService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @PostConstruct
     public void init() {
@@ -41,6 +61,35 @@ public class JwtService {
         }
 
         key = Keys.hmacShaKeyFor(keyBytes);
+        parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .requireIssuer(issuer)
+                .build();
+
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(Math.max(cacheMaxTokens, 1))
+                .expireAfter(new Expiry<ByteBuffer, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer tokenHash, VerifiedToken token, long currentTime) {
+                        long remainingMillis = token.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer tokenHash, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer tokenHash, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedJwt");
     }
 
     public String generateToken(UUID companyId) {
@@ -54,26 +103,37 @@ public class JwtService {
                 .compact();
     }
 
-    public UUID extractCompanyId(String token) {
-        return UUID.fromString(parseClaims(token).getSubject());
-    }
+    /**
+     * Returns the company of a valid, unexpired token, or {@code null}. The
+     * signature is verified once per token; later calls are a hash lookup until
+     * the token expires or is evicted.
+     */
+    public UUID resolveCompanyId(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+
+        ByteBuffer tokenHash = TokenHash.sha256(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(tokenHash);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return cached.companyId();
+        }
 
-    public boolean validateToken(String token) {
+        VerifiedToken verified;
         try {
-            parseClaims(token);
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Date expiration = claims.getExpiration();
+            verified = new VerifiedToken(UUID.fromString(claims.getSubject()),
+                    expiration != null ? expiration.getTime() : Long.MAX_VALUE);
         } catch (Exception e) {
-            return false;
+            return null;
         }
+
+        verifiedTokens.put(tokenHash, verified);
+        return verified.companyId();
     }
 
-    private Claims parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .requireIssuer(issuer)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private record VerifiedToken(UUID companyId, long expiresAtMillis) {
     }
 
     private byte[] resolveKeyBytes(String value) {
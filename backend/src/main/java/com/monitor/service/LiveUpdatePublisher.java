@@ -0,0 +1,131 @@
+package com.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest-value publisher for live dashboard topics. Ingest only records the
+ * newest payload per destination; a single thread publishes whatever is
+ * pending every {@code publishIntervalMs}. A payload replaced before it was
+ * sent counts as conflated, so a device reporting faster than the cadence, or
+ * a batch of samples, costs one message per tick. Each payload is converted
+ * once and the broker shares the bytes across all subscribers.
+ */
+@Component
+public class LiveUpdatePublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveUpdatePublisher.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long publishIntervalMs;
+    private final int maxPendingDestinations;
+    private final Map<String, Object> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private Counter publishedCounter;
+    private Counter conflatedCounter;
+    private Counter droppedCounter;
+
+    public LiveUpdatePublisher(
+            SimpMessagingTemplate messagingTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.live.publishIntervalMs:250}") long publishIntervalMs,
+            @Value("${app.live.maxPendingDestinations:100000}") int maxPendingDestinations) {
+        this.messagingTemplate = messagingTemplate;
+        this.meterRegistry = meterRegistry;
+        this.publishIntervalMs = Math.max(publishIntervalMs, 10);
+        this.maxPendingDestinations = Math.max(maxPendingDestinations, 1);
+    }
+
+    @PostConstruct
+    public void start() {
+        publishedCounter = outcomeCounter("published");
+        conflatedCounter = outcomeCounter("conflated");
+        droppedCounter = outcomeCounter("dropped");
+        Gauge.builder("monitor.live.pending", pending, Map::size)
+                .description("Destinations with a payload waiting for the next tick")
+                .register(meterRegistry);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::flush, publishIntervalMs, publishIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Replaces the pending payload for {@code destination}. Never blocks.
+     */
+    public void publish(String destination, Object payload) {
+        if (pending.put(destination, payload) != null) {
+            conflatedCounter.increment();
+            return;
+        }
+
+        // Bound memory if the publisher thread falls far behind.
+        if (pending.size() > maxPendingDestinations && pending.remove(destination, payload)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void flush() {
+        for (String destination : pending.keySet()) {
+            Object payload = pending.remove(destination);
+            if (payload == null) {
+                continue;
+            }
+
+            try {
+                messagingTemplate.send(destination, toMessage(payload));
+                publishedCounter.increment();
+            } catch (Exception ex) {
+                droppedCounter.increment();
+                logger.warn("Failed to publish live update to {}", destination, ex);
+            }
+        }
+    }
+
+    // Converted with the broker's own converter so the wire format matches convertAndSend.
+    private Message<?> toMessage(Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setLeaveMutable(true);
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, accessor.getMessageHeaders());
+        if (message == null) {
+            throw new IllegalStateException("No converter for " + payload.getClass().getName());
+        }
+        return message;
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("monitor.live.messages")
+                .description("Live dashboard updates by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,66 @@
+package com.monitor.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timer wheel of device liveness deadlines. A deadline is placed in the
+ * first slot whose tick is not earlier than it, so {@link #advance(long)} only
+ * visits the slots that elapsed since the previous call; entries more than one
+ * rotation away stay in place until their round comes up. Scheduling is safe
+ * from any thread, advancing is expected from a single ticker.
+ */
+final class LivenessTimerWheel {
+
+    private final long tickMillis;
+    private final Queue<Timeout>[] slots;
+    private volatile long lastTick;
+
+    @SuppressWarnings("unchecked")
+    LivenessTimerWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new Queue[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastTick = nowMillis / tickMillis;
+    }
+
+    void schedule(UUID deviceId, long deadlineMillis) {
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, lastTick + 1);
+        slots[(int) Math.floorMod(tick, (long) slots.length)].add(new Timeout(deviceId, deadlineMillis));
+    }
+
+    /**
+     * Removes and returns every device whose deadline is at or before {@code nowMillis}.
+     */
+    List<UUID> advance(long nowMillis) {
+        long currentTick = nowMillis / tickMillis;
+        long fromTick = Math.max(lastTick + 1, currentTick - slots.length + 1);
+        List<UUID> due = new ArrayList<>();
+
+        for (long tick = fromTick; tick <= currentTick; tick++) {
+            Queue<Timeout> slot = slots[(int) Math.floorMod(tick, (long) slots.length)];
+            for (int remaining = slot.size(); remaining > 0; remaining--) {
+                Timeout timeout = slot.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.deadlineMillis() <= nowMillis) {
+                    due.add(timeout.deviceId());
+                } else {
+                    slot.add(timeout);
+                }
+            }
+        }
+
+        lastTick = currentTick;
+        return due;
+    }
+
+    private record Timeout(UUID deviceId, long deadlineMillis) {
+    }
+}
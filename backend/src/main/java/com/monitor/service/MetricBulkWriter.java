@@ -0,0 +1,448 @@
+package com.monitor.service;
+
+import com.monitor.entity.MetricDetailFormat;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bulk writer for the {@code metric}, {@code metric_detail} and
+ * {@code process_metric} tables.
+ * Rows are streamed with {@code COPY ... FROM STDIN (FORMAT binary)} when the
+ * connection is a PostgreSQL driver connection, otherwise they are written with
+ * chunked multi-row {@code INSERT ... VALUES} statements. Both paths avoid the
+ * per-row round trip that {@code saveAll} incurs on IDENTITY keyed entities.
+ * Once deduplication is enabled, metric rows that repeat an existing
+ * (device, agent timestamp) are skipped; COPY then goes through a transaction-scoped
+ * staging table because COPY itself cannot resolve conflicts. Process rows
+ * are deduplicated the same way on (device, snapshot time, pid).
+ */
+public class MetricBulkWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricBulkWriter.class);
+
+    private static final String METRIC_COLUMN_NAMES =
+            "device_id, cpu_usage, memory_usage, disk_usage, network_in, network_out, created_at, agent_timestamp";
+    private static final String METRIC_COLUMNS = "(" + METRIC_COLUMN_NAMES + ")";
+    private static final String METRIC_ON_CONFLICT =
+            " ON CONFLICT (device_id, created_at) WHERE agent_timestamp DO NOTHING";
+    private static final String METRIC_STAGING_TABLE = "CREATE TEMP TABLE metric_staging ("
+            + "device_id UUID, cpu_usage DOUBLE PRECISION, memory_usage DOUBLE PRECISION, "
+            + "disk_usage DOUBLE PRECISION, network_in DOUBLE PRECISION, network_out DOUBLE PRECISION, "
+            + "created_at TIMESTAMP, agent_timestamp BOOLEAN) ON COMMIT DROP";
+    private static final String METRIC_DETAIL_COLUMNS =
+            "(device_id, details_json, details_data, details_format, details_base_at, created_at)";
+    private static final String PROCESS_METRIC_COLUMN_NAMES = "device_id, name_id, pid, cpu_percent, rss_bytes, "
+            + "io_read_bytes, io_write_bytes, created_at";
+    private static final String PROCESS_METRIC_COLUMNS = "(" + PROCESS_METRIC_COLUMN_NAMES + ")";
+    private static final String PROCESS_METRIC_ON_CONFLICT = " ON CONFLICT (device_id, created_at, pid) DO NOTHING";
+    private static final String PROCESS_METRIC_STAGING_TABLE = "CREATE TEMP TABLE process_metric_staging ("
+            + "device_id UUID, name_id INTEGER, pid INTEGER, cpu_percent DOUBLE PRECISION, rss_bytes BIGINT, "
+            + "io_read_bytes BIGINT, io_write_bytes BIGINT, created_at TIMESTAMP) ON COMMIT DROP";
+    private static final int METRIC_PARAMS = 8;
+    private static final int METRIC_DETAIL_PARAMS = 6;
+    private static final int PROCESS_METRIC_PARAMS = 8;
+    // PostgreSQL caps a statement at 65535 bind parameters.
+    private static final int MAX_INSERT_PARAMS = 65535;
+
+    private static final byte[] COPY_SIGNATURE = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+    private static final long POSTGRES_EPOCH_MILLIS = 946_684_800_000L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean copyEnabled;
+    private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+    private volatile Boolean copySupported;
+    private volatile boolean deduplicate;
+    private volatile boolean deduplicateProcesses;
+
+    public MetricBulkWriter(JdbcTemplate jdbcTemplate, boolean copyEnabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.copyEnabled = copyEnabled;
+    }
+
+    /**
+     * Requires a unique index on {@code metric (device_id, created_at) WHERE agent_timestamp}.
+     */
+    public void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * Requires a unique index on {@code process_metric (device_id, created_at, pid)}.
+     */
+    public void setDeduplicateProcesses(boolean deduplicateProcesses) {
+        this.deduplicateProcesses = deduplicateProcesses;
+    }
+
+    public int writeMetrics(List<MetricSample> samples) {
+        if (samples.isEmpty()) {
+            return 0;
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            if (supportsCopy(con)) {
+                return copyMetrics(con, samples);
+            }
+            return insertMetrics(con, samples);
+        });
+    }
+
+    public int writeMetricDetails(List<EncodedMetricDetail> details) {
+        if (details.isEmpty()) {
+            return 0;
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            if (supportsCopy(con)) {
+                return copyMetricDetails(con, details);
+            }
+            return insertMetricDetails(con, details);
+        });
+    }
+
+    /**
+     * {@code nameIds[i]} is the interned name of {@code processes.get(i)}.
+     */
+    public int writeProcessMetrics(List<ProcessSample> processes, int[] nameIds) {
+        if (processes.isEmpty()) {
+            return 0;
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            if (supportsCopy(con)) {
+                return copyProcessMetrics(con, processes, nameIds);
+            }
+            return insertProcessMetrics(con, processes, nameIds);
+        });
+    }
+
+    private boolean supportsCopy(Connection con) throws SQLException {
+        if (!copyEnabled) {
+            return false;
+        }
+
+        Boolean supported = copySupported;
+        if (supported == null) {
+            supported = con.isWrapperFor(PGConnection.class);
+            copySupported = supported;
+            if (!supported) {
+                logger.info("COPY is not available on this connection, using multi-row INSERT");
+            }
+        }
+        return supported;
+    }
+
+    private int copyMetrics(Connection con, List<MetricSample> samples) throws SQLException {
+        ByteArrayOutputStream buffer = encodeMetrics(samples);
+        if (!deduplicate) {
+            return copyIn(con, "COPY metric " + METRIC_COLUMNS + " FROM STDIN (FORMAT binary)", buffer);
+        }
+        return copyDeduplicated(con, buffer, METRIC_STAGING_TABLE, "metric", METRIC_COLUMN_NAMES,
+                METRIC_ON_CONFLICT);
+    }
+
+    // The COPY encodings below are package-private so their byte layout can be tested without a database.
+    ByteArrayOutputStream encodeMetrics(List<MetricSample> samples) throws SQLException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(19 + samples.size() * 100);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeCopyHeader(out);
+            for (MetricSample sample : samples) {
+                out.writeShort(METRIC_PARAMS);
+                writeUuid(out, sample.deviceId());
+                writeDouble(out, sample.cpuUsage());
+                writeDouble(out, sample.memoryUsage());
+                writeDouble(out, sample.diskUsage());
+                writeDouble(out, sample.networkIn());
+                writeDouble(out, sample.networkOut());
+                writeTimestamp(out, sample.timestampMillis());
+                writeBoolean(out, sample.agentTimestamp());
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to encode metric COPY buffer", e);
+        }
+        return buffer;
+    }
+
+    private int copyDeduplicated(Connection con, ByteArrayOutputStream buffer, String stagingTable, String table,
+            String columnNames, String onConflict) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            try (Statement statement = con.createStatement()) {
+                statement.execute(stagingTable);
+            }
+            copyIn(con, "COPY " + table + "_staging (" + columnNames + ") FROM STDIN (FORMAT binary)", buffer);
+
+            int written;
+            try (Statement statement = con.createStatement()) {
+                written = statement.executeUpdate("INSERT INTO " + table + " (" + columnNames + ")"
+                        + " SELECT " + columnNames + " FROM " + table + "_staging" + onConflict);
+            }
+            con.commit();
+            return written;
+        } catch (SQLException | RuntimeException ex) {
+            con.rollback();
+            throw ex;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private int copyMetricDetails(Connection con, List<EncodedMetricDetail> details) throws SQLException {
+        ByteArrayOutputStream buffer = encodeMetricDetails(details);
+        return copyIn(con, "COPY metric_detail " + METRIC_DETAIL_COLUMNS + " FROM STDIN (FORMAT binary)", buffer);
+    }
+
+    ByteArrayOutputStream encodeMetricDetails(List<EncodedMetricDetail> details) throws SQLException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(19 + details.size() * 4096);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeCopyHeader(out);
+            for (EncodedMetricDetail detail : details) {
+                out.writeShort(METRIC_DETAIL_PARAMS);
+                writeUuid(out, detail.deviceId());
+                writeBytes(out, detail.detailsJson() != null
+                        ? detail.detailsJson().getBytes(StandardCharsets.UTF_8)
+                        : null);
+                writeBytes(out, detail.detailsData());
+                writeBytes(out, detail.format().name().getBytes(StandardCharsets.UTF_8));
+                if (detail.format() == MetricDetailFormat.DEFLATE_DELTA) {
+                    writeTimestamp(out, detail.baseTimestampMillis());
+                } else {
+                    out.writeInt(-1);
+                }
+                writeTimestamp(out, detail.timestampMillis());
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to encode metric_detail COPY buffer", e);
+        }
+        return buffer;
+    }
+
+    private int copyProcessMetrics(Connection con, List<ProcessSample> processes, int[] nameIds)
+            throws SQLException {
+        ByteArrayOutputStream buffer = encodeProcessMetrics(processes, nameIds);
+        if (!deduplicateProcesses) {
+            return copyIn(con, "COPY process_metric " + PROCESS_METRIC_COLUMNS + " FROM STDIN (FORMAT binary)",
+                    buffer);
+        }
+        return copyDeduplicated(con, buffer, PROCESS_METRIC_STAGING_TABLE, "process_metric",
+                PROCESS_METRIC_COLUMN_NAMES, PROCESS_METRIC_ON_CONFLICT);
+    }
+
+    ByteArrayOutputStream encodeProcessMetrics(List<ProcessSample> processes, int[] nameIds)
+            throws SQLException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(19 + processes.size() * 90);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeCopyHeader(out);
+            for (int i = 0; i < processes.size(); i++) {
+                ProcessSample process = processes.get(i);
+                out.writeShort(PROCESS_METRIC_PARAMS);
+                writeUuid(out, process.deviceId());
+                writeInt(out, nameIds[i]);
+                writeInt(out, process.pid());
+                if (Double.isNaN(process.cpuPercent())) {
+                    out.writeInt(-1);
+                } else {
+                    writeDouble(out, process.cpuPercent());
+                }
+                writeCounter(out, process.rssBytes());
+                writeCounter(out, process.ioReadBytes());
+                writeCounter(out, process.ioWriteBytes());
+                writeTimestamp(out, process.timestampMillis());
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to encode process_metric COPY buffer", e);
+        }
+        return buffer;
+    }
+
+    private int copyIn(Connection con, String sql, ByteArrayOutputStream buffer) throws SQLException {
+        CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+        CopyIn copyIn = copyManager.copyIn(sql);
+        try {
+            byte[] bytes = buffer.toByteArray();
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            return (int) copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private int insertMetrics(Connection con, List<MetricSample> samples) throws SQLException {
+        int chunkSize = MAX_INSERT_PARAMS / METRIC_PARAMS;
+        int written = 0;
+
+        for (int from = 0; from < samples.size(); from += chunkSize) {
+            List<MetricSample> chunk = samples.subList(from, Math.min(from + chunkSize, samples.size()));
+            String sql = buildInsert("metric", METRIC_COLUMNS, METRIC_PARAMS, chunk.size())
+                    + (deduplicate ? METRIC_ON_CONFLICT : "");
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int index = 1;
+                for (MetricSample sample : chunk) {
+                    ps.setObject(index++, sample.deviceId());
+                    ps.setDouble(index++, sample.cpuUsage());
+                    ps.setDouble(index++, sample.memoryUsage());
+                    ps.setDouble(index++, sample.diskUsage());
+                    ps.setDouble(index++, sample.networkIn());
+                    ps.setDouble(index++, sample.networkOut());
+                    ps.setTimestamp(index++, new Timestamp(sample.timestampMillis()));
+                    ps.setBoolean(index++, sample.agentTimestamp());
+                }
+                written += ps.executeUpdate();
+            }
+        }
+        return written;
+    }
+
+    private int insertMetricDetails(Connection con, List<EncodedMetricDetail> details) throws SQLException {
+        int chunkSize = MAX_INSERT_PARAMS / METRIC_DETAIL_PARAMS;
+        int written = 0;
+
+        for (int from = 0; from < details.size(); from += chunkSize) {
+            List<EncodedMetricDetail> chunk = details.subList(from, Math.min(from + chunkSize, details.size()));
+            String sql = buildInsert("metric_detail", METRIC_DETAIL_COLUMNS, METRIC_DETAIL_PARAMS, chunk.size());
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int index = 1;
+                for (EncodedMetricDetail detail : chunk) {
+                    ps.setObject(index++, detail.deviceId());
+                    ps.setString(index++, detail.detailsJson());
+                    ps.setBytes(index++, detail.detailsData());
+                    ps.setString(index++, detail.format().name());
+                    ps.setTimestamp(index++, detail.format() == MetricDetailFormat.DEFLATE_DELTA
+                            ? new Timestamp(detail.baseTimestampMillis())
+                            : null);
+                    ps.setTimestamp(index++, new Timestamp(detail.timestampMillis()));
+                }
+                written += ps.executeUpdate();
+            }
+        }
+        return written;
+    }
+
+    private int insertProcessMetrics(Connection con, List<ProcessSample> processes, int[] nameIds)
+            throws SQLException {
+        int chunkSize = MAX_INSERT_PARAMS / PROCESS_METRIC_PARAMS;
+        int written = 0;
+
+        for (int from = 0; from < processes.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, processes.size());
+            String sql = buildInsert("process_metric", PROCESS_METRIC_COLUMNS, PROCESS_METRIC_PARAMS, to - from)
+                    + (deduplicateProcesses ? PROCESS_METRIC_ON_CONFLICT : "");
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int index = 1;
+                for (int i = from; i < to; i++) {
+                    ProcessSample process = processes.get(i);
+                    ps.setObject(index++, process.deviceId());
+                    ps.setInt(index++, nameIds[i]);
+                    ps.setInt(index++, process.pid());
+                    ps.setObject(index++, Double.isNaN(process.cpuPercent()) ? null : process.cpuPercent(),
+                            Types.DOUBLE);
+                    ps.setObject(index++, process.rssBytes() >= 0 ? process.rssBytes() : null, Types.BIGINT);
+                    ps.setObject(index++, process.ioReadBytes() >= 0 ? process.ioReadBytes() : null, Types.BIGINT);
+                    ps.setObject(index++, process.ioWriteBytes() >= 0 ? process.ioWriteBytes() : null,
+                            Types.BIGINT);
+                    ps.setTimestamp(index++, new Timestamp(process.timestampMillis()));
+                }
+                written += ps.executeUpdate();
+            }
+        }
+        return written;
+    }
+
+    private String buildInsert(String table, String columns, int params, int rows) {
+        StringBuilder sql = new StringBuilder(32 + columns.length() + rows * (params * 3 + 3));
+        sql.append("INSERT INTO ").append(table).append(' ').append(columns).append(" VALUES ");
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append(',');
+            }
+            sql.append('(');
+            for (int p = 0; p < params; p++) {
+                sql.append(p == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+        }
+        return sql.toString();
+    }
+
+    private void writeCopyHeader(DataOutputStream out) throws IOException {
+        out.write(COPY_SIGNATURE);
+        out.writeInt(0); // flags
+        out.writeInt(0); // header extension length
+    }
+
+    private void writeUuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    // text, varchar and bytea share the same binary COPY layout; -1 is NULL.
+    private void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private void writeInt(DataOutputStream out, int value) throws IOException {
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    // bigint; negative marks a counter the agent did not report and is written as NULL.
+    private void writeCounter(DataOutputStream out, long value) throws IOException {
+        if (value < 0) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    private void writeBoolean(DataOutputStream out, boolean value) throws IOException {
+        out.writeInt(1);
+        out.writeByte(value ? 1 : 0);
+    }
+
+    private void writeDouble(DataOutputStream out, double value) throws IOException {
+        out.writeInt(8);
+        out.writeDouble(value);
+    }
+
+    // timestamp without time zone: microseconds since 2000-01-01 in server-local wall-clock time,
+    // matching what Hibernate stores for LocalDateTime.now().
+    private void writeTimestamp(DataOutputStream out, long epochMillis) throws IOException {
+        long offsetMillis = zoneRules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        out.writeInt(8);
+        out.writeLong((epochMillis + offsetMillis - POSTGRES_EPOCH_MILLIS) * 1000L);
+    }
+}
@@ -0,0 +1,159 @@
+package com.monitor.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.monitor.entity.MetricDetail;
+import com.monitor.entity.MetricDetailFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes detail snapshots for {@code metric_detail}. With {@code DEFLATE}
+ * every {@code keyframeInterval}-th snapshot of a device is a raw-deflated
+ * keyframe and the ones in between are deflated with that keyframe as preset
+ * dictionary, so the process, connection and log lines they share with it cost
+ * a back-reference instead of their bytes. Deltas always point at a keyframe,
+ * never at another delta, so reading one costs at most one extra row.
+ * Keyframes are kept in a byte-bounded cache; a device that falls out of it
+ * starts over with a keyframe. Deltas find their keyframe by timestamp, so a
+ * device's keyframe timestamps only increase: a snapshot that is not newer
+ * than the cached keyframe is stored as {@code TEXT} rather than as a second
+ * keyframe at that time.
+ */
+@Component
+public class MetricDetailCodec {
+
+    private final MetricDetailFormat format;
+    private final int keyframeInterval;
+    private final Cache<UUID, Keyframe> keyframes;
+
+    public MetricDetailCodec(
+            @Value("${app.metrics.detailFormat:DEFLATE}") MetricDetailFormat format,
+            @Value("${app.metrics.detailKeyframeInterval:10}") int keyframeInterval,
+            @Value("${app.metrics.detailKeyframeCacheMb:64}") long keyframeCacheMb) {
+        this.format = format == MetricDetailFormat.TEXT ? MetricDetailFormat.TEXT : MetricDetailFormat.DEFLATE;
+        this.keyframeInterval = Math.max(keyframeInterval, 1);
+        this.keyframes = Caffeine.newBuilder()
+                .maximumWeight(Math.max(keyframeCacheMb, 1) * 1024 * 1024)
+                .weigher((UUID deviceId, Keyframe keyframe) -> keyframe.json.length)
+                .build();
+    }
+
+    public EncodedMetricDetail encode(MetricDetailSample sample) {
+        if (format == MetricDetailFormat.TEXT) {
+            return new EncodedMetricDetail(sample.deviceId(), sample.timestampMillis(), MetricDetailFormat.TEXT,
+                    sample.detailsJson(), null, 0L);
+        }
+
+        byte[] json = sample.detailsJson().getBytes(StandardCharsets.UTF_8);
+        Keyframe keyframe = keyframeInterval > 1 ? keyframes.getIfPresent(sample.deviceId()) : null;
+        if (keyframe != null && sample.timestampMillis() <= keyframe.timestampMillis) {
+            return new EncodedMetricDetail(sample.deviceId(), sample.timestampMillis(), MetricDetailFormat.TEXT,
+                    sample.detailsJson(), null, 0L);
+        }
+        if (keyframe != null && keyframe.deltas.incrementAndGet() < keyframeInterval) {
+            return new EncodedMetricDetail(sample.deviceId(), sample.timestampMillis(),
+                    MetricDetailFormat.DEFLATE_DELTA, null, deflate(json, keyframe.json), keyframe.timestampMillis);
+        }
+
+        if (keyframeInterval > 1) {
+            keyframes.put(sample.deviceId(), new Keyframe(sample.timestampMillis(), json));
+        }
+        return new EncodedMetricDetail(sample.deviceId(), sample.timestampMillis(), MetricDetailFormat.DEFLATE,
+                null, deflate(json, null), 0L);
+    }
+
+    /**
+     * Drops the cached keyframes of devices whose snapshots failed to persist, so
+     * no later delta points at a keyframe that was never written.
+     */
+    public void forget(Collection<UUID> deviceIds) {
+        keyframes.invalidateAll(deviceIds);
+    }
+
+    /**
+     * Returns the snapshot JSON of a row. {@code keyframe} is the row referenced
+     * by {@link MetricDetail#getDetailsBaseAt()} and is only needed for
+     * {@link MetricDetailFormat#DEFLATE_DELTA} rows.
+     */
+    public String decode(MetricDetail detail, MetricDetail keyframe) {
+        MetricDetailFormat rowFormat = detail.getDetailsFormat();
+        if (rowFormat == null || rowFormat == MetricDetailFormat.TEXT) {
+            return detail.getDetailsJson();
+        }
+        if (rowFormat == MetricDetailFormat.DEFLATE) {
+            return new String(inflate(detail.getDetailsData(), null), StandardCharsets.UTF_8);
+        }
+        if (keyframe == null) {
+            throw new RuntimeException("Missing keyframe for metric detail " + detail.getId());
+        }
+        byte[] dictionary = inflate(keyframe.getDetailsData(), null);
+        return new String(inflate(detail.getDetailsData(), dictionary), StandardCharsets.UTF_8);
+    }
+
+    static byte[] deflate(byte[] input, byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(input.length / 4, 64));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] input, byte[] dictionary) {
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(input);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new RuntimeException("Truncated metric detail payload");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Corrupt metric detail payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Keyframe {
+        private final long timestampMillis;
+        private final byte[] json;
+        private final AtomicInteger deltas = new AtomicInteger();
+
+        private Keyframe(long timestampMillis, byte[] json) {
+            this.timestampMillis = timestampMillis;
+            this.json = json;
+        }
+    }
+}
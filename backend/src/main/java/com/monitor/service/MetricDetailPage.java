@@ -0,0 +1,35 @@
+package com.monitor.service;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One keyset page of a device's detail snapshots, newest first: the cursor it
+ * was read after, the row ids and the time span they cover, but none of their
+ * payload. Detail rows are never updated, so the cursor, the ids and the
+ * projected fields identify the response and are enough to answer a
+ * conditional request.
+ */
+public record MetricDetailPage(
+        UUID deviceId,
+        List<String> fields,
+        LocalDateTime before,
+        Long beforeId,
+        List<Long> ids,
+        LocalDateTime newest,
+        LocalDateTime oldest) {
+
+    public String etag() {
+        StringBuilder key = new StringBuilder(64 + ids.size() * 12)
+                .append(deviceId).append('|').append(String.join(",", fields))
+                .append('|').append(before).append(',').append(beforeId).append('|');
+        for (Long id : ids) {
+            key.append(id).append(',');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -0,0 +1,13 @@
+package com.monitor.service;
+
+import java.util.UUID;
+
+/**
+ * Detail snapshot as received from an agent; {@link MetricDetailCodec} turns it
+ * into its storage format.
+ */
+public record MetricDetailSample(
+        UUID deviceId,
+        long timestampMillis,
+        String detailsJson) {
+}
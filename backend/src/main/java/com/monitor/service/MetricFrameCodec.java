@@ -0,0 +1,269 @@
+package com.monitor.service;
+
+import org.springframework.util.MimeType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary uplink format for metric batches ({@value #CONTENT_TYPE}), an
+ * alternative to the JSON array. One frame carries the samples of one device:
+ *
+ * <pre>
+ * 'M' | version (1 byte) | device id (16 bytes, big-endian)
+ * sample count (varint)
+ * timestamps: epoch millis of the first sample, then the difference to the
+ *             previous sample (zigzag varint each)
+ * values: bit stream of cpu, memory, disk, network in and network out per
+ *         sample, each column XOR-encoded against its previous value as in
+ *         Gorilla: '0' repeat; '10' + bits inside the previous window;
+ *         '11' + 5-bit leading zeros + 6-bit length - 1 + bits
+ * </pre>
+ *
+ * The first value of each column has no predecessor and is XORed against 0.
+ * Decoding allocates the device id, the result list and the samples, nothing
+ * else. Values are range-checked like the JSON path.
+ */
+public final class MetricFrameCodec {
+
+    public static final String CONTENT_TYPE = "application/x-monitor-metrics";
+    public static final MimeType MIME_TYPE = MimeType.valueOf(CONTENT_TYPE);
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 'M';
+    private static final int COLUMNS = 5;
+
+    private MetricFrameCodec() {
+    }
+
+    public static boolean isFrame(MimeType contentType) {
+        return contentType != null && MIME_TYPE.equalsTypeAndSubtype(contentType);
+    }
+
+    public static byte[] encode(UUID deviceId, List<MetricSample> samples) {
+        BitWriter out = new BitWriter(32 + samples.size() * 24);
+        out.write(MAGIC, 8);
+        out.write(VERSION, 8);
+        out.write(deviceId.getMostSignificantBits(), 64);
+        out.write(deviceId.getLeastSignificantBits(), 64);
+        out.writeVarint(samples.size());
+
+        long previousTimestamp = 0;
+        for (MetricSample sample : samples) {
+            out.writeVarint(zigzag(sample.timestampMillis() - previousTimestamp));
+            previousTimestamp = sample.timestampMillis();
+        }
+
+        XorState state = new XorState();
+        for (MetricSample sample : samples) {
+            writeValue(out, state, 0, sample.cpuUsage());
+            writeValue(out, state, 1, sample.memoryUsage());
+            writeValue(out, state, 2, sample.diskUsage());
+            writeValue(out, state, 3, sample.networkIn());
+            writeValue(out, state, 4, sample.networkOut());
+        }
+        return out.toByteArray();
+    }
+
+    public static List<MetricSample> decode(byte[] frame) {
+        BitReader in = new BitReader(frame);
+        if (in.read(8) != MAGIC) {
+            throw new IllegalArgumentException("Not a metric frame");
+        }
+        int version = (int) in.read(8);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported metric frame version " + version);
+        }
+
+        UUID deviceId = new UUID(in.read(64), in.read(64));
+        long count = in.readVarint();
+        // Every sample needs at least one timestamp byte, so anything larger is corrupt.
+        if (count < 0 || count > frame.length) {
+            throw new IllegalArgumentException("Invalid metric frame sample count " + count);
+        }
+
+        int size = (int) count;
+        long[] timestamps = new long[size];
+        long timestamp = 0;
+        for (int i = 0; i < size; i++) {
+            timestamp += unzigzag(in.readVarint());
+            timestamps[i] = timestamp;
+        }
+
+        List<MetricSample> samples = new ArrayList<>(size);
+        XorState state = new XorState();
+        for (int i = 0; i < size; i++) {
+            samples.add(new MetricSample(deviceId, timestamps[i],
+                    percent(readValue(in, state, 0), i, "cpuUsage"),
+                    percent(readValue(in, state, 1), i, "memoryUsage"),
+                    percent(readValue(in, state, 2), i, "diskUsage"),
+                    nonNegative(readValue(in, state, 3), i, "networkIn"),
+                    nonNegative(readValue(in, state, 4), i, "networkOut")));
+        }
+        return samples;
+    }
+
+    private static void writeValue(BitWriter out, XorState state, int column, double value) {
+        long bits = Double.doubleToLongBits(value);
+        long xor = bits ^ state.previous[column];
+        state.previous[column] = bits;
+
+        if (xor == 0) {
+            out.write(0, 1);
+            return;
+        }
+
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        int previousLeading = state.leading[column];
+        int previousTrailing = state.trailing[column];
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            out.write(0b10, 2);
+            out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            return;
+        }
+
+        int length = 64 - leading - trailing;
+        out.write(0b11, 2);
+        out.write(leading, 5);
+        out.write(length - 1, 6);
+        out.write(xor >>> trailing, length);
+        state.leading[column] = leading;
+        state.trailing[column] = trailing;
+    }
+
+    private static double readValue(BitReader in, XorState state, int column) {
+        long bits = state.previous[column];
+        if (in.read(1) != 0) {
+            if (in.read(1) == 0) {
+                if (state.leading[column] < 0) {
+                    throw new IllegalArgumentException("Malformed metric frame");
+                }
+                int length = 64 - state.leading[column] - state.trailing[column];
+                bits ^= in.read(length) << state.trailing[column];
+            } else {
+                int leading = (int) in.read(5);
+                int length = (int) in.read(6) + 1;
+                int trailing = 64 - leading - length;
+                if (trailing < 0) {
+                    throw new IllegalArgumentException("Malformed metric frame");
+                }
+                bits ^= in.read(length) << trailing;
+                state.leading[column] = leading;
+                state.trailing[column] = trailing;
+            }
+        }
+        state.previous[column] = bits;
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static double percent(double value, int index, String field) {
+        if (!(value >= 0 && value <= 100)) {
+            throw new IllegalArgumentException("[" + index + "]." + field + ": must be between 0 and 100");
+        }
+        return value;
+    }
+
+    private static double nonNegative(double value, int index, String field) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException("[" + index + "]." + field + ": must be greater than or equal to 0");
+        }
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class XorState {
+        final long[] previous = new long[COLUMNS];
+        final int[] leading = { -1, -1, -1, -1, -1 };
+        final int[] trailing = new int[COLUMNS];
+    }
+
+    private static final class BitWriter {
+        private byte[] buffer;
+        private long position;
+
+        BitWriter(int capacity) {
+            buffer = new byte[Math.max(capacity, 16)];
+        }
+
+        // Writes the low {@code bits} bits of {@code value}, most significant first.
+        void write(long value, int bits) {
+            long end = position + bits;
+            if (end > (long) buffer.length * 8) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, (int) ((end + 7) >>> 3)));
+            }
+
+            while (bits > 0) {
+                int index = (int) (position >>> 3);
+                int free = 8 - (int) (position & 7);
+                int take = Math.min(free, bits);
+                int chunk = (int) (value >>> (bits - take)) & ((1 << take) - 1);
+                buffer[index] |= (byte) (chunk << (free - take));
+                position += take;
+                bits -= take;
+            }
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((value & 0x7F) | 0x80, 8);
+                value >>>= 7;
+            }
+            write(value, 8);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (int) ((position + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buffer;
+        private final long limit;
+        private long position;
+
+        BitReader(byte[] buffer) {
+            this.buffer = buffer;
+            this.limit = (long) buffer.length * 8;
+        }
+
+        long read(int bits) {
+            if (position + bits > limit) {
+                throw new IllegalArgumentException("Truncated metric frame");
+            }
+
+            long result = 0;
+            while (bits > 0) {
+                int index = (int) (position >>> 3);
+                int available = 8 - (int) (position & 7);
+                int take = Math.min(available, bits);
+                int chunk = ((buffer[index] & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+                result = (result << take) | chunk;
+                position += take;
+                bits -= take;
+            }
+            return result;
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                long b = read(8);
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in metric frame");
+        }
+    }
+}
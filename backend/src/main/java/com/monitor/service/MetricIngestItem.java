@@ -0,0 +1,14 @@
+package com.monitor.service;
+
+import com.monitor.dto.MetricRequest;
+
+/**
+ * One item of a mixed-device batch as read by
+ * {@link StreamingBatchReader#readMetricRequests(byte[])}. {@code request} is
+ * null for a JSON null; {@code error} is set when the item could not be read
+ * into a request, such as a deviceId that is not a UUID.
+ */
+public record MetricIngestItem(
+        MetricRequest request,
+        String error) {
+}
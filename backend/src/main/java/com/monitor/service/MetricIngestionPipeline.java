@@ -0,0 +1,283 @@
+package com.monitor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind stage between the ingest endpoints and the {@code metric} table.
+ * Samples are routed to a bounded queue by device id so that a device's points
+ * stay ordered, and one worker per shard flushes multi-device batches when
+ * either {@code batchSize} samples are pending or {@code flushIntervalMs} has
+ * elapsed since the first sample of the batch was taken. A batch that fails
+ * to write is retried up to {@code flushMaxAttempts} times with doubling
+ * backoff; the shard's queue keeps filling meanwhile, so a longer outage turns
+ * into backpressure on the endpoints rather than into lost samples.
+ */
+@Component
+public class MetricIngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricIngestionPipeline.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+
+    private final MetricsStorageService metricsStorageService;
+    private final MeterRegistry meterRegistry;
+    private final int shardCount;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long blockTimeoutMs;
+    private final long retryAfterSeconds;
+    private final int flushMaxAttempts;
+    private final long flushRetryBackoffMs;
+    private final IngestionBackpressurePolicy backpressurePolicy;
+
+    private Shard[] shards;
+    private Counter acceptedCounter;
+    private Counter droppedCounter;
+    private Counter rejectedCounter;
+    private Counter writtenCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+    private volatile boolean running;
+
+    public MetricIngestionPipeline(
+            MetricsStorageService metricsStorageService,
+            MeterRegistry meterRegistry,
+            @Value("${app.ingest.shards:4}") int shardCount,
+            @Value("${app.ingest.queueCapacity:10000}") int queueCapacity,
+            @Value("${app.ingest.batchSize:500}") int batchSize,
+            @Value("${app.ingest.flushIntervalMs:1000}") long flushIntervalMs,
+            @Value("${app.ingest.blockTimeoutMs:2000}") long blockTimeoutMs,
+            @Value("${app.ingest.retryAfterSeconds:5}") long retryAfterSeconds,
+            @Value("${app.ingest.flushMaxAttempts:5}") int flushMaxAttempts,
+            @Value("${app.ingest.flushRetryBackoffMs:500}") long flushRetryBackoffMs,
+            @Value("${app.ingest.backpressure:BLOCK}") IngestionBackpressurePolicy backpressurePolicy) {
+        this.metricsStorageService = metricsStorageService;
+        this.meterRegistry = meterRegistry;
+        this.shardCount = Math.max(shardCount, 1);
+        this.queueCapacity = Math.max(queueCapacity, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalMs = Math.max(flushIntervalMs, 10);
+        this.blockTimeoutMs = Math.max(blockTimeoutMs, 0);
+        this.retryAfterSeconds = Math.max(retryAfterSeconds, 1);
+        this.flushMaxAttempts = Math.max(flushMaxAttempts, 1);
+        this.flushRetryBackoffMs = Math.max(flushRetryBackoffMs, 0);
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    @PostConstruct
+    public void start() {
+        acceptedCounter = outcomeCounter("accepted");
+        droppedCounter = outcomeCounter("dropped");
+        rejectedCounter = outcomeCounter("rejected");
+        writtenCounter = outcomeCounter("written");
+        retriedCounter = outcomeCounter("retried");
+        failedCounter = outcomeCounter("failed");
+        flushTimer = Timer.builder("monitor.ingest.flush")
+                .description("Time spent writing one batch to the metric table")
+                .register(meterRegistry);
+
+        running = true;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard(i, new ArrayBlockingQueue<>(queueCapacity));
+            Gauge.builder("monitor.ingest.queue.depth", shard.queue, BlockingQueue::size)
+                    .description("Samples waiting to be written")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+
+            shard.worker = new Thread(() -> drain(shard), "metric-ingest-" + i);
+            shard.worker.setDaemon(true);
+            shard.worker.start();
+            shards[i] = shard;
+        }
+
+        logger.info("Metric ingestion pipeline started with {} shards, capacity {} each, policy {}",
+                shardCount, queueCapacity, backpressurePolicy);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Shard shard : shards) {
+            try {
+                shard.worker.join(flushIntervalMs * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!shard.queue.isEmpty()) {
+                logger.warn("Shard {} stopped with {} unwritten samples", shard.index, shard.queue.size());
+            }
+        }
+    }
+
+    public void submit(MetricSample sample) {
+        if (!running) {
+            throw new IngestionRejectedException("Ingestion pipeline is shutting down", retryAfterSeconds);
+        }
+
+        BlockingQueue<MetricSample> queue = shardFor(sample).queue;
+        switch (backpressurePolicy) {
+            case BLOCK -> {
+                boolean queued;
+                try {
+                    queued = queue.offer(sample, blockTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    queued = false;
+                }
+                if (!queued) {
+                    reject();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(sample)) {
+                    if (queue.poll() != null) {
+                        droppedCounter.increment();
+                    }
+                }
+            }
+            case REJECT -> {
+                if (!queue.offer(sample)) {
+                    reject();
+                }
+            }
+        }
+        acceptedCounter.increment();
+    }
+
+    public void submitAll(List<MetricSample> samples) {
+        for (MetricSample sample : samples) {
+            submit(sample);
+        }
+    }
+
+    public long getQueuedSamples() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.queue.size();
+        }
+        return total;
+    }
+
+    private void reject() {
+        rejectedCounter.increment();
+        throw new IngestionRejectedException("Metric ingestion queue is full", retryAfterSeconds);
+    }
+
+    private Shard shardFor(MetricSample sample) {
+        int hash = sample.deviceId().hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shardCount)];
+    }
+
+    private void drain(Shard shard) {
+        List<MetricSample> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+        while (running || !shard.queue.isEmpty()) {
+            try {
+                MetricSample first = shard.queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    shard.queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    MetricSample next = shard.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(shard, batch);
+                return;
+            }
+
+            flush(shard, batch);
+            batch.clear();
+        }
+    }
+
+    // Samples are only counted as failed once every attempt is used up.
+    private void flush(Shard shard, List<MetricSample> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long backoffMs = flushRetryBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            long started = System.nanoTime();
+            try {
+                metricsStorageService.insertMetrics(batch);
+                writtenCounter.increment(batch.size());
+                return;
+            } catch (Exception ex) {
+                if (attempt >= flushMaxAttempts) {
+                    failedCounter.increment(batch.size());
+                    logger.error("Dropping {} metric samples from shard {} after {} attempts",
+                            batch.size(), shard.index, attempt, ex);
+                    return;
+                }
+                retriedCounter.increment(batch.size());
+                logger.warn("Failed to write {} metric samples from shard {} (attempt {} of {}), retrying in {} ms",
+                        batch.size(), shard.index, attempt, flushMaxAttempts, backoffMs, ex);
+            } finally {
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedCounter.increment(batch.size());
+                logger.error("Dropping {} metric samples from shard {}, interrupted while retrying",
+                        batch.size(), shard.index);
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+        }
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("monitor.ingest.samples")
+                .description("Metric samples by ingestion outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class Shard {
+        private final int index;
+        private final BlockingQueue<MetricSample> queue;
+        private Thread worker;
+
+        private Shard(int index, BlockingQueue<MetricSample> queue) {
+            this.index = index;
+            this.queue = queue;
+        }
+    }
+}
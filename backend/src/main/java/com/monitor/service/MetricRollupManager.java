@@ -0,0 +1,246 @@
+package com.monitor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains the 1-minute, 1-hour and 1-day rollups of {@code metric}. On
+ * TimescaleDB each tier is a real-time continuous aggregate with its own
+ * refresh and retention policy. Without TimescaleDB each tier is a plain table
+ * filled by {@link #refresh()}, which aggregates closed buckets after the
+ * tier's watermark and records the new watermark in
+ * {@code metric_rollup_watermark}. Both re-aggregate buckets that can still
+ * receive late samples, as far back as the ingestion lateness window.
+ */
+class MetricRollupManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricRollupManager.class);
+
+    static final List<String> COLUMNS = List.of("cpu_usage", "memory_usage", "disk_usage", "network_in",
+            "network_out");
+
+    // Samples are written behind by the ingestion pipeline; leave room before closing a bucket.
+    private static final long SETTLE_SECONDS = 60;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int rawRetentionDays;
+    private final Map<MetricRollupTier, Integer> retentionDays;
+    private final long latenessSeconds;
+    private final Map<MetricRollupTier, LocalDateTime> watermarks = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile boolean continuous;
+
+    MetricRollupManager(JdbcTemplate jdbcTemplate, int rawRetentionDays, Map<MetricRollupTier, Integer> retentionDays,
+            long latenessSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rawRetentionDays = rawRetentionDays;
+        this.retentionDays = retentionDays;
+        this.latenessSeconds = latenessSeconds;
+    }
+
+    void initialize(boolean timescaleEnabled) {
+        try {
+            if (timescaleEnabled) {
+                for (MetricRollupTier tier : MetricRollupTier.values()) {
+                    createContinuousAggregate(tier);
+                }
+            } else {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS metric_rollup_watermark ("
+                        + "tier VARCHAR(16) PRIMARY KEY, watermark TIMESTAMP NOT NULL)");
+                for (MetricRollupTier tier : MetricRollupTier.values()) {
+                    createRollupTable(tier);
+                }
+                loadWatermarks();
+            }
+            continuous = timescaleEnabled;
+            enabled = true;
+            logger.info("Metric rollups enabled ({})", timescaleEnabled ? "continuous aggregates" : "scheduled");
+        } catch (Exception ex) {
+            enabled = false;
+            logger.warn("Metric rollups unavailable, range queries will read raw samples", ex);
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Coarsest tier whose bucket evenly divides the requested step, or {@code null}
+     * when the query has to read raw samples.
+     */
+    MetricRollupTier selectTier(long stepSeconds, boolean aggregationSupportsRollups) {
+        if (!enabled || !aggregationSupportsRollups) {
+            return null;
+        }
+
+        MetricRollupTier[] tiers = MetricRollupTier.values();
+        for (int i = tiers.length - 1; i >= 0; i--) {
+            long bucket = tiers[i].bucketSeconds();
+            if (stepSeconds >= bucket && stepSeconds % bucket == 0) {
+                return tiers[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits {@code [from, to)} at the first instant the tier does not cover yet;
+     * the remainder is read from raw samples. Continuous aggregates are
+     * real-time, so they cover the whole range.
+     */
+    LocalDateTime coveredUntil(MetricRollupTier tier, LocalDateTime from, LocalDateTime to) {
+        if (continuous) {
+            return to;
+        }
+        LocalDateTime watermark = watermarks.get(tier);
+        if (watermark == null || watermark.isBefore(from)) {
+            return from;
+        }
+        return watermark.isAfter(to) ? to : watermark;
+    }
+
+    void refresh() {
+        if (!enabled || continuous) {
+            return;
+        }
+
+        LocalDateTime settled = LocalDateTime.now().minusSeconds(SETTLE_SECONDS);
+        for (MetricRollupTier tier : MetricRollupTier.values()) {
+            try {
+                refreshTier(tier, settled);
+            } catch (Exception ex) {
+                logger.error("Failed to refresh {}", tier.table(), ex);
+            }
+        }
+    }
+
+    void enforceRetention() {
+        if (!enabled || continuous) {
+            return;
+        }
+
+        for (MetricRollupTier tier : MetricRollupTier.values()) {
+            int deleted = jdbcTemplate.update(
+                    "DELETE FROM " + tier.table() + " WHERE bucket < now() - (? || ' days')::interval",
+                    retentionDays.get(tier));
+            if (deleted > 0) {
+                logger.info("Retention cleanup removed {} {} rows", deleted, tier.table());
+            }
+        }
+    }
+
+    private void createContinuousAggregate(MetricRollupTier tier) {
+        StringBuilder select = new StringBuilder();
+        for (String column : COLUMNS) {
+            select.append(", min(").append(column).append(") AS ").append(column).append("_min")
+                    .append(", max(").append(column).append(") AS ").append(column).append("_max")
+                    .append(", avg(").append(column).append(") AS ").append(column).append("_avg")
+                    .append(", last(").append(column).append(", created_at) AS ").append(column).append("_last");
+        }
+
+        long bucket = tier.bucketSeconds();
+        jdbcTemplate.execute("CREATE MATERIALIZED VIEW IF NOT EXISTS " + tier.table()
+                + " WITH (timescaledb.continuous, timescaledb.materialized_only = false) AS "
+                + "SELECT time_bucket(INTERVAL '" + bucket + " seconds', created_at) AS bucket, device_id, "
+                + "count(*) AS samples" + select
+                + " FROM metric GROUP BY bucket, device_id WITH NO DATA");
+        jdbcTemplate.execute("SELECT add_continuous_aggregate_policy('" + tier.table() + "', "
+                + "start_offset => INTERVAL '" + Math.max(bucket * 3, latenessSeconds + bucket * 2) + " seconds', "
+                + "end_offset => INTERVAL '" + bucket + " seconds', "
+                + "schedule_interval => INTERVAL '" + Math.min(bucket, 3600) + " seconds', "
+                + "if_not_exists => TRUE)");
+        jdbcTemplate.execute("SELECT add_retention_policy('" + tier.table() + "', INTERVAL '"
+                + retentionDays.get(tier) + " days', if_not_exists => TRUE)");
+    }
+
+    private void createRollupTable(MetricRollupTier tier) {
+        StringBuilder columns = new StringBuilder();
+        for (String column : COLUMNS) {
+            for (String suffix : new String[] { "_min", "_max", "_avg", "_last" }) {
+                columns.append(", ").append(column).append(suffix).append(" DOUBLE PRECISION");
+            }
+        }
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tier.table() + " ("
+                + "device_id UUID NOT NULL, bucket TIMESTAMP NOT NULL, samples BIGINT NOT NULL" + columns
+                + ", PRIMARY KEY (device_id, bucket))");
+    }
+
+    private void loadWatermarks() {
+        jdbcTemplate.query("SELECT tier, watermark FROM metric_rollup_watermark", rs -> {
+            try {
+                watermarks.put(MetricRollupTier.valueOf(rs.getString("tier")),
+                        rs.getTimestamp("watermark").toLocalDateTime());
+            } catch (IllegalArgumentException ignored) {
+                // tier no longer exists
+            }
+        });
+    }
+
+    private void refreshTier(MetricRollupTier tier, LocalDateTime settled) {
+        LocalDateTime watermark = watermarks.get(tier);
+        LocalDateTime start = watermark != null
+                ? watermark
+                : floor(LocalDateTime.now().minusDays(rawRetentionDays), tier);
+
+        LocalDateTime upTo = floor(settled, tier);
+        LocalDateTime catchUpLimit = floor(start.plus(tier.maxCatchUp()), tier);
+        if (upTo.isAfter(catchUpLimit)) {
+            upTo = catchUpLimit;
+        }
+        if (!upTo.isAfter(start)) {
+            return;
+        }
+
+        // Buckets already rolled up may have received late samples since.
+        LocalDateTime from = watermark != null ? floor(watermark.minusSeconds(latenessSeconds), tier) : start;
+
+        StringBuilder insertColumns = new StringBuilder("device_id, bucket, samples");
+        StringBuilder select = new StringBuilder();
+        StringBuilder update = new StringBuilder("samples = EXCLUDED.samples");
+        for (String column : COLUMNS) {
+            for (String suffix : new String[] { "_min", "_max", "_avg", "_last" }) {
+                insertColumns.append(", ").append(column).append(suffix);
+                update.append(", ").append(column).append(suffix).append(" = EXCLUDED.").append(column).append(suffix);
+            }
+            select.append(", min(").append(column).append(")")
+                    .append(", max(").append(column).append(")")
+                    .append(", avg(").append(column).append(")")
+                    .append(", (array_agg(").append(column).append(" ORDER BY created_at DESC))[1]");
+        }
+
+        String bucket = MetricsStorageService.bucketExpression("created_at", tier.bucketSeconds(), false);
+        int rows = jdbcTemplate.update("INSERT INTO " + tier.table() + " (" + insertColumns + ") "
+                + "SELECT device_id, " + bucket + " AS bucket, count(*)" + select
+                + " FROM metric WHERE created_at >= ? AND created_at < ? GROUP BY device_id, 2"
+                + " ON CONFLICT (device_id, bucket) DO UPDATE SET " + update,
+                Timestamp.valueOf(from), Timestamp.valueOf(upTo));
+
+        jdbcTemplate.update("INSERT INTO metric_rollup_watermark (tier, watermark) VALUES (?, ?) "
+                + "ON CONFLICT (tier) DO UPDATE SET watermark = EXCLUDED.watermark",
+                tier.name(), Timestamp.valueOf(upTo));
+        watermarks.put(tier, upTo);
+
+        logger.debug("Rolled up {} rows into {} for [{}, {})", rows, tier.table(), from, upTo);
+    }
+
+    // Same bucket boundaries as the SQL bucket expressions, which treat timestamps as UTC wall-clock.
+    static LocalDateTime floor(LocalDateTime value, MetricRollupTier tier) {
+        long seconds = value.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(seconds - Math.floorMod(seconds, tier.bucketSeconds()), 0, ZoneOffset.UTC);
+    }
+
+    static LocalDateTime ceil(LocalDateTime value, MetricRollupTier tier) {
+        LocalDateTime floored = floor(value, tier);
+        return floored.equals(value) ? floored : floored.plusSeconds(tier.bucketSeconds());
+    }
+}
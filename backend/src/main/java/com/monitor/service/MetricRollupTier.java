@@ -0,0 +1,32 @@
+package com.monitor.service;
+
+import java.time.Duration;
+
+public enum MetricRollupTier {
+    MINUTE("metric_rollup_1m", Duration.ofMinutes(1), Duration.ofHours(6)),
+    HOUR("metric_rollup_1h", Duration.ofHours(1), Duration.ofDays(7)),
+    DAY("metric_rollup_1d", Duration.ofDays(1), Duration.ofDays(30));
+
+    private final String table;
+    private final Duration bucket;
+    private final Duration maxCatchUp;
+
+    MetricRollupTier(String table, Duration bucket, Duration maxCatchUp) {
+        this.table = table;
+        this.bucket = bucket;
+        this.maxCatchUp = maxCatchUp;
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public long bucketSeconds() {
+        return bucket.getSeconds();
+    }
+
+    /** Upper bound on how much raw data one fallback refresh run aggregates. */
+    public Duration maxCatchUp() {
+        return maxCatchUp;
+    }
+}
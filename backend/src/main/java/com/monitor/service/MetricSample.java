@@ -0,0 +1,26 @@
+package com.monitor.service;
+
+import java.util.UUID;
+
+/**
+ * Flat, immutable copy of a single agent sample as it travels through the
+ * ingestion pipeline. Kept free of JPA references so it can be queued and
+ * written in bulk without touching the persistence context.
+ * {@code agentTimestamp} is false when the agent sent no collection time and
+ * the receive time was used; only agent timestamps identify a duplicate.
+ */
+public record MetricSample(
+        UUID deviceId,
+        long timestampMillis,
+        double cpuUsage,
+        double memoryUsage,
+        double diskUsage,
+        double networkIn,
+        double networkOut,
+        boolean agentTimestamp) {
+
+    public MetricSample(UUID deviceId, long timestampMillis, double cpuUsage, double memoryUsage,
+            double diskUsage, double networkIn, double networkOut) {
+        this(deviceId, timestampMillis, cpuUsage, memoryUsage, diskUsage, networkIn, networkOut, true);
+    }
+}
@@ -1,5 +1,10 @@
 package com.monitor.service;
 
+import com.monitor.dto.MetricAggregation;
+import com.monitor.dto.MetricPoint;
+import com.monitor.dto.ProcessPoint;
+import com.monitor.entity.MetricDetail;
+import com.monitor.entity.MetricDetailFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +14,19 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 @Component
 public class MetricsStorageService {
 
@@ -17,35 +35,143 @@ public class MetricsStorageService {
     private final JdbcTemplate jdbcTemplate;
     private final int metricRetentionDays;
     private final int metricDetailRetentionDays;
+    private final int processRetentionDays;
+    private final MetricBulkWriter bulkWriter;
+    private final MetricRollupManager rollupManager;
+    private final MetricDetailCodec detailCodec;
+    private final ProcessSampleExtractor processExtractor;
+    private final ProcessNameRegistry processNames;
+    private final long rollupRefreshIntervalMs;
     private volatile boolean timescaleEnabled = false;
+    private ScheduledExecutorService rollupScheduler;
 
     public MetricsStorageService(
             JdbcTemplate jdbcTemplate,
+            MetricDetailCodec detailCodec,
+            ProcessSampleExtractor processExtractor,
             @Value("${app.metrics.retentionDays:30}") int metricRetentionDays,
-            @Value("${app.metrics.detailRetentionDays:7}") int metricDetailRetentionDays) {
+            @Value("${app.metrics.detailRetentionDays:7}") int metricDetailRetentionDays,
+            @Value("${app.metrics.processRetentionDays:7}") int processRetentionDays,
+            @Value("${app.metrics.copyEnabled:true}") boolean copyEnabled,
+            @Value("${app.metrics.rollup.minuteRetentionDays:90}") int minuteRollupRetentionDays,
+            @Value("${app.metrics.rollup.hourRetentionDays:365}") int hourRollupRetentionDays,
+            @Value("${app.metrics.rollup.dayRetentionDays:1825}") int dayRollupRetentionDays,
+            @Value("${app.metrics.rollup.refreshIntervalMs:60000}") long rollupRefreshIntervalMs,
+            @Value("${app.ingest.maxLatenessSeconds:600}") long maxLatenessSeconds) {
         this.jdbcTemplate = jdbcTemplate;
+        this.detailCodec = detailCodec;
+        this.processExtractor = processExtractor;
+        this.processNames = new ProcessNameRegistry(jdbcTemplate);
+        this.rollupRefreshIntervalMs = Math.max(rollupRefreshIntervalMs, 1000);
         this.metricRetentionDays = Math.max(metricRetentionDays, 1);
         this.metricDetailRetentionDays = Math.max(metricDetailRetentionDays, 1);
+        this.processRetentionDays = Math.max(processRetentionDays, 1);
+        this.bulkWriter = new MetricBulkWriter(jdbcTemplate, copyEnabled);
+        this.rollupManager = new MetricRollupManager(jdbcTemplate, this.metricRetentionDays, Map.of(
+                MetricRollupTier.MINUTE, Math.max(minuteRollupRetentionDays, 1),
+                MetricRollupTier.HOUR, Math.max(hourRollupRetentionDays, 1),
+                MetricRollupTier.DAY, Math.max(dayRollupRetentionDays, 1)),
+                Math.max(maxLatenessSeconds, 0));
     }
 
     @EventListener(ApplicationReadyEvent.class)
     public void initializeStorage() {
+        createProcessTables();
         try {
             jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS timescaledb");
             jdbcTemplate.execute("SELECT create_hypertable('metric', 'created_at', if_not_exists => TRUE)");
             jdbcTemplate.execute("SELECT create_hypertable('metric_detail', 'created_at', if_not_exists => TRUE)");
+            jdbcTemplate.execute("SELECT create_hypertable('process_metric', 'created_at', if_not_exists => TRUE)");
             jdbcTemplate.execute(
                     "SELECT add_retention_policy('metric', INTERVAL '" + metricRetentionDays
                             + " days', if_not_exists => TRUE)");
             jdbcTemplate.execute(
                     "SELECT add_retention_policy('metric_detail', INTERVAL '" + metricDetailRetentionDays
                             + " days', if_not_exists => TRUE)");
+            jdbcTemplate.execute(
+                    "SELECT add_retention_policy('process_metric', INTERVAL '" + processRetentionDays
+                            + " days', if_not_exists => TRUE)");
             timescaleEnabled = true;
             logger.info("TimescaleDB hypertables and retention policies enabled");
         } catch (Exception ex) {
             timescaleEnabled = false;
             logger.warn("TimescaleDB not available, falling back to scheduled deletes", ex);
         }
+        enableDeduplication();
+        rollupManager.initialize(timescaleEnabled);
+        startRollupRefresh();
+    }
+
+    // A catch-up refresh can take minutes; it gets its own thread so it never holds up
+    // the shared scheduler that runs liveness and alert ticks. Fixed delay keeps runs
+    // from overlapping.
+    private void startRollupRefresh() {
+        rollupScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metric-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rollupScheduler.scheduleWithFixedDelay(this::refreshRollupsFallback, rollupRefreshIntervalMs,
+                rollupRefreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rollupScheduler != null) {
+            rollupScheduler.shutdownNow();
+        }
+    }
+
+    // Processes extracted from detail snapshots, one narrow row per process, keyed by interned name.
+    private void createProcessTables() {
+        try {
+            processNames.initialize();
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS process_metric ("
+                    + "device_id UUID NOT NULL, name_id INTEGER NOT NULL, pid INTEGER NOT NULL, "
+                    + "cpu_percent DOUBLE PRECISION, rss_bytes BIGINT, io_read_bytes BIGINT, "
+                    + "io_write_bytes BIGINT, created_at TIMESTAMP NOT NULL)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_process_metric_device_name_created_at "
+                    + "ON process_metric (device_id, name_id, created_at DESC)");
+        } catch (Exception ex) {
+            logger.warn("Could not create process tables; process series will not be stored", ex);
+            return;
+        }
+
+        // A snapshot lists each pid once; this keeps a snapshot's rows from being written twice.
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uq_process_metric_device_created_at_pid "
+                    + "ON process_metric (device_id, created_at, pid)");
+            bulkWriter.setDeduplicateProcesses(true);
+        } catch (Exception ex) {
+            logger.warn("Could not create unique index on process_metric (device_id, created_at, pid); "
+                    + "process rows will be stored as-is until existing duplicates are removed", ex);
+        }
+    }
+
+    // Agent retries resend samples with the same collection timestamp; the partial unique
+    // index lets the writer drop them. Rows stamped with the receive time are never
+    // duplicates of each other and stay outside it, so the plain lookup index is kept.
+    private void enableDeduplication() {
+        try {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS uq_metric_device_agent_created_at "
+                    + "ON metric (device_id, created_at) WHERE agent_timestamp");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS uq_metric_device_created_at");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_metric_device_created_at "
+                    + "ON metric (device_id, created_at)");
+            bulkWriter.setDeduplicate(true);
+        } catch (Exception ex) {
+            logger.warn("Could not create unique index on metric (device_id, created_at) for agent timestamps; "
+                    + "duplicate samples will be stored as-is until existing duplicates are removed", ex);
+        }
+    }
+
+    private void refreshRollupsFallback() {
+        try {
+            rollupManager.refresh();
+        } catch (RuntimeException ex) {
+            // An exception would cancel every later run.
+            logger.error("Rollup refresh failed", ex);
+        }
     }
 
     @Scheduled(cron = "0 30 2 * * *")
@@ -60,10 +186,296 @@ public class MetricsStorageService {
         int detailDeleted = jdbcTemplate.update(
                 "DELETE FROM metric_detail WHERE created_at < now() - (? || ' days')::interval",
                 metricDetailRetentionDays);
+        int processDeleted = jdbcTemplate.update(
+                "DELETE FROM process_metric WHERE created_at < now() - (? || ' days')::interval",
+                processRetentionDays);
+
+        if (metricDeleted > 0 || detailDeleted > 0 || processDeleted > 0) {
+            logger.info("Retention cleanup removed {} metric rows, {} metric_detail rows and {} process_metric rows",
+                    metricDeleted, detailDeleted, processDeleted);
+        }
+
+        rollupManager.enforceRetention();
+    }
+
+    // Retention goes by created_at, but a delta is only readable with its older keyframe.
+    // Runs in both modes so deltas go together with their keyframe instead of outliving it.
+    @Scheduled(cron = "0 45 2 * * *")
+    public void enforceKeyframeRetention() {
+        int deltaDeleted = jdbcTemplate.update(
+                "DELETE FROM metric_detail WHERE details_base_at < now() - (? || ' days')::interval",
+                metricDetailRetentionDays);
+        if (deltaDeleted > 0) {
+            logger.info("Retention cleanup removed {} metric_detail deltas of expired keyframes", deltaDeleted);
+        }
+    }
+
+    public int insertMetrics(List<MetricSample> samples) {
+        return bulkWriter.writeMetrics(samples);
+    }
+
+    public int insertMetricDetails(List<MetricDetailSample> details) {
+        List<EncodedMetricDetail> encoded = new ArrayList<>(details.size());
+        for (MetricDetailSample detail : details) {
+            encoded.add(detailCodec.encode(detail));
+        }
+
+        int written;
+        try {
+            written = bulkWriter.writeMetricDetails(encoded);
+        } catch (RuntimeException ex) {
+            detailCodec.forget(details.stream().map(MetricDetailSample::deviceId).distinct().toList());
+            throw ex;
+        }
+
+        insertProcessMetrics(details);
+        return written;
+    }
+
+    // The snapshots are already stored; failing here would only make the agent send them again.
+    private void insertProcessMetrics(List<MetricDetailSample> details) {
+        try {
+            List<ProcessSample> processes = new ArrayList<>();
+            for (MetricDetailSample detail : details) {
+                processes.addAll(processExtractor.extract(detail));
+            }
+            if (!processes.isEmpty()) {
+                bulkWriter.writeProcessMetrics(processes, processNames.intern(processes));
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Failed to store processes of {} detail snapshots", details.size(), ex);
+        }
+    }
+
+    /**
+     * Locates the {@code limit} newest detail rows of a device that sort before
+     * the {@code (before, beforeId)} cursor (all rows when {@code before} is
+     * null; every row at {@code before} is excluded when {@code beforeId} is
+     * null) by walking idx_metric_detail_device_created_at, without reading
+     * their payload.
+     */
+    public MetricDetailPage findDetailPage(UUID deviceId, LocalDateTime before, Long beforeId, int limit,
+            List<String> fields) {
+        String cursor = "";
+        Object[] args = new Object[] { deviceId, limit };
+        if (before != null && beforeId != null) {
+            // The plain bound lets the index range scan start at the cursor; the row comparison breaks ties.
+            cursor = " AND created_at <= ? AND (created_at, id) < (?, ?)";
+            args = new Object[] { deviceId, Timestamp.valueOf(before), Timestamp.valueOf(before), beforeId, limit };
+        } else if (before != null) {
+            cursor = " AND created_at < ?";
+            args = new Object[] { deviceId, Timestamp.valueOf(before), limit };
+        }
+        String sql = "SELECT id, created_at FROM metric_detail WHERE device_id = ?" + cursor
+                + " ORDER BY created_at DESC, id DESC LIMIT ?";
+
+        List<Long> ids = new ArrayList<>(limit);
+        List<LocalDateTime> createdAt = new ArrayList<>(limit);
+        jdbcTemplate.query(sql, rs -> {
+            ids.add(rs.getLong("id"));
+            createdAt.add(rs.getTimestamp("created_at").toLocalDateTime());
+        }, args);
+
+        if (ids.isEmpty()) {
+            return new MetricDetailPage(deviceId, fields, before, beforeId, ids, null, null);
+        }
+        return new MetricDetailPage(deviceId, fields, before, beforeId, ids, createdAt.get(0),
+                createdAt.get(createdAt.size() - 1));
+    }
+
+    /**
+     * Reads the rows of a page. When the page has fields, TEXT rows come back
+     * with only those top-level keys of their document, projected in the
+     * database; compressed rows come back as stored and are projected after
+     * decoding.
+     */
+    public List<MetricDetail> queryDetailPage(MetricDetailPage page) {
+        if (page.ids().isEmpty()) {
+            return List.of();
+        }
+
+        boolean project = !page.fields().isEmpty();
+        String detailsJson = project
+                ? "CASE WHEN details_json IS NULL THEN NULL ELSE (SELECT coalesce(jsonb_object_agg(key, value), "
+                        + "'{}'::jsonb) FROM jsonb_each(details_json::jsonb) WHERE key = ANY(?))::text END"
+                : "details_json";
+        // The time bounds let TimescaleDB skip chunks outside the page.
+        String sql = "SELECT id, created_at, details_format, details_base_at, details_data, "
+                + detailsJson + " AS details_json FROM metric_detail "
+                + "WHERE device_id = ? AND created_at >= ? AND created_at <= ? AND id = ANY(?) "
+                + "ORDER BY created_at DESC, id DESC";
+
+        List<Object> args = new ArrayList<>(5);
+        if (project) {
+            args.add(page.fields().toArray(String[]::new));
+        }
+        args.add(page.deviceId());
+        args.add(Timestamp.valueOf(page.oldest()));
+        args.add(Timestamp.valueOf(page.newest()));
+        args.add(page.ids().toArray(Long[]::new));
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            String format = rs.getString("details_format");
+            Timestamp baseAt = rs.getTimestamp("details_base_at");
+            return MetricDetail.builder()
+                    .id(rs.getLong("id"))
+                    .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                    .detailsFormat(format != null ? MetricDetailFormat.valueOf(format) : null)
+                    .detailsBaseAt(baseAt != null ? baseAt.toLocalDateTime() : null)
+                    .detailsData(rs.getBytes("details_data"))
+                    .detailsJson(rs.getString("details_json"))
+                    .build();
+        }, args.toArray());
+    }
+
+    public boolean isTimescaleEnabled() {
+        return timescaleEnabled;
+    }
+
+    /**
+     * Aggregates the samples of one device into {@code stepSeconds} buckets in the
+     * database. When the step is a multiple of a rollup tier and the aggregation
+     * can be recombined, whole tier buckets are read from the coarsest such tier
+     * and only the edges of the range (and anything after the fallback
+     * watermark) come from raw samples.
+     */
+    public List<MetricPoint> queryMetricRange(UUID deviceId, LocalDateTime from, LocalDateTime to,
+            long stepSeconds, MetricAggregation aggregation) {
+        MetricRollupTier tier = rollupManager.selectTier(stepSeconds, aggregation.supportsRollups());
+        if (tier != null) {
+            LocalDateTime rollupFrom = MetricRollupManager.ceil(from, tier);
+            LocalDateTime rollupTo = MetricRollupManager.floor(rollupManager.coveredUntil(tier, from, to), tier);
+            if (rollupTo.isAfter(rollupFrom)) {
+                return queryRollupRange(tier, deviceId, from, rollupFrom, rollupTo, to, stepSeconds, aggregation);
+            }
+        }
 
-        if (metricDeleted > 0 || detailDeleted > 0) {
-            logger.info("Retention cleanup removed {} metric rows and {} metric_detail rows", metricDeleted,
-                    detailDeleted);
+        String sql = "SELECT " + bucketExpression("created_at", stepSeconds, timescaleEnabled) + " AS bucket, "
+                + aggregation.sql("cpu_usage") + " AS cpu_usage, "
+                + aggregation.sql("memory_usage") + " AS memory_usage, "
+                + aggregation.sql("disk_usage") + " AS disk_usage, "
+                + aggregation.sql("network_in") + " AS network_in, "
+                + aggregation.sql("network_out") + " AS network_out, "
+                + "count(*) AS samples "
+                + "FROM metric WHERE device_id = ? AND created_at >= ? AND created_at < ? "
+                + "GROUP BY bucket ORDER BY bucket";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toMetricPoint(rs),
+                deviceId, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    // Rollup rows for [rollupFrom, rollupTo) plus raw rows for [from, rollupFrom) and [rollupTo, to),
+    // shaped alike so the outer query can re-bucket them together.
+    private List<MetricPoint> queryRollupRange(MetricRollupTier tier, UUID deviceId, LocalDateTime from,
+            LocalDateTime rollupFrom, LocalDateTime rollupTo, LocalDateTime to, long stepSeconds,
+            MetricAggregation aggregation) {
+        StringBuilder rollupColumns = new StringBuilder();
+        StringBuilder rawColumns = new StringBuilder();
+        StringBuilder outerColumns = new StringBuilder();
+        for (String column : MetricRollupManager.COLUMNS) {
+            rollupColumns.append(", ").append(column).append("_avg, ").append(column).append("_max");
+            rawColumns.append(", ").append(column).append(" AS ").append(column).append("_avg, ")
+                    .append(column).append(" AS ").append(column).append("_max");
+            outerColumns.append(aggregation.rollupSql(column)).append(" AS ").append(column).append(", ");
+        }
+
+        String sql = "SELECT " + bucketExpression("ts", stepSeconds, timescaleEnabled) + " AS bucket, "
+                + outerColumns + "sum(samples) AS samples FROM ("
+                + "SELECT bucket AS ts, samples" + rollupColumns + " FROM " + tier.table()
+                + " WHERE device_id = ? AND bucket >= ? AND bucket < ?"
+                + " UNION ALL "
+                + "SELECT created_at AS ts, 1 AS samples" + rawColumns + " FROM metric"
+                + " WHERE device_id = ? AND ((created_at >= ? AND created_at < ?) OR (created_at >= ? AND created_at < ?))"
+                + ") AS combined GROUP BY bucket ORDER BY bucket";
+
+        List<Object> args = new ArrayList<>(8);
+        args.add(deviceId);
+        args.add(Timestamp.valueOf(rollupFrom));
+        args.add(Timestamp.valueOf(rollupTo));
+        args.add(deviceId);
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(rollupFrom));
+        args.add(Timestamp.valueOf(rollupTo));
+        args.add(Timestamp.valueOf(to));
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> toMetricPoint(rs), args.toArray());
+    }
+
+    /**
+     * Aggregates one process name of a device, or one of its pids, into
+     * {@code stepSeconds} buckets. Processes sharing the name are summed per
+     * snapshot first, so a bucket reflects the whole group (all nginx workers)
+     * rather than an average of its members.
+     */
+    public List<ProcessPoint> queryProcessRange(UUID deviceId, String name, Integer pid, LocalDateTime from,
+            LocalDateTime to, long stepSeconds, MetricAggregation aggregation) {
+        Integer nameId = processNames.find(name);
+        if (nameId == null) {
+            return List.of();
+        }
+
+        String sql = "SELECT " + bucketExpression("created_at", stepSeconds, timescaleEnabled) + " AS bucket, "
+                + aggregation.sql("cpu_percent") + " AS cpu_percent, "
+                + aggregation.sql("rss_bytes") + " AS rss_bytes, "
+                + aggregation.sql("io_read_bytes") + " AS io_read_bytes, "
+                + aggregation.sql("io_write_bytes") + " AS io_write_bytes, "
+                + "max(processes) AS processes, count(*) AS samples FROM ("
+                + "SELECT created_at, sum(cpu_percent) AS cpu_percent, "
+                + "sum(rss_bytes)::double precision AS rss_bytes, "
+                + "sum(io_read_bytes)::double precision AS io_read_bytes, "
+                + "sum(io_write_bytes)::double precision AS io_write_bytes, count(*) AS processes "
+                + "FROM process_metric WHERE device_id = ? AND name_id = ?"
+                + (pid != null ? " AND pid = ?" : "")
+                + " AND created_at >= ? AND created_at < ? GROUP BY created_at"
+                + ") AS snapshots GROUP BY bucket ORDER BY bucket";
+
+        List<Object> args = new ArrayList<>(5);
+        args.add(deviceId);
+        args.add(nameId);
+        if (pid != null) {
+            args.add(pid);
+        }
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(to));
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> ProcessPoint.builder()
+                .createdAt(rs.getTimestamp("bucket").toLocalDateTime())
+                .cpuPercent(rs.getObject("cpu_percent", Double.class))
+                .rssBytes(rs.getObject("rss_bytes", Double.class))
+                .ioReadBytes(rs.getObject("io_read_bytes", Double.class))
+                .ioWriteBytes(rs.getObject("io_write_bytes", Double.class))
+                .processes(rs.getLong("processes"))
+                .samples(rs.getLong("samples"))
+                .build(), args.toArray());
+    }
+
+    private static MetricPoint toMetricPoint(ResultSet rs) throws SQLException {
+        return MetricPoint.builder()
+                .createdAt(rs.getTimestamp("bucket").toLocalDateTime())
+                .cpuUsage(rs.getDouble("cpu_usage"))
+                .memoryUsage(rs.getDouble("memory_usage"))
+                .diskUsage(rs.getDouble("disk_usage"))
+                .networkIn(rs.getDouble("network_in"))
+                .networkOut(rs.getDouble("network_out"))
+                .samples(rs.getLong("samples"))
+                .build();
+    }
+
+    static String bucketExpression(String column, long stepSeconds, boolean timescale) {
+        if (timescale) {
+            return "time_bucket(INTERVAL '" + stepSeconds + " seconds', " + column + ")";
+        }
+        if (stepSeconds == 60) {
+            return "date_trunc('minute', " + column + ")";
+        }
+        if (stepSeconds == 3600) {
+            return "date_trunc('hour', " + column + ")";
+        }
+        if (stepSeconds == 86400) {
+            return "date_trunc('day', " + column + ")";
         }
+        // date_trunc only knows calendar units; other steps are floored on the epoch.
+        return "timestamp 'epoch' + make_interval(secs => floor(extract(epoch FROM " + column
+                + ")::double precision / " + stepSeconds + ") * " + stepSeconds + ")";
     }
 }
@@ -0,0 +1,72 @@
+package com.monitor.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the agent's network byte counters, which only grow, into per-second
+ * rates between a device's consecutive samples. Raw counters say more about
+ * uptime than about load, so everything that compares network values across
+ * devices, over time or against a threshold works on these rates: fleet stats
+ * and top-N, alert rules and anomaly baselines. Each sample is rated once,
+ * here, so they all see the same interval. Samples must be passed in the
+ * order they are accepted; a sample that is not newer than the previous one,
+ * or whose counter went backwards (agent or host restart), has no rate.
+ */
+@Component
+public class NetworkRates {
+
+    private final Map<UUID, Counters> devices = new ConcurrentHashMap<>();
+
+    /**
+     * The sample with {@code networkIn} and {@code networkOut} replaced by bytes
+     * per second since the device's previous sample, or NaN when unknown.
+     */
+    public MetricSample toRates(MetricSample sample) {
+        Counters counters = devices.get(sample.deviceId());
+        if (counters == null) {
+            counters = devices.computeIfAbsent(sample.deviceId(), id -> new Counters());
+        }
+
+        double inRate;
+        double outRate;
+        synchronized (counters) {
+            if (sample.timestampMillis() <= counters.sampledAt) {
+                return withRates(sample, Double.NaN, Double.NaN);
+            }
+            inRate = rate(counters.networkIn, counters.sampledAt, sample.networkIn(), sample.timestampMillis());
+            outRate = rate(counters.networkOut, counters.sampledAt, sample.networkOut(), sample.timestampMillis());
+            counters.networkIn = sample.networkIn();
+            counters.networkOut = sample.networkOut();
+            counters.sampledAt = sample.timestampMillis();
+        }
+        return withRates(sample, inRate, outRate);
+    }
+
+    /**
+     * Bytes per second between two readings of a counter; NaN without a
+     * previous reading ({@code previousAt} 0), for readings not in time order,
+     * or when the counter was reset.
+     */
+    private static double rate(double previous, long previousAt, double current, long currentAt) {
+        if (previousAt == 0L || currentAt <= previousAt || current < previous) {
+            return Double.NaN;
+        }
+        return (current - previous) * 1000.0 / (currentAt - previousAt);
+    }
+
+    private static MetricSample withRates(MetricSample sample, double inRate, double outRate) {
+        return new MetricSample(sample.deviceId(), sample.timestampMillis(), sample.cpuUsage(),
+                sample.memoryUsage(), sample.diskUsage(), inRate, outRate, sample.agentTimestamp());
+    }
+
+    // Guarded by itself.
+    private static final class Counters {
+        private double networkIn;
+        private double networkOut;
+        private long sampledAt;
+    }
+}
@@ -0,0 +1,87 @@
+package com.monitor.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns process names into {@code process_name} so {@code process_metric}
+ * rows carry a four-byte id instead of the name. Ids are cached in memory up
+ * to {@link #MAX_CACHED} names; a name seen for the first time costs one
+ * insert and one lookup for the whole snapshot it arrived in.
+ */
+class ProcessNameRegistry {
+
+    private static final int MAX_CACHED = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    ProcessNameRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    void initialize() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS process_name ("
+                + "id SERIAL PRIMARY KEY, name TEXT NOT NULL UNIQUE)");
+    }
+
+    /**
+     * Ids of the samples' names, in order, creating the ones that are new.
+     */
+    int[] intern(List<ProcessSample> samples) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (ProcessSample sample : samples) {
+            if (!ids.containsKey(sample.name())) {
+                missing.add(sample.name());
+            }
+        }
+
+        Map<String, Integer> created = new HashMap<>();
+        if (!missing.isEmpty()) {
+            String[] names = missing.toArray(String[]::new);
+            jdbcTemplate.update("INSERT INTO process_name (name) SELECT unnest(?::text[]) "
+                    + "ON CONFLICT (name) DO NOTHING", (Object) names);
+            jdbcTemplate.query("SELECT id, name FROM process_name WHERE name = ANY(?)", rs -> {
+                created.put(rs.getString("name"), rs.getInt("id"));
+                remember(rs.getString("name"), rs.getInt("id"));
+            }, (Object) names);
+        }
+
+        int[] result = new int[samples.size()];
+        for (int i = 0; i < result.length; i++) {
+            String name = samples.get(i).name();
+            Integer id = created.get(name);
+            result[i] = id != null ? id : ids.get(name);
+        }
+        return result;
+    }
+
+    /**
+     * Id of the name, or null when no process of that name was ever stored.
+     */
+    Integer find(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        List<Integer> found = jdbcTemplate.queryForList("SELECT id FROM process_name WHERE name = ?",
+                Integer.class, name);
+        if (found.isEmpty()) {
+            return null;
+        }
+        remember(name, found.get(0));
+        return found.get(0);
+    }
+
+    private void remember(String name, int id) {
+        if (ids.size() < MAX_CACHED) {
+            ids.put(name, id);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.monitor.service;
+
+import java.util.UUID;
+
+/**
+ * One process of a detail snapshot, as extracted by
+ * {@link ProcessSampleExtractor}. Counters the agent did not report are
+ * {@code -1} and a missing cpu percentage is NaN; both are stored as NULL.
+ */
+public record ProcessSample(
+        UUID deviceId,
+        long timestampMillis,
+        String name,
+        int pid,
+        double cpuPercent,
+        long rssBytes,
+        long ioReadBytes,
+        long ioWriteBytes) {
+}
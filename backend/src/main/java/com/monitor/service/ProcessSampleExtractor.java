@@ -0,0 +1,98 @@
+package com.monitor.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pulls the {@code processes} array out of a detail snapshot token by token,
+ * skipping every other key of the document and every field of a process but
+ * name, pid, cpu, RSS and I/O counters. Processes without a name are dropped
+ * and names are cut to {@link #MAX_NAME_LENGTH} characters.
+ */
+@Component
+public class ProcessSampleExtractor {
+
+    static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_PROCESSES = 1000;
+
+    private final JsonFactory jsonFactory;
+
+    public ProcessSampleExtractor(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public List<ProcessSample> extract(MetricDetailSample detail) {
+        try (JsonParser parser = jsonFactory.createParser(detail.detailsJson())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return List.of();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("processes".equals(field) && value == JsonToken.START_ARRAY) {
+                    return readProcesses(parser, detail);
+                }
+                parser.skipChildren();
+            }
+            return List.of();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed detail snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private static List<ProcessSample> readProcesses(JsonParser parser, MetricDetailSample detail)
+            throws IOException {
+        List<ProcessSample> processes = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT || processes.size() == MAX_PROCESSES) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String name = null;
+            int pid = -1;
+            double cpuPercent = Double.NaN;
+            long rssBytes = -1;
+            long ioReadBytes = -1;
+            long ioWriteBytes = -1;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "name" -> name = parser.getValueAsString();
+                    case "pid" -> pid = parser.getValueAsInt(-1);
+                    case "cpuPercent" -> cpuPercent = parser.getValueAsDouble(Double.NaN);
+                    case "memoryRssBytes" -> rssBytes = parser.getValueAsLong(-1);
+                    case "ioReadBytes" -> ioReadBytes = parser.getValueAsLong(-1);
+                    case "ioWriteBytes" -> ioWriteBytes = parser.getValueAsLong(-1);
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (name == null || name.isBlank()) {
+                continue;
+            }
+            if (name.length() > MAX_NAME_LENGTH) {
+                // Never split a surrogate pair; PostgreSQL rejects the lone half.
+                int end = Character.isHighSurrogate(name.charAt(MAX_NAME_LENGTH - 1))
+                        ? MAX_NAME_LENGTH - 1
+                        : MAX_NAME_LENGTH;
+                name = name.substring(0, end);
+            }
+            processes.add(new ProcessSample(detail.deviceId(), detail.timestampMillis(), name, pid, cpuPercent,
+                    rssBytes, ioReadBytes, ioWriteBytes));
+        }
+        return processes;
+    }
+}
@@ -0,0 +1,247 @@
+package com.monitor.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monitor.dto.MetricRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decodes agent batch bodies token by token instead of binding them to
+ * {@code List<MetricRequest>} / {@code List<MetricDetailRequest>}. Metric
+ * fields are range-checked as they are read, with the same limits as the DTO
+ * annotations, and go straight into {@link MetricSample}s. A detail's
+ * {@code details} object is never materialized: its bytes are skipped over and
+ * sliced out of the body as-is, replacing the parse → Map → serialize round
+ * trip. Invalid input is reported as {@link IllegalArgumentException} naming
+ * the item and field.
+ */
+@Component
+public class StreamingBatchReader {
+
+    private final JsonFactory jsonFactory;
+
+    public StreamingBatchReader(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Samples without an agent timestamp carry {@code receivedAt} and are
+     * given their own server stamp once their device is known, see
+     * {@link IngestionWindow#serverTimestamp}.
+     */
+    public List<MetricSample> readMetrics(byte[] body, long receivedAt) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            List<MetricSample> samples = new ArrayList<>();
+            startArray(parser);
+            while (nextElement(parser)) {
+                samples.add(readMetric(parser, samples.size(), receivedAt));
+            }
+            return samples;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed metrics batch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Items of a mixed-device batch, left unvalidated so that the caller can
+     * report each one on its own. A deviceId that is not a UUID is reported
+     * on its item rather than failing the batch.
+     */
+    public List<MetricIngestItem> readMetricRequests(byte[] body) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            List<MetricIngestItem> items = new ArrayList<>();
+            startArray(parser);
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.VALUE_NULL) {
+                    items.add(new MetricIngestItem(null, null));
+                } else if (token == JsonToken.START_OBJECT) {
+                    items.add(readMetricRequest(parser));
+                } else {
+                    throw new IllegalArgumentException("Expected a JSON object at " + parser.currentTokenLocation());
+                }
+            }
+            return items;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed metrics batch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Details carry no timestamp; each carries {@code receivedAt} until it is
+     * given its own server stamp, see {@link IngestionWindow#serverTimestamp}.
+     */
+    public List<MetricDetailSample> readMetricDetails(byte[] body, long receivedAt) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            List<MetricDetailSample> details = new ArrayList<>();
+            startArray(parser);
+            while (nextElement(parser)) {
+                details.add(readMetricDetail(parser, body, details.size(), receivedAt));
+            }
+            return details;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed metric detail batch: " + e.getMessage(), e);
+        }
+    }
+
+    private MetricSample readMetric(JsonParser parser, int index, long receivedAt) throws IOException {
+        UUID deviceId = null;
+        double cpuUsage = 0;
+        double memoryUsage = 0;
+        double diskUsage = 0;
+        double networkIn = 0;
+        double networkOut = 0;
+        long timestamp = receivedAt;
+        boolean agentTimestamp = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "deviceId" -> deviceId = readUuid(parser, value, index, field);
+                case "cpuUsage" -> cpuUsage = readPercent(parser, value, index, field);
+                case "memoryUsage" -> memoryUsage = readPercent(parser, value, index, field);
+                case "diskUsage" -> diskUsage = readPercent(parser, value, index, field);
+                case "networkIn" -> networkIn = readNonNegative(parser, value, index, field);
+                case "networkOut" -> networkOut = readNonNegative(parser, value, index, field);
+                case "timestamp" -> {
+                    if (value != JsonToken.VALUE_NULL) {
+                        timestamp = parser.getLongValue();
+                        agentTimestamp = true;
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (deviceId == null) {
+            throw invalid(index, "deviceId", "must not be null");
+        }
+        return new MetricSample(deviceId, timestamp, cpuUsage, memoryUsage, diskUsage, networkIn, networkOut,
+                agentTimestamp);
+    }
+
+    private MetricIngestItem readMetricRequest(JsonParser parser) throws IOException {
+        MetricRequest request = new MetricRequest();
+        String error = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "deviceId" -> {
+                    try {
+                        request.setDeviceId(value == JsonToken.VALUE_NULL ? null : UUID.fromString(parser.getText()));
+                    } catch (IllegalArgumentException e) {
+                        error = "deviceId: must be a UUID";
+                    }
+                }
+                case "cpuUsage" -> request.setCpuUsage(readNumber(parser, value));
+                case "memoryUsage" -> request.setMemoryUsage(readNumber(parser, value));
+                case "diskUsage" -> request.setDiskUsage(readNumber(parser, value));
+                case "networkIn" -> request.setNetworkIn(readNumber(parser, value));
+                case "networkOut" -> request.setNetworkOut(readNumber(parser, value));
+                case "timestamp" -> request.setTimestamp(value == JsonToken.VALUE_NULL ? null : parser.getLongValue());
+                default -> parser.skipChildren();
+            }
+        }
+        return new MetricIngestItem(request, error);
+    }
+
+    private MetricDetailSample readMetricDetail(JsonParser parser, byte[] body, int index, long receivedAt)
+            throws IOException {
+        UUID deviceId = null;
+        String detailsJson = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "deviceId" -> deviceId = readUuid(parser, value, index, field);
+                case "details" -> {
+                    if (value == JsonToken.VALUE_NULL) {
+                        break;
+                    }
+                    if (value != JsonToken.START_OBJECT) {
+                        throw invalid(index, field, "must be an object");
+                    }
+                    int start = (int) parser.currentTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    int end = (int) parser.currentLocation().getByteOffset();
+                    detailsJson = new String(body, start, end - start, StandardCharsets.UTF_8);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (deviceId == null) {
+            throw invalid(index, "deviceId", "must not be null");
+        }
+        if (detailsJson == null) {
+            throw invalid(index, "details", "must not be null");
+        }
+        return new MetricDetailSample(deviceId, receivedAt, detailsJson);
+    }
+
+    private static void startArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected a JSON array");
+        }
+    }
+
+    private static boolean nextElement(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Expected a JSON object at " + parser.currentTokenLocation());
+        }
+        return true;
+    }
+
+    private static UUID readUuid(JsonParser parser, JsonToken value, int index, String field) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        try {
+            return UUID.fromString(parser.getText());
+        } catch (IllegalArgumentException e) {
+            throw invalid(index, field, "must be a UUID");
+        }
+    }
+
+    private static double readPercent(JsonParser parser, JsonToken value, int index, String field)
+            throws IOException {
+        double number = readNumber(parser, value);
+        if (number < 0 || number > 100) {
+            throw invalid(index, field, "must be between 0 and 100");
+        }
+        return number;
+    }
+
+    private static double readNonNegative(JsonParser parser, JsonToken value, int index, String field)
+            throws IOException {
+        double number = readNumber(parser, value);
+        if (number < 0) {
+            throw invalid(index, field, "must be greater than or equal to 0");
+        }
+        return number;
+    }
+
+    // null keeps the primitive default, as DTO binding did.
+    private static double readNumber(JsonParser parser, JsonToken value) throws IOException {
+        return value == JsonToken.VALUE_NULL ? 0 : parser.getDoubleValue();
+    }
+
+    private static IllegalArgumentException invalid(int index, String field, String message) {
+        return new IllegalArgumentException("[" + index + "]." + field + ": " + message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.monitor.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of a credential, wrapped so it can be used as a map key. Lets the
+ * in-memory auth structures index tokens without holding them in plaintext.
+ */
+final class TokenHash {
+
+    private TokenHash() {
+    }
+
+    static ByteBuffer sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
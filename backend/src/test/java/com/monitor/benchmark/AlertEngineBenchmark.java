@@ -0,0 +1,103 @@
+package com.monitor.benchmark;
+
+import com.monitor.dto.FleetMetric;
+import com.monitor.entity.AlertOperator;
+import com.monitor.entity.AlertRule;
+import com.monitor.entity.AlertRuleType;
+import com.monitor.service.AlertEngine;
+import com.monitor.service.DeviceHeartbeatTracker;
+import com.monitor.service.DeviceStateStore;
+import com.monitor.service.FleetStats;
+import com.monitor.service.MetricSample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost {@link AlertEngine#evaluate} adds to every ingested sample, for a
+ * company with no rules and with {@code rules} company-wide threshold rules.
+ * Values hover around the thresholds so streaks start and break, and rules
+ * occasionally fire; published alerts go to a channel that drops them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlertEngineBenchmark {
+
+    private static final int DEVICES = 10_000;
+
+    @Param({ "1", "10" })
+    public int rules;
+
+    private final Random random = new Random(7);
+    private final List<UUID> deviceIds = new ArrayList<>();
+    private AlertEngine engine;
+    private UUID companyId;
+    private UUID quietCompanyId;
+    private long timestamp;
+
+    @Setup
+    public void setUp() {
+        DeviceHeartbeatTracker heartbeatTracker = new DeviceHeartbeatTracker(null);
+        engine = new AlertEngine(null, new SimpMessagingTemplate((message, timeout) -> true), heartbeatTracker,
+                new DeviceStateStore(null, heartbeatTracker, new FleetStats(5), 0));
+        companyId = UUID.randomUUID();
+        quietCompanyId = UUID.randomUUID();
+
+        FleetMetric[] metrics = FleetMetric.values();
+        List<AlertRule> companyRules = new ArrayList<>();
+        for (int i = 0; i < rules; i++) {
+            FleetMetric metric = metrics[i % metrics.length];
+            companyRules.add(AlertRule.builder()
+                    .id(UUID.randomUUID())
+                    .type(AlertRuleType.THRESHOLD)
+                    .metric(metric)
+                    .operator(AlertOperator.ABOVE)
+                    .threshold(metric.isPercent() ? 80 + i : 9e9)
+                    .hysteresis(5)
+                    .forSeconds(60)
+                    .build());
+        }
+        engine.replaceRules(companyId, companyRules);
+
+        for (int i = 0; i < DEVICES; i++) {
+            deviceIds.add(UUID.randomUUID());
+        }
+        timestamp = System.currentTimeMillis();
+    }
+
+    private MetricSample nextSample() {
+        timestamp += 10;
+        return new MetricSample(deviceIds.get(random.nextInt(DEVICES)), timestamp, 60 + random.nextDouble() * 40,
+                random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 1e10,
+                random.nextDouble() * 1e9);
+    }
+
+    @Benchmark
+    public void evaluate() {
+        engine.evaluate(companyId, nextSample());
+    }
+
+    @Benchmark
+    public void evaluateWithoutRules() {
+        engine.evaluate(quietCompanyId, nextSample());
+    }
+}
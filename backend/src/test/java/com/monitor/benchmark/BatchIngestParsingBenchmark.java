@@ -0,0 +1,150 @@
+package com.monitor.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monitor.dto.MetricDetailRequest;
+import com.monitor.dto.MetricRequest;
+import com.monitor.service.MetricDetailSample;
+import com.monitor.service.MetricSample;
+import com.monitor.service.StreamingBatchReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one agent batch body: DTO binding (the previous
+ * {@code List<MetricRequest>} / {@code List<MetricDetailRequest>} path, with
+ * details re-serialized per item) against {@link StreamingBatchReader}.
+ * {@code metrics} is 500 samples for one device, {@code details} is 5 full
+ * snapshots. Besides time per batch, the {@code bytesPerBatch} counter reports
+ * heap allocated per decoded batch, measured on the benchmark thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchIngestParsingBenchmark {
+
+    private static final TypeReference<List<MetricRequest>> METRICS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<MetricDetailRequest>> DETAILS = new TypeReference<>() {
+    };
+
+    @Param({ "metrics", "details" })
+    public String payload;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final StreamingBatchReader reader = new StreamingBatchReader(mapper);
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws Exception {
+        UUID deviceId = UUID.randomUUID();
+        StringBuilder json = new StringBuilder("[");
+        if ("metrics".equals(payload)) {
+            for (int i = 0; i < 500; i++) {
+                json.append(i == 0 ? "" : ",")
+                        .append("{\"deviceId\":\"").append(deviceId).append('"')
+                        .append(",\"cpuUsage\":").append(i % 100).append(".25")
+                        .append(",\"memoryUsage\":61.5,\"diskUsage\":48.75")
+                        .append(",\"networkIn\":").append(1_000_000L * i)
+                        .append(",\"networkOut\":").append(500_000L * i)
+                        .append(",\"timestamp\":").append(1_700_000_000_000L + i * 1000L)
+                        .append('}');
+            }
+        } else {
+            DetailSnapshots snapshots = new DetailSnapshots();
+            for (int i = 0; i < 5; i++) {
+                json.append(i == 0 ? "" : ",")
+                        .append("{\"deviceId\":\"").append(deviceId).append("\",\"details\":")
+                        .append(snapshots.next()).append('}');
+            }
+        }
+        body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Allocation {
+        private static final com.sun.management.ThreadMXBean THREADS =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        public long bytesPerBatch;
+        private long total;
+        private long batches;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            total = 0;
+            batches = 0;
+        }
+
+        long start() {
+            return THREADS.getCurrentThreadAllocatedBytes();
+        }
+
+        void stop(long startedAt) {
+            total += THREADS.getCurrentThreadAllocatedBytes() - startedAt;
+            batches++;
+            bytesPerBatch = total / batches;
+        }
+    }
+
+    @Benchmark
+    public int databind(Allocation allocation) throws Exception {
+        long startedAt = allocation.start();
+        long receivedAt = System.currentTimeMillis();
+        int decoded;
+        if ("metrics".equals(payload)) {
+            List<MetricSample> samples = new ArrayList<>();
+            for (MetricRequest request : mapper.readValue(body, METRICS)) {
+                samples.add(new MetricSample(request.getDeviceId(),
+                        request.getTimestamp() != null ? request.getTimestamp() : receivedAt,
+                        request.getCpuUsage(), request.getMemoryUsage(), request.getDiskUsage(),
+                        request.getNetworkIn(), request.getNetworkOut()));
+            }
+            decoded = samples.size();
+        } else {
+            List<MetricDetailSample> details = new ArrayList<>();
+            for (MetricDetailRequest request : mapper.readValue(body, DETAILS)) {
+                Map<String, Object> tree = request.getDetails();
+                details.add(new MetricDetailSample(request.getDeviceId(), receivedAt,
+                        mapper.writeValueAsString(tree)));
+            }
+            decoded = details.size();
+        }
+        allocation.stop(startedAt);
+        return decoded;
+    }
+
+    @Benchmark
+    public int streaming(Allocation allocation) {
+        long startedAt = allocation.start();
+        long receivedAt = System.currentTimeMillis();
+        int decoded = "metrics".equals(payload)
+                ? reader.readMetrics(body, receivedAt).size()
+                : reader.readMetricDetails(body, receivedAt).size();
+        allocation.stop(startedAt);
+        return decoded;
+    }
+}
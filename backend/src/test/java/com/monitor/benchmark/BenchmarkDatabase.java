@@ -0,0 +1,50 @@
+package com.monitor.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Scratch company and device rows for database-backed benchmarks. Connection
+ * settings come from BENCH_JDBC_URL, BENCH_JDBC_USER and BENCH_JDBC_PASSWORD so
+ * that they survive JMH forking; the schema must already exist (start the
+ * backend once against the same database).
+ */
+final class BenchmarkDatabase {
+
+    final JdbcTemplate jdbcTemplate;
+    final UUID companyId = UUID.randomUUID();
+    final UUID deviceId = UUID.randomUUID();
+
+    BenchmarkDatabase() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                env("BENCH_JDBC_URL", "jdbc:postgresql://localhost:5432/monitor"),
+                env("BENCH_JDBC_USER", "monitor"),
+                env("BENCH_JDBC_PASSWORD", "monitor"),
+                true);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update(
+                "INSERT INTO company (id, email, name, password_hash, api_token, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                companyId, "bench-" + companyId + "@example.com", "bench", "-", companyId.toString(), now);
+        jdbcTemplate.update(
+                "INSERT INTO device (id, hostname, ip_address, os, status, last_seen_at, created_at, company_id) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                deviceId, "bench-host", "127.0.0.1", "linux", "ONLINE", now, now, companyId);
+    }
+
+    void close() {
+        jdbcTemplate.update("DELETE FROM metric WHERE device_id = ?", deviceId);
+        jdbcTemplate.update("DELETE FROM metric_detail WHERE device_id = ?", deviceId);
+        jdbcTemplate.update("DELETE FROM device WHERE id = ?", deviceId);
+        jdbcTemplate.update("DELETE FROM company WHERE id = ?", companyId);
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
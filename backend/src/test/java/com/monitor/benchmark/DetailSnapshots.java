@@ -0,0 +1,91 @@
+package com.monitor.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic detail snapshots shaped like the agent's CollectDetailedMetrics
+ * output: 100 processes, 200 connections and a log tail. Consecutive snapshots
+ * share the same processes and connections with drifting counters, which is
+ * what a real host looks like 30 seconds apart.
+ */
+final class DetailSnapshots {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Random random = new Random(42);
+    private long tick;
+
+    String next() {
+        tick++;
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("collectedAt", Instant.ofEpochSecond(1_700_000_000L + tick * 30).toString());
+        details.put("processes", processes());
+        details.put("connections", connections());
+        details.put("memory", Map.of("total", 17_179_869_184L, "available", 8_000_000_000L + random.nextInt(1 << 20)));
+        details.put("logs", logs());
+        details.put("os", "linux");
+
+        try {
+            return MAPPER.writeValueAsString(details);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Map<String, Object>> processes() {
+        List<Map<String, Object>> processes = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> process = new LinkedHashMap<>();
+            process.put("pid", 1000 + i);
+            process.put("name", "worker-" + (i % 17));
+            process.put("exe", "/usr/lib/monitor/bin/worker-" + (i % 17));
+            process.put("cmdline", "/usr/lib/monitor/bin/worker-" + (i % 17) + " --config /etc/worker.conf --id " + i);
+            process.put("username", i % 3 == 0 ? "root" : "svc");
+            process.put("status", "S");
+            process.put("ppid", 1);
+            process.put("createTime", 1_699_990_000_000L + i * 1000L);
+            process.put("isRunning", true);
+            process.put("threads", 4 + i % 8);
+            process.put("cpuPercent", Math.round(random.nextDouble() * 5000) / 100.0);
+            process.put("memoryRssBytes", 50_000_000L + i * 100_000L + random.nextInt(4096));
+            process.put("memoryVmsBytes", 900_000_000L + i * 1_000_000L);
+            process.put("memoryPercent", Math.round(random.nextDouble() * 1000) / 100.0);
+            process.put("ioReadBytes", (tick * 4096 + i) * 512);
+            process.put("ioWriteBytes", (tick * 2048 + i) * 512);
+            processes.add(process);
+        }
+        return processes;
+    }
+
+    private List<Map<String, Object>> connections() {
+        List<Map<String, Object>> connections = new ArrayList<>(200);
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> connection = new LinkedHashMap<>();
+            connection.put("pid", 1000 + i % 100);
+            connection.put("family", 2);
+            connection.put("type", 1);
+            connection.put("status", i % 5 == 0 ? "LISTEN" : "ESTABLISHED");
+            connection.put("local", Map.of("ip", "10.0.0.5", "port", 8000 + i));
+            connection.put("remote", Map.of("ip", "10.0.1." + (i % 250), "port", 40000 + i));
+            connections.add(connection);
+        }
+        return connections;
+    }
+
+    private List<String> logs() {
+        List<String> logs = new ArrayList<>(50);
+        for (long i = tick; i < tick + 50; i++) {
+            logs.add("2024-01-01T00:00:00Z worker[" + (1000 + i % 100) + "]: processed request " + i * 7
+                    + " in " + (i % 90) + "ms");
+        }
+        return logs;
+    }
+}
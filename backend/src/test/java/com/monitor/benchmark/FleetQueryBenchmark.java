@@ -0,0 +1,108 @@
+package com.monitor.benchmark;
+
+import com.monitor.dto.DeviceSummaryResponse;
+import com.monitor.dto.FleetMetric;
+import com.monitor.dto.FleetStatsResponse;
+import com.monitor.dto.FleetWindow;
+import com.monitor.entity.Company;
+import com.monitor.entity.Device;
+import com.monitor.service.DeviceHeartbeatTracker;
+import com.monitor.service.DeviceStateStore;
+import com.monitor.service.FleetStats;
+import com.monitor.service.MetricSample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fleet queries against the in-memory stores for one company: the bucket walk
+ * behind {@code /devices/stats}, the cutoff-then-compare top 20 behind
+ * {@code /devices/top}, and the full {@code /devices/summary} pass for
+ * reference. {@code ingest} is the cost a sample adds on the write path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetQueryBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int devices;
+
+    private final Random random = new Random(7);
+    private final List<UUID> deviceIds = new ArrayList<>();
+    private FleetStats fleetStats;
+    private DeviceStateStore store;
+    private UUID companyId;
+
+    @Setup
+    public void setUp() {
+        fleetStats = new FleetStats(5);
+        store = new DeviceStateStore(null, new DeviceHeartbeatTracker(null), fleetStats, 0);
+        Company company = Company.builder().id(UUID.randomUUID()).build();
+        companyId = company.getId();
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < devices; i++) {
+            Device device = Device.builder()
+                    .id(UUID.randomUUID())
+                    .hostname("host-" + i)
+                    .company(company)
+                    .build();
+            store.register(device);
+            deviceIds.add(device.getId());
+            MetricSample sample = nextSample(device.getId(), now);
+            store.update(sample, sample);
+            fleetStats.record(companyId, sample);
+        }
+    }
+
+    // Network values are used as rates directly, as NetworkRates would hand them over.
+    private MetricSample nextSample(UUID deviceId, long timestamp) {
+        return new MetricSample(deviceId, timestamp, random.nextDouble() * 100, 20 + random.nextDouble() * 70,
+                random.nextDouble() * 100, random.nextDouble() * 1e10, random.nextDouble() * 1e9);
+    }
+
+    @Benchmark
+    public FleetStatsResponse stats() {
+        return fleetStats.stats(companyId, FleetMetric.CPU, FleetWindow.LATEST);
+    }
+
+    @Benchmark
+    public FleetStatsResponse statsRecent() {
+        return fleetStats.stats(companyId, FleetMetric.NETWORK_IN, FleetWindow.RECENT);
+    }
+
+    @Benchmark
+    public List<DeviceSummaryResponse> top20() {
+        return store.top(companyId, FleetMetric.CPU, 20);
+    }
+
+    @Benchmark
+    public List<DeviceSummaryResponse> summary() {
+        return store.summarize(companyId);
+    }
+
+    @Benchmark
+    public void ingest() {
+        MetricSample sample = nextSample(deviceIds.get(random.nextInt(devices)), System.currentTimeMillis());
+        store.update(sample, sample);
+        fleetStats.record(companyId, sample);
+    }
+}
@@ -0,0 +1,114 @@
+package com.monitor.benchmark;
+
+import com.monitor.service.DatabaseBulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the STOMP inbound channel executor. Each operation delivers
+ * one message from each of {@code sessions} sessions; every tenth handler does
+ * {@code dbLatencyMs} of blocking database work behind {@link DatabaseBulkhead}
+ * sized for a 10-connection pool, the rest are cheap. The score is the time
+ * until every cheap message has been handled. {@code platform} is Spring's
+ * default inbound pool (2 × cores, unbounded queue), where handlers waiting on
+ * the database hold the pool threads and stall unrelated sessions;
+ * {@code virtual} parks them instead. Database throughput is the same in both,
+ * since the bulkhead caps it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InboundExecutorBenchmark {
+
+    @Param({ "platform", "virtual" })
+    public String executor;
+
+    @Param({ "2000" })
+    public int sessions;
+
+    @Param({ "20" })
+    public long dbLatencyMs;
+
+    private Executor inbound;
+    private DatabaseBulkhead bulkhead;
+    private CountDownLatch databaseDone;
+
+    @Setup
+    public void setUp() {
+        if ("virtual".equals(executor)) {
+            inbound = new VirtualThreadTaskExecutor("ws-inbound-");
+        } else {
+            int threads = Runtime.getRuntime().availableProcessors() * 2;
+            inbound = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        }
+        bulkhead = new DatabaseBulkhead(new SimpleMeterRegistry(), 10, 4, 0, 60_000, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (inbound instanceof ExecutorService service) {
+            service.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public long cheapMessagesHandled() throws InterruptedException {
+        int databaseMessages = (sessions + 9) / 10;
+        CountDownLatch cheapDone = new CountDownLatch(sessions - databaseMessages);
+        CountDownLatch database = new CountDownLatch(databaseMessages);
+        databaseDone = database;
+
+        for (int session = 0; session < sessions; session++) {
+            if (session % 10 == 0) {
+                inbound.execute(() -> {
+                    bulkhead.run(this::queryDatabase);
+                    database.countDown();
+                });
+            } else {
+                inbound.execute(cheapDone::countDown);
+            }
+        }
+
+        cheapDone.await();
+        return cheapDone.getCount();
+    }
+
+    // Not part of the score, but the next operation must start from an idle executor.
+    @TearDown(Level.Invocation)
+    public void drainDatabaseMessages() throws InterruptedException {
+        if (databaseDone != null) {
+            databaseDone.await();
+        }
+    }
+
+    private void queryDatabase() {
+        try {
+            Thread.sleep(dbLatencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.monitor.benchmark;
+
+import com.monitor.service.JwtService;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auth cost per request. {@code perRequestParse} is what JwtFilter used to do:
+ * build a parser and verify the token twice (validate, then extract).
+ * {@code cachedVerify} is {@link JwtService#resolveCompanyId} once the token
+ * has been seen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-0123456789";
+    private static final String ISSUER = "monitor-tool";
+
+    private JwtService jwtService;
+    private Key key;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "issuer", ISSUER);
+        ReflectionTestUtils.setField(jwtService, "expirationMinutes", 60L);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxTokens", 10_000L);
+        jwtService.init();
+
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        token = jwtService.generateToken(UUID.randomUUID());
+        jwtService.resolveCompanyId(token);
+    }
+
+    @Benchmark
+    public UUID perRequestParse() {
+        Jwts.parserBuilder().setSigningKey(key).requireIssuer(ISSUER).build().parseClaimsJws(token);
+        return UUID.fromString(Jwts.parserBuilder().setSigningKey(key).requireIssuer(ISSUER).build()
+                .parseClaimsJws(token).getBody().getSubject());
+    }
+
+    @Benchmark
+    public UUID cachedVerify() {
+        return jwtService.resolveCompanyId(token);
+    }
+}
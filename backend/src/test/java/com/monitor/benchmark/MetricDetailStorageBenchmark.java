@@ -0,0 +1,151 @@
+package com.monitor.benchmark;
+
+import com.monitor.entity.MetricDetail;
+import com.monitor.entity.MetricDetailFormat;
+import com.monitor.service.EncodedMetricDetail;
+import com.monitor.service.MetricBulkWriter;
+import com.monitor.service.MetricDetailCodec;
+import com.monitor.service.MetricDetailSample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshots/sec for writing and reading {@code metric_detail} in each storage
+ * format, 20 snapshots per operation (the page size of
+ * {@code GET /devices/{id}/metrics-detail}). The stored bytes per snapshot, as
+ * PostgreSQL reports them after TOAST compression, are printed at the end of
+ * each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(MetricDetailStorageBenchmark.PAGE)
+public class MetricDetailStorageBenchmark {
+
+    static final int PAGE = 20;
+    private static final int SEEDED = 200;
+
+    @Param({ "TEXT", "DEFLATE", "DEFLATE_DELTA" })
+    public String format;
+
+    private BenchmarkDatabase database;
+    private MetricBulkWriter writer;
+    private MetricDetailCodec codec;
+    private List<String> snapshots;
+    private long nextTimestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        writer = new MetricBulkWriter(database.jdbcTemplate, true);
+        codec = switch (format) {
+            case "TEXT" -> new MetricDetailCodec(MetricDetailFormat.TEXT, 1, 64);
+            case "DEFLATE" -> new MetricDetailCodec(MetricDetailFormat.DEFLATE, 1, 64);
+            default -> new MetricDetailCodec(MetricDetailFormat.DEFLATE, 10, 64);
+        };
+
+        DetailSnapshots generator = new DetailSnapshots();
+        snapshots = new ArrayList<>(SEEDED);
+        for (int i = 0; i < SEEDED; i++) {
+            snapshots.add(generator.next());
+        }
+
+        nextTimestamp = System.currentTimeMillis() - SEEDED * 30_000L;
+        for (int from = 0; from < SEEDED; from += PAGE) {
+            writer.writeMetricDetails(encode(snapshots.subList(from, from + PAGE)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Map<String, Object> size = database.jdbcTemplate.queryForMap(
+                "SELECT avg(octet_length(coalesce(details_json, ''))) AS raw_bytes, "
+                        + "avg(coalesce(pg_column_size(details_json), 0) + coalesce(pg_column_size(details_data), 0)) "
+                        + "AS stored_bytes FROM metric_detail WHERE device_id = ?",
+                database.deviceId);
+        System.out.printf("%n%s: %.0f stored bytes/snapshot (TEXT payload %.0f bytes before TOAST)%n",
+                format, ((Number) size.get("stored_bytes")).doubleValue(),
+                ((Number) size.get("raw_bytes")).doubleValue());
+        database.close();
+    }
+
+    @Benchmark
+    public int insert() {
+        return writer.writeMetricDetails(encode(snapshots.subList(0, PAGE)));
+    }
+
+    @Benchmark
+    public int read() {
+        List<MetricDetail> page = database.jdbcTemplate.query(
+                "SELECT id, details_json, details_data, details_format, details_base_at, created_at "
+                        + "FROM metric_detail WHERE device_id = ? ORDER BY created_at DESC LIMIT " + PAGE,
+                (rs, rowNum) -> toDetail(rs.getLong("id"), rs.getString("details_json"),
+                        rs.getBytes("details_data"), rs.getString("details_format"),
+                        rs.getTimestamp("details_base_at"), rs.getTimestamp("created_at")),
+                database.deviceId);
+
+        Map<LocalDateTime, MetricDetail> keyframes = new HashMap<>();
+        for (MetricDetail detail : page) {
+            if (detail.getDetailsFormat() == MetricDetailFormat.DEFLATE) {
+                keyframes.put(detail.getCreatedAt(), detail);
+            }
+        }
+        for (MetricDetail detail : page) {
+            if (detail.getDetailsFormat() == MetricDetailFormat.DEFLATE_DELTA
+                    && !keyframes.containsKey(detail.getDetailsBaseAt())) {
+                keyframes.put(detail.getDetailsBaseAt(), database.jdbcTemplate.queryForObject(
+                        "SELECT id, details_data, created_at FROM metric_detail WHERE device_id = ? AND created_at = ?",
+                        (rs, rowNum) -> toDetail(rs.getLong("id"), null, rs.getBytes("details_data"),
+                                MetricDetailFormat.DEFLATE.name(), null, rs.getTimestamp("created_at")),
+                        database.deviceId, Timestamp.valueOf(detail.getDetailsBaseAt())));
+            }
+        }
+
+        int chars = 0;
+        for (MetricDetail detail : page) {
+            chars += codec.decode(detail, keyframes.get(detail.getDetailsBaseAt())).length();
+        }
+        return chars;
+    }
+
+    private List<EncodedMetricDetail> encode(List<String> jsons) {
+        List<EncodedMetricDetail> encoded = new ArrayList<>(jsons.size());
+        for (String json : jsons) {
+            nextTimestamp += 30_000L;
+            encoded.add(codec.encode(new MetricDetailSample(database.deviceId, nextTimestamp, json)));
+        }
+        return encoded;
+    }
+
+    private static MetricDetail toDetail(long id, String json, byte[] data, String format,
+            Timestamp baseAt, Timestamp createdAt) {
+        return MetricDetail.builder()
+                .id(id)
+                .detailsJson(json)
+                .detailsData(data)
+                .detailsFormat(format != null ? MetricDetailFormat.valueOf(format) : null)
+                .detailsBaseAt(baseAt != null ? baseAt.toLocalDateTime() : null)
+                .createdAt(createdAt.toLocalDateTime())
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.monitor.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monitor.service.MetricFrameCodec;
+import com.monitor.service.MetricSample;
+import com.monitor.service.StreamingBatchReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a 500-sample batch for one device from the JSON array
+ * ({@link StreamingBatchReader}) and from a binary frame
+ * ({@link MetricFrameCodec}). Values follow gopsutil output: full-precision
+ * percentages drifting between samples, byte counters that only grow, and a
+ * 1s interval with occasional jitter. Time is reported per sample; the
+ * {@code wireBytesPerBatch} counter reports the body size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricFrameBenchmark {
+
+    private static final int SAMPLES = 500;
+
+    @Param({ "json", "binary" })
+    public String format;
+
+    private final StreamingBatchReader reader = new StreamingBatchReader(new ObjectMapper());
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        UUID deviceId = UUID.randomUUID();
+        List<MetricSample> samples = new ArrayList<>(SAMPLES);
+        long timestamp = 1_700_000_000_000L;
+        double cpu = 20;
+        double memory = 60;
+        double networkIn = 5_000_000_000d;
+        double networkOut = 1_000_000_000d;
+        for (int i = 0; i < SAMPLES; i++) {
+            timestamp += 1000 + random.nextInt(5);
+            cpu = Math.min(100, Math.max(0, cpu + random.nextGaussian() * 5));
+            memory = Math.min(100, Math.max(0, memory + random.nextGaussian() * 0.1));
+            networkIn += random.nextInt(200_000);
+            networkOut += random.nextInt(50_000);
+            samples.add(new MetricSample(deviceId, timestamp, cpu, memory, 48.75, networkIn, networkOut));
+        }
+
+        if ("binary".equals(format)) {
+            body = MetricFrameCodec.encode(deviceId, samples);
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("[");
+        for (MetricSample sample : samples) {
+            json.append(json.length() == 1 ? "" : ",")
+                    .append("{\"deviceId\":\"").append(deviceId).append('"')
+                    .append(",\"cpuUsage\":").append(sample.cpuUsage())
+                    .append(",\"memoryUsage\":").append(sample.memoryUsage())
+                    .append(",\"diskUsage\":").append(sample.diskUsage())
+                    .append(",\"networkIn\":").append((long) sample.networkIn())
+                    .append(",\"networkOut\":").append((long) sample.networkOut())
+                    .append(",\"timestamp\":").append(sample.timestampMillis())
+                    .append('}');
+        }
+        body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+        public long wireBytesPerBatch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public List<MetricSample> decode(WireSize wireSize) {
+        wireSize.wireBytesPerBatch = body.length;
+        return "binary".equals(format)
+                ? MetricFrameCodec.decode(body)
+                : reader.readMetrics(body, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,89 @@
+package com.monitor.benchmark;
+
+import com.monitor.service.MetricBulkWriter;
+import com.monitor.service.MetricSample;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rows/sec for the three ways a batch can reach the {@code metric} table:
+ * binary COPY, multi-row INSERT, and one INSERT per row, which is what
+ * {@code metricRepository.saveAll} degrades to with IDENTITY keys. Scores are
+ * reported per row because of {@link OperationsPerInvocation}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(MetricWriteBenchmark.ROWS)
+public class MetricWriteBenchmark {
+
+    static final int ROWS = 1000;
+
+    @Param({ "copy", "multiRowInsert", "rowAtATime" })
+    public String path;
+
+    private BenchmarkDatabase database;
+    private MetricBulkWriter copyWriter;
+    private MetricBulkWriter insertWriter;
+    private List<MetricSample> samples;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        copyWriter = new MetricBulkWriter(database.jdbcTemplate, true);
+        insertWriter = new MetricBulkWriter(database.jdbcTemplate, false);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.currentTimeMillis();
+        samples = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            samples.add(new MetricSample(database.deviceId, start + i * 1000L,
+                    random.nextDouble(100), random.nextDouble(100), random.nextDouble(100),
+                    random.nextDouble(1e9), random.nextDouble(1e9)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public int write() {
+        return switch (path) {
+            case "copy" -> copyWriter.writeMetrics(samples);
+            case "multiRowInsert" -> insertWriter.writeMetrics(samples);
+            default -> writeRowAtATime();
+        };
+    }
+
+    private int writeRowAtATime() {
+        int written = 0;
+        for (MetricSample sample : samples) {
+            written += database.jdbcTemplate.update(
+                    "INSERT INTO metric (device_id, cpu_usage, memory_usage, disk_usage, network_in, network_out, "
+                            + "created_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    sample.deviceId(), sample.cpuUsage(), sample.memoryUsage(), sample.diskUsage(),
+                    sample.networkIn(), sample.networkOut(), new Timestamp(sample.timestampMillis()));
+        }
+        return written;
+    }
+}
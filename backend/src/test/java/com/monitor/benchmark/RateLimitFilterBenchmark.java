@@ -0,0 +1,74 @@
+package com.monitor.benchmark;
+
+import com.monitor.config.RateLimitFilter;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-request overhead of {@link RateLimitFilter} with 8 threads. {@code shared}
+ * sends every thread through one client/route counter, the worst case for CAS
+ * contention; {@code perClient} gives each thread its own address, as with
+ * many agents. Limits are set high enough that every request passes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RateLimitFilterBenchmark {
+
+    private static final FilterChain NO_OP = (request, response) -> {
+    };
+
+    @Param({ "shared", "perClient" })
+    public String keys;
+
+    private RateLimitFilter filter;
+    private final AtomicInteger clients = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        filter = new RateLimitFilter(60, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, 100_000);
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp(RateLimitFilterBenchmark benchmark) {
+            request = new MockHttpServletRequest("POST", "/devices/" + UUID.randomUUID() + "/metrics");
+            request.setRemoteAddr("shared".equals(benchmark.keys)
+                    ? "10.0.0.1"
+                    : "10.0." + benchmark.clients.incrementAndGet() + ".1");
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @Benchmark
+    public int filter(Client client) throws Exception {
+        client.request.clearAttributes();
+        filter.doFilter(client.request, client.response, NO_OP);
+        return client.response.getStatus();
+    }
+}
@@ -0,0 +1,102 @@
+package com.monitor.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowCounterTest {
+
+    private static final long WINDOW = 1000;
+    private static final int LIMIT = 10;
+
+    private final SlidingWindowCounter counter = new SlidingWindowCounter();
+
+    @Test
+    void acceptsUpToLimitWithinWindow() {
+        assertThat(acquire(0, LIMIT + 5)).isEqualTo(LIMIT);
+        assertThat(counter.tryAcquire(999, WINDOW, LIMIT)).isFalse();
+    }
+
+    @Test
+    void previousWindowIsWeightedByOverlap() {
+        acquire(0, LIMIT);
+
+        // At the start of the next window the previous one still overlaps entirely.
+        assertThat(counter.tryAcquire(1000, WINDOW, LIMIT)).isFalse();
+        // Halfway through, half of it still counts.
+        assertThat(acquire(1500, LIMIT)).isEqualTo(LIMIT / 2);
+    }
+
+    @Test
+    void rejectedRequestsAreNotCounted() {
+        acquire(0, LIMIT * 3);
+
+        assertThat(acquire(1900, LIMIT)).isEqualTo(LIMIT - 1);
+    }
+
+    @Test
+    void windowAfterAnIdleWindowStartsEmpty() {
+        acquire(0, LIMIT);
+
+        assertThat(acquire(2000, LIMIT + 1)).isEqualTo(LIMIT);
+    }
+
+    @Test
+    void windowIndexWrapsAroundAsConsecutive() {
+        long lastWindow = (1L << 24) - 1;
+        acquire(lastWindow * WINDOW, LIMIT);
+
+        assertThat(counter.tryAcquire((lastWindow + 1) * WINDOW, WINDOW, LIMIT)).isFalse();
+    }
+
+    @Test
+    void concurrentCallersNeverExceedLimit() throws Exception {
+        int threads = 8;
+        int limit = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Callable<Integer> task = () -> {
+                    start.await();
+                    int accepted = 0;
+                    for (int i = 0; i < limit; i++) {
+                        if (counter.tryAcquire(500, WINDOW, limit)) {
+                            accepted++;
+                        }
+                    }
+                    return accepted;
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<Integer> result : results) {
+                accepted += result.get();
+            }
+            assertThat(accepted).isEqualTo(limit);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int acquire(long nowMillis, int attempts) {
+        int accepted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (counter.tryAcquire(nowMillis, WINDOW, LIMIT)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,204 @@
+package com.monitor.service;
+
+import com.monitor.dto.AlertEvent;
+import com.monitor.dto.AlertState;
+import com.monitor.dto.FleetMetric;
+import com.monitor.entity.AlertOperator;
+import com.monitor.entity.AlertRule;
+import com.monitor.entity.AlertRuleType;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertEngineTest {
+
+    private static final UUID COMPANY = UUID.randomUUID();
+    private static final UUID DEVICE = UUID.randomUUID();
+    private static final long AT = 1_700_000_000_000L;
+
+    private final List<AlertEvent> published = new ArrayList<>();
+    private final AlertEngine engine = new AlertEngine(null, new SimpMessagingTemplate((message, timeout) -> true) {
+        @Override
+        public void convertAndSend(String destination, Object payload) {
+            published.add((AlertEvent) payload);
+        }
+    }, null, null);
+
+    @Test
+    void firesOnceConditionHeldForSeconds() {
+        AlertRule rule = cpuAbove(80, 5, 60);
+        engine.replaceRules(COMPANY, List.of(rule));
+
+        cpu(0, 90);
+        cpu(30, 95);
+        assertThat(published).isEmpty();
+
+        cpu(60, 90);
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(AlertState.FIRING);
+        assertThat(published.get(0).getRuleId()).isEqualTo(rule.getId());
+        assertThat(published.get(0).getValue()).isEqualTo(90);
+        assertThat(engine.active(COMPANY)).hasSize(1);
+
+        cpu(120, 90);
+        assertThat(published).hasSize(1);
+    }
+
+    @Test
+    void brokenStreakStartsOver() {
+        engine.replaceRules(COMPANY, List.of(cpuAbove(80, 5, 60)));
+
+        cpu(0, 90);
+        cpu(30, 70);
+        cpu(40, 90);
+        cpu(99, 90);
+        assertThat(published).isEmpty();
+
+        cpu(100, 90);
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(AlertState.FIRING);
+    }
+
+    @Test
+    void zeroForSecondsFiresOnFirstBreach() {
+        engine.replaceRules(COMPANY, List.of(cpuAbove(80, 0, 0)));
+
+        cpu(0, 81);
+
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(AlertState.FIRING);
+    }
+
+    @Test
+    void resolvesOnlyOncePastThresholdMinusHysteresis() {
+        engine.replaceRules(COMPANY, List.of(cpuAbove(80, 5, 60)));
+        cpu(0, 90);
+        cpu(60, 90);
+
+        // Below the threshold but within the hysteresis band: still firing.
+        cpu(100, 78);
+        cpu(200, 76);
+        assertThat(published).hasSize(1);
+
+        cpu(300, 75);
+        cpu(359, 70);
+        assertThat(published).hasSize(1);
+
+        cpu(360, 75);
+        assertThat(published).extracting(AlertEvent::getState)
+                .containsExactly(AlertState.FIRING, AlertState.RESOLVED);
+        assertThat(engine.active(COMPANY)).isEmpty();
+    }
+
+    @Test
+    void belowRuleResolvesAboveThresholdPlusHysteresis() {
+        engine.replaceRules(COMPANY, List.of(rule(FleetMetric.MEMORY, AlertOperator.BELOW, 10, 5, 0)));
+        engine.evaluate(COMPANY, sample(0, 50, 8, 0));
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(AlertState.FIRING);
+
+        engine.evaluate(COMPANY, sample(10, 50, 14.9, 0));
+        assertThat(published).hasSize(1);
+
+        engine.evaluate(COMPANY, sample(20, 50, 15, 0));
+        assertThat(published).extracting(AlertEvent::getState)
+                .containsExactly(AlertState.FIRING, AlertState.RESOLVED);
+    }
+
+    @Test
+    void sampleWithoutRateLeavesNetworkRuleUnchanged() {
+        engine.replaceRules(COMPANY, List.of(rule(FleetMetric.NETWORK_IN, AlertOperator.ABOVE, 1000, 0, 60)));
+
+        engine.evaluate(COMPANY, sample(0, 0, 0, 5000));
+        engine.evaluate(COMPANY, sample(30, 0, 0, Double.NaN));
+        engine.evaluate(COMPANY, sample(60, 0, 0, 5000));
+
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(AlertState.FIRING);
+    }
+
+    @Test
+    void olderSampleIsSkipped() {
+        engine.replaceRules(COMPANY, List.of(cpuAbove(80, 5, 60)));
+        cpu(0, 90);
+        cpu(50, 90);
+
+        // A late sample below the threshold would otherwise break the streak.
+        cpu(10, 10);
+        cpu(60, 90);
+
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(AlertState.FIRING);
+    }
+
+    @Test
+    void removedRuleResolvesWhileFiring() {
+        AlertRule rule = cpuAbove(80, 5, 0);
+        engine.replaceRules(COMPANY, List.of(rule));
+        cpu(0, 90);
+
+        engine.replaceRules(COMPANY, List.of());
+
+        assertThat(published).extracting(AlertEvent::getState)
+                .containsExactly(AlertState.FIRING, AlertState.RESOLVED);
+        assertThat(published.get(1).getRuleId()).isEqualTo(rule.getId());
+        assertThat(engine.active(COMPANY)).isEmpty();
+    }
+
+    @Test
+    void replacedRuleKeepsFiringStateOfSameId() {
+        AlertRule rule = cpuAbove(80, 5, 0);
+        engine.replaceRules(COMPANY, List.of(rule));
+        cpu(0, 90);
+
+        AlertRule edited = cpuAbove(85, 5, 0);
+        edited.setId(rule.getId());
+        AlertRule added = cpuAbove(50, 5, 0);
+        engine.replaceRules(COMPANY, List.of(added, edited));
+        cpu(10, 90);
+
+        // The edited rule is still firing, so only the new one fires.
+        assertThat(published).extracting(AlertEvent::getRuleId).containsExactly(rule.getId(), added.getId());
+        assertThat(engine.active(COMPANY)).hasSize(2);
+
+        cpu(20, 40);
+        assertThat(published).extracting(AlertEvent::getState).containsExactly(
+                AlertState.FIRING, AlertState.FIRING, AlertState.RESOLVED, AlertState.RESOLVED);
+    }
+
+    @Test
+    void deviceRuleAppliesOnlyToItsDevice() {
+        AlertRule rule = cpuAbove(80, 5, 0);
+        rule.setDeviceId(UUID.randomUUID());
+        engine.replaceRules(COMPANY, List.of(rule));
+
+        cpu(0, 90);
+
+        assertThat(published).isEmpty();
+    }
+
+    private void cpu(int second, double value) {
+        engine.evaluate(COMPANY, sample(second, value, 50, 0));
+    }
+
+    private static MetricSample sample(int second, double cpu, double memory, double networkIn) {
+        return new MetricSample(DEVICE, AT + second * 1000L, cpu, memory, 0, networkIn, 0);
+    }
+
+    private static AlertRule cpuAbove(double threshold, double hysteresis, int forSeconds) {
+        return rule(FleetMetric.CPU, AlertOperator.ABOVE, threshold, hysteresis, forSeconds);
+    }
+
+    private static AlertRule rule(FleetMetric metric, AlertOperator operator, double threshold, double hysteresis,
+            int forSeconds) {
+        return AlertRule.builder()
+                .id(UUID.randomUUID())
+                .name(metric + " " + operator + " " + threshold)
+                .type(AlertRuleType.THRESHOLD)
+                .metric(metric)
+                .operator(operator)
+                .threshold(threshold)
+                .hysteresis(hysteresis)
+                .forSeconds(forSeconds)
+                .build();
+    }
+}
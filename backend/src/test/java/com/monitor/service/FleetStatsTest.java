@@ -0,0 +1,111 @@
+package com.monitor.service;
+
+import com.monitor.dto.FleetMetric;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class FleetStatsTest {
+
+    private static final UUID COMPANY = UUID.randomUUID();
+
+    private final FleetStats stats = new FleetStats(5);
+
+    @Test
+    void percentBucketsAreHalfPointsRoundedToNearest() {
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, 0)).isEqualTo(0);
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, 0.24)).isEqualTo(0);
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, 0.25)).isEqualTo(1);
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, 42.74)).isEqualTo(85);
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, 42.75)).isEqualTo(86);
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, 100)).isEqualTo(FleetStats.PERCENT_BUCKETS - 1);
+        assertThat(FleetStats.bucketOf(FleetMetric.CPU, -1)).isEqualTo(0);
+    }
+
+    @Test
+    void percentLowerBoundSitsOnTheRoundingEdge() {
+        for (int bucket = 1; bucket < FleetStats.PERCENT_BUCKETS; bucket++) {
+            double edge = (bucket - 0.5) / 2;
+            assertThat(FleetStats.lowerBound(FleetMetric.CPU, bucket)).isLessThanOrEqualTo(edge);
+            assertThat(FleetStats.bucketOf(FleetMetric.CPU, edge)).isEqualTo(bucket);
+            assertThat(FleetStats.bucketOf(FleetMetric.CPU, edge - 1e-6)).isEqualTo(bucket - 1);
+        }
+        assertThat(FleetStats.lowerBound(FleetMetric.CPU, 0)).isEqualTo(Double.NEGATIVE_INFINITY);
+    }
+
+    @Test
+    void noValueFallsBelowTheLowerBoundOfItsBucket() {
+        // The top-N scan keeps devices at or above lowerBound(cutoff), so none of the top N may be below it.
+        for (double value = 0; value < 1e12; value = value * 1.013 + 0.37) {
+            int bucket = FleetStats.bucketOf(FleetMetric.NETWORK_IN, value);
+            assertThat(value).as("bucket %d", bucket)
+                    .isGreaterThanOrEqualTo(FleetStats.lowerBound(FleetMetric.NETWORK_IN, bucket));
+        }
+        for (int hundredths = 0; hundredths <= 10_000; hundredths++) {
+            double value = hundredths / 100.0;
+            int bucket = FleetStats.bucketOf(FleetMetric.MEMORY, value);
+            assertThat(value).as("bucket %d", bucket)
+                    .isGreaterThanOrEqualTo(FleetStats.lowerBound(FleetMetric.MEMORY, bucket));
+        }
+    }
+
+    @Test
+    void networkBucketsAreFourPercentWide() {
+        int bucket = FleetStats.bucketOf(FleetMetric.NETWORK_IN, 1_000_000);
+
+        double lower = FleetStats.lowerBound(FleetMetric.NETWORK_IN, bucket);
+        double upper = FleetStats.lowerBound(FleetMetric.NETWORK_IN, bucket + 1);
+        assertThat(upper / lower).isCloseTo(1.04, within(1e-3));
+        assertThat(FleetStats.bucketOf(FleetMetric.NETWORK_IN, upper * (1 + 1e-6))).isEqualTo(bucket + 1);
+        assertThat(FleetStats.bucketOf(FleetMetric.NETWORK_IN, Double.MAX_VALUE))
+                .isEqualTo(FleetStats.COUNTER_BUCKETS - 1);
+    }
+
+    @Test
+    void topCutoffIsLowestBucketHoldingTheLimit() {
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 3)).isEqualTo(-1);
+
+        latest(null, 10);
+        latest(null, 20);
+        latest(null, 30);
+        latest(null, 30);
+        latest(null, 90);
+
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 1)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 90));
+        // The second and third highest share a bucket.
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 2)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 30));
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 3)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 30));
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 5)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 10));
+        // Fewer devices than the limit: everyone qualifies.
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 10)).isEqualTo(0);
+    }
+
+    @Test
+    void replacedValueMovesBetweenBuckets() {
+        double[] first = latest(null, 95);
+        latest(null, 50);
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 1)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 95));
+
+        latest(first, 5);
+
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 1)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 50));
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 2)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 5));
+    }
+
+    @Test
+    void valueWithoutRateIsLeftOutOfNetworkCutoff() {
+        stats.replaceLatest(COMPANY, null, new double[] { 10, 10, 10, Double.NaN, Double.NaN });
+
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.NETWORK_IN, 1)).isEqualTo(-1);
+        assertThat(stats.topCutoff(COMPANY, FleetMetric.CPU, 1)).isEqualTo(FleetStats.bucketOf(FleetMetric.CPU, 10));
+    }
+
+    private double[] latest(double[] previous, double cpu) {
+        double[] current = { cpu, 50, 50, 1000, 1000 };
+        stats.replaceLatest(COMPANY, previous, current);
+        return current;
+    }
+}
@@ -0,0 +1,84 @@
+package com.monitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LivenessTimerWheelTest {
+
+    private static final long TICK = 100;
+    private static final long START = 1_000_000;
+
+    private final LivenessTimerWheel wheel = new LivenessTimerWheel(TICK, 8, START);
+
+    @Test
+    void firesOnceOnTheFirstTickAfterDeadline() {
+        UUID device = UUID.randomUUID();
+        wheel.schedule(device, START + 250);
+
+        assertThat(wheel.advance(START + 200)).isEmpty();
+        assertThat(wheel.advance(START + 299)).isEmpty();
+        assertThat(wheel.advance(START + 300)).containsExactly(device);
+        assertThat(wheel.advance(START + 400)).isEmpty();
+    }
+
+    @Test
+    void deadlineOnTickBoundaryFiresOnThatTick() {
+        UUID device = UUID.randomUUID();
+        wheel.schedule(device, START + 300);
+
+        assertThat(wheel.advance(START + 299)).isEmpty();
+        assertThat(wheel.advance(START + 300)).containsExactly(device);
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        UUID device = UUID.randomUUID();
+        wheel.advance(START + 500);
+        wheel.schedule(device, START);
+
+        assertThat(wheel.advance(START + 599)).isEmpty();
+        assertThat(wheel.advance(START + 600)).containsExactly(device);
+    }
+
+    @Test
+    void deadlineBeyondOneRotationWaitsForItsRound() {
+        UUID far = UUID.randomUUID();
+        UUID near = UUID.randomUUID();
+        // Eight slots of 100 ms: both deadlines hash to the same slot, one rotation apart.
+        wheel.schedule(far, START + 1100);
+        wheel.schedule(near, START + 300);
+
+        assertThat(wheel.advance(START + 300)).containsExactly(near);
+        for (long now = START + 400; now < START + 1100; now += TICK) {
+            assertThat(wheel.advance(now)).isEmpty();
+        }
+        assertThat(wheel.advance(START + 1100)).containsExactly(far);
+    }
+
+    @Test
+    void advanceAfterLongPauseVisitsEverySlotOnce() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID later = UUID.randomUUID();
+        wheel.schedule(first, START + 100);
+        wheel.schedule(second, START + 450);
+        wheel.schedule(later, START + 100_000);
+
+        assertThat(wheel.advance(START + 50_000)).containsExactlyInAnyOrder(first, second);
+        assertThat(wheel.advance(START + 99_900)).isEmpty();
+        assertThat(wheel.advance(START + 100_000)).containsExactly(later);
+    }
+
+    @Test
+    void reschedulingTheSameDeviceKeepsBothDeadlines() {
+        UUID device = UUID.randomUUID();
+        wheel.schedule(device, START + 100);
+        wheel.schedule(device, START + 200);
+
+        assertThat(wheel.advance(START + 100)).containsExactly(device);
+        assertThat(wheel.advance(START + 200)).containsExactly(device);
+    }
+}
@@ -0,0 +1,164 @@
+package com.monitor.service;
+
+import com.monitor.entity.MetricDetailFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricBulkWriterTest {
+
+    private static final byte[] SIGNATURE = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+    private static final LocalDateTime POSTGRES_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final UUID DEVICE = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    private static final long AT = 1_700_000_000_123L;
+
+    private final MetricBulkWriter writer = new MetricBulkWriter(null, true);
+
+    @Test
+    void encodesMetricRows() throws Exception {
+        ByteArrayOutputStream buffer = writer.encodeMetrics(List.of(
+                new MetricSample(DEVICE, AT, 12.5, 40.0, 75.25, 1024, 2048, true),
+                new MetricSample(DEVICE, AT + 1000, 13.5, 41.0, 76.25, 4096, 8192, false)));
+
+        DataInputStream in = open(buffer);
+        for (int row = 0; row < 2; row++) {
+            assertThat(in.readShort()).isEqualTo((short) 8);
+            assertUuid(in, DEVICE);
+            assertDouble(in, 12.5 + row);
+            assertDouble(in, 40.0 + row);
+            assertDouble(in, 75.25 + row);
+            assertDouble(in, row == 0 ? 1024 : 4096);
+            assertDouble(in, row == 0 ? 2048 : 8192);
+            assertTimestamp(in, AT + row * 1000L);
+            assertThat(in.readInt()).isEqualTo(1);
+            assertThat(in.readByte()).isEqualTo((byte) (row == 0 ? 1 : 0));
+        }
+        assertTrailer(in);
+    }
+
+    @Test
+    void encodesEmptyBatchAsHeaderAndTrailer() throws Exception {
+        ByteArrayOutputStream buffer = writer.encodeMetrics(List.of());
+
+        assertThat(buffer.size()).isEqualTo(SIGNATURE.length + 8 + 2);
+        assertTrailer(open(buffer));
+    }
+
+    @Test
+    void encodesMetricDetailRows() throws Exception {
+        byte[] data = { 1, 2, 3, (byte) 0xFF };
+        ByteArrayOutputStream buffer = writer.encodeMetricDetails(List.of(
+                new EncodedMetricDetail(DEVICE, AT, MetricDetailFormat.TEXT, "{\"é\":1}", null, 0L),
+                new EncodedMetricDetail(DEVICE, AT + 1000, MetricDetailFormat.DEFLATE_DELTA, null, data, AT)));
+
+        DataInputStream in = open(buffer);
+        assertThat(in.readShort()).isEqualTo((short) 6);
+        assertUuid(in, DEVICE);
+        assertBytes(in, "{\"é\":1}".getBytes(StandardCharsets.UTF_8));
+        assertThat(in.readInt()).isEqualTo(-1);
+        assertBytes(in, "TEXT".getBytes(StandardCharsets.UTF_8));
+        assertThat(in.readInt()).as("base_at of a non-delta row").isEqualTo(-1);
+        assertTimestamp(in, AT);
+
+        assertThat(in.readShort()).isEqualTo((short) 6);
+        assertUuid(in, DEVICE);
+        assertThat(in.readInt()).isEqualTo(-1);
+        assertBytes(in, data);
+        assertBytes(in, "DEFLATE_DELTA".getBytes(StandardCharsets.UTF_8));
+        assertTimestamp(in, AT);
+        assertTimestamp(in, AT + 1000);
+        assertTrailer(in);
+    }
+
+    @Test
+    void encodesProcessRowsWithMissingValuesAsNull() throws Exception {
+        ByteArrayOutputStream buffer = writer.encodeProcessMetrics(List.of(
+                new ProcessSample(DEVICE, AT, "java", 42, 3.5, 1L << 33, 100, 200),
+                new ProcessSample(DEVICE, AT, "sshd", 7, Double.NaN, -1, -1, -1)),
+                new int[] { 11, 12 });
+
+        DataInputStream in = open(buffer);
+        assertThat(in.readShort()).isEqualTo((short) 8);
+        assertUuid(in, DEVICE);
+        assertInt(in, 11);
+        assertInt(in, 42);
+        assertDouble(in, 3.5);
+        assertLong(in, 1L << 33);
+        assertLong(in, 100);
+        assertLong(in, 200);
+        assertTimestamp(in, AT);
+
+        assertThat(in.readShort()).isEqualTo((short) 8);
+        assertUuid(in, DEVICE);
+        assertInt(in, 12);
+        assertInt(in, 7);
+        assertThat(in.readInt()).as("cpu_percent").isEqualTo(-1);
+        assertThat(in.readInt()).as("rss_bytes").isEqualTo(-1);
+        assertThat(in.readInt()).as("io_read_bytes").isEqualTo(-1);
+        assertThat(in.readInt()).as("io_write_bytes").isEqualTo(-1);
+        assertTimestamp(in, AT);
+        assertTrailer(in);
+    }
+
+    private static DataInputStream open(ByteArrayOutputStream buffer) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        assertThat(signature).isEqualTo(SIGNATURE);
+        assertThat(in.readInt()).as("flags").isZero();
+        assertThat(in.readInt()).as("header extension length").isZero();
+        return in;
+    }
+
+    private static void assertTrailer(DataInputStream in) throws IOException {
+        assertThat(in.readShort()).isEqualTo((short) -1);
+        assertThat(in.available()).isZero();
+    }
+
+    private static void assertUuid(DataInputStream in, UUID expected) throws IOException {
+        assertThat(in.readInt()).isEqualTo(16);
+        assertThat(new UUID(in.readLong(), in.readLong())).isEqualTo(expected);
+    }
+
+    private static void assertDouble(DataInputStream in, double expected) throws IOException {
+        assertThat(in.readInt()).isEqualTo(8);
+        assertThat(in.readDouble()).isEqualTo(expected);
+    }
+
+    private static void assertInt(DataInputStream in, int expected) throws IOException {
+        assertThat(in.readInt()).isEqualTo(4);
+        assertThat(in.readInt()).isEqualTo(expected);
+    }
+
+    private static void assertLong(DataInputStream in, long expected) throws IOException {
+        assertThat(in.readInt()).isEqualTo(8);
+        assertThat(in.readLong()).isEqualTo(expected);
+    }
+
+    private static void assertBytes(DataInputStream in, byte[] expected) throws IOException {
+        assertThat(in.readInt()).isEqualTo(expected.length);
+        byte[] actual = new byte[expected.length];
+        in.readFully(actual);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    // timestamp without time zone is the server-local wall-clock time in microseconds since 2000-01-01.
+    private static void assertTimestamp(DataInputStream in, long epochMillis) throws IOException {
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        assertThat(in.readInt()).isEqualTo(8);
+        assertThat(in.readLong()).isEqualTo(Duration.between(POSTGRES_EPOCH, local).toNanos() / 1000L);
+    }
+}
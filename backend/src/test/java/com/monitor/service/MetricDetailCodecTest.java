@@ -0,0 +1,177 @@
+package com.monitor.service;
+
+import com.monitor.entity.MetricDetail;
+import com.monitor.entity.MetricDetailFormat;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetricDetailCodecTest {
+
+    private static final UUID DEVICE = UUID.randomUUID();
+    private static final long AT = 1_700_000_000_000L;
+
+    @Test
+    void textFormatStoresJsonAsIs() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.TEXT, 10, 1);
+
+        EncodedMetricDetail encoded = codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(1)));
+
+        assertThat(encoded.format()).isEqualTo(MetricDetailFormat.TEXT);
+        assertThat(encoded.detailsJson()).isEqualTo(snapshot(1));
+        assertThat(encoded.detailsData()).isNull();
+        assertThat(codec.decode(toRow(encoded), null)).isEqualTo(snapshot(1));
+    }
+
+    @Test
+    void keyframesAndDeltasRoundTrip() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 3, 1);
+
+        List<EncodedMetricDetail> encoded = List.of(
+                codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(0))),
+                codec.encode(new MetricDetailSample(DEVICE, AT + 30_000, snapshot(1))),
+                codec.encode(new MetricDetailSample(DEVICE, AT + 60_000, snapshot(2))),
+                codec.encode(new MetricDetailSample(DEVICE, AT + 90_000, snapshot(3))),
+                codec.encode(new MetricDetailSample(DEVICE, AT + 120_000, snapshot(4))));
+
+        assertThat(encoded).extracting(EncodedMetricDetail::format).containsExactly(
+                MetricDetailFormat.DEFLATE, MetricDetailFormat.DEFLATE_DELTA, MetricDetailFormat.DEFLATE_DELTA,
+                MetricDetailFormat.DEFLATE, MetricDetailFormat.DEFLATE_DELTA);
+        assertThat(encoded.get(1).baseTimestampMillis()).isEqualTo(AT);
+        assertThat(encoded.get(2).baseTimestampMillis()).isEqualTo(AT);
+        assertThat(encoded.get(4).baseTimestampMillis()).isEqualTo(AT + 90_000);
+
+        MetricDetail firstKeyframe = toRow(encoded.get(0));
+        MetricDetail secondKeyframe = toRow(encoded.get(3));
+        assertThat(codec.decode(firstKeyframe, null)).isEqualTo(snapshot(0));
+        assertThat(codec.decode(toRow(encoded.get(1)), firstKeyframe)).isEqualTo(snapshot(1));
+        assertThat(codec.decode(toRow(encoded.get(2)), firstKeyframe)).isEqualTo(snapshot(2));
+        assertThat(codec.decode(secondKeyframe, null)).isEqualTo(snapshot(3));
+        assertThat(codec.decode(toRow(encoded.get(4)), secondKeyframe)).isEqualTo(snapshot(4));
+    }
+
+    @Test
+    void deltaIsSmallerThanStandaloneSnapshot() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 10, 1);
+        codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(0)));
+
+        EncodedMetricDetail delta = codec.encode(new MetricDetailSample(DEVICE, AT + 30_000, snapshot(1)));
+        byte[] standalone = MetricDetailCodec.deflate(snapshot(1).getBytes(StandardCharsets.UTF_8), null);
+
+        assertThat(delta.format()).isEqualTo(MetricDetailFormat.DEFLATE_DELTA);
+        assertThat(delta.detailsData().length).isLessThan(standalone.length / 2);
+    }
+
+    @Test
+    void keyframeIntervalOfOneWritesOnlyKeyframes() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 1, 1);
+
+        for (int i = 0; i < 3; i++) {
+            EncodedMetricDetail encoded = codec.encode(new MetricDetailSample(DEVICE, AT + i, snapshot(i)));
+            assertThat(encoded.format()).isEqualTo(MetricDetailFormat.DEFLATE);
+            assertThat(codec.decode(toRow(encoded), null)).isEqualTo(snapshot(i));
+        }
+    }
+
+    @Test
+    void snapshotNotNewerThanKeyframeIsStoredAsText() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 10, 1);
+        codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(0)));
+
+        EncodedMetricDetail same = codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(1)));
+        EncodedMetricDetail older = codec.encode(new MetricDetailSample(DEVICE, AT - 30_000, snapshot(2)));
+        EncodedMetricDetail newer = codec.encode(new MetricDetailSample(DEVICE, AT + 30_000, snapshot(3)));
+
+        assertThat(same.format()).isEqualTo(MetricDetailFormat.TEXT);
+        assertThat(same.detailsJson()).isEqualTo(snapshot(1));
+        assertThat(older.format()).isEqualTo(MetricDetailFormat.TEXT);
+        assertThat(newer.format()).isEqualTo(MetricDetailFormat.DEFLATE_DELTA);
+        assertThat(newer.baseTimestampMillis()).isEqualTo(AT);
+    }
+
+    @Test
+    void forgottenDeviceStartsOverWithKeyframe() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 10, 1);
+        UUID other = UUID.randomUUID();
+        codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(0)));
+        codec.encode(new MetricDetailSample(other, AT, snapshot(0)));
+
+        codec.forget(List.of(DEVICE));
+
+        assertThat(codec.encode(new MetricDetailSample(DEVICE, AT + 30_000, snapshot(1))).format())
+                .isEqualTo(MetricDetailFormat.DEFLATE);
+        assertThat(codec.encode(new MetricDetailSample(other, AT + 30_000, snapshot(1))).format())
+                .isEqualTo(MetricDetailFormat.DEFLATE_DELTA);
+    }
+
+    @Test
+    void rowWithoutFormatIsText() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 10, 1);
+        MetricDetail legacy = MetricDetail.builder().detailsJson(snapshot(0)).build();
+
+        assertThat(codec.decode(legacy, null)).isEqualTo(snapshot(0));
+    }
+
+    @Test
+    void deltaWithoutKeyframeIsRejected() {
+        MetricDetailCodec codec = new MetricDetailCodec(MetricDetailFormat.DEFLATE, 10, 1);
+        codec.encode(new MetricDetailSample(DEVICE, AT, snapshot(0)));
+        EncodedMetricDetail delta = codec.encode(new MetricDetailSample(DEVICE, AT + 30_000, snapshot(1)));
+
+        assertThatThrownBy(() -> codec.decode(toRow(delta), null))
+                .hasMessageStartingWith("Missing keyframe");
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        byte[] data = MetricDetailCodec.deflate(snapshot(0).getBytes(StandardCharsets.UTF_8), null);
+
+        assertThatThrownBy(() -> MetricDetailCodec.inflate(Arrays.copyOf(data, data.length / 2), null))
+                .hasMessage("Truncated metric detail payload");
+    }
+
+    @Test
+    void deltaInflatedWithoutDictionaryIsRejected() {
+        byte[] dictionary = snapshot(0).getBytes(StandardCharsets.UTF_8);
+        byte[] delta = MetricDetailCodec.deflate(snapshot(1).getBytes(StandardCharsets.UTF_8), dictionary);
+
+        assertThatThrownBy(() -> MetricDetailCodec.inflate(delta, null))
+                .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void corruptPayloadIsRejected() {
+        byte[] garbage = new byte[64];
+        Arrays.fill(garbage, (byte) 0xFF);
+
+        assertThatThrownBy(() -> MetricDetailCodec.inflate(garbage, null))
+                .hasMessage("Corrupt metric detail payload");
+    }
+
+    private static MetricDetail toRow(EncodedMetricDetail encoded) {
+        return MetricDetail.builder()
+                .detailsJson(encoded.detailsJson())
+                .detailsData(encoded.detailsData())
+                .detailsFormat(encoded.format())
+                .build();
+    }
+
+    // Processes shared between snapshots with a drifting cpu value, like a real host 30 s apart.
+    private static String snapshot(int tick) {
+        StringBuilder json = new StringBuilder("{\"tick\":").append(tick).append(",\"processes\":[");
+        for (int pid = 1; pid <= 50; pid++) {
+            json.append(pid == 1 ? "" : ",")
+                    .append("{\"pid\":").append(pid)
+                    .append(",\"name\":\"worker-").append(pid)
+                    .append("\",\"cmdline\":\"/usr/bin/worker --id ").append(pid).append(" --verbose\"")
+                    .append(",\"cpu\":").append((pid * 7 + tick * 3) % 100).append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
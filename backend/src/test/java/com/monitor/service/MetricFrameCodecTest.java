@@ -0,0 +1,177 @@
+package com.monitor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetricFrameCodecTest {
+
+    private static final UUID DEVICE = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    private static final long AT = 1_700_000_000_000L;
+
+    @Test
+    void roundTripsRealisticSeries() {
+        Random random = new Random(42);
+        List<MetricSample> samples = new ArrayList<>();
+        double networkIn = 1_000_000;
+        for (int i = 0; i < 200; i++) {
+            networkIn += random.nextInt(50_000);
+            samples.add(new MetricSample(DEVICE, AT + i * 5000L, random.nextDouble() * 100,
+                    Math.round(random.nextDouble() * 1000) / 10.0, 42.5, networkIn, networkIn / 3));
+        }
+
+        byte[] frame = MetricFrameCodec.encode(DEVICE, samples);
+
+        assertThat(MetricFrameCodec.decode(frame)).isEqualTo(samples);
+        assertThat(frame.length).isLessThan(samples.size() * 5 * Double.BYTES);
+    }
+
+    @Test
+    void roundTripsEmptyBatch() {
+        byte[] frame = MetricFrameCodec.encode(DEVICE, List.of());
+
+        assertThat(frame).hasSize(1 + 1 + 16 + 1);
+        assertThat(MetricFrameCodec.decode(frame)).isEmpty();
+    }
+
+    @Test
+    void roundTripsRepeatsAndOutOfOrderTimestamps() {
+        List<MetricSample> samples = List.of(
+                sample(AT, 10.0),
+                sample(AT, 10.0),
+                sample(AT - 60_000, 10.0),
+                sample(0, 0.0),
+                sample(Long.MAX_VALUE, 100.0));
+
+        assertThat(MetricFrameCodec.decode(MetricFrameCodec.encode(DEVICE, samples))).isEqualTo(samples);
+    }
+
+    @Test
+    void roundTripsXorSpanningAllSixtyFourBits() {
+        // Against 1 + ulp, -0.0 flips the sign bit and the lowest mantissa bit: no leading or trailing zeros.
+        double onePlusUlp = Math.nextUp(1.0);
+        List<MetricSample> samples = List.of(
+                sample(AT, onePlusUlp),
+                sample(AT + 1, -0.0),
+                sample(AT + 2, onePlusUlp),
+                sample(AT + 3, -0.0));
+
+        List<MetricSample> decoded = MetricFrameCodec.decode(MetricFrameCodec.encode(DEVICE, samples));
+
+        assertThat(decoded).isEqualTo(samples);
+        assertThat(Double.doubleToRawLongBits(decoded.get(1).cpuUsage()))
+                .isEqualTo(Double.doubleToRawLongBits(-0.0));
+    }
+
+    @Test
+    void roundTripsXorWithMoreLeadingZerosThanTheFieldHolds() {
+        // Adjacent doubles differ in the last bit only: 63 leading zeros, capped to 31 on the wire.
+        List<MetricSample> samples = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            samples.add(sample(AT + i, i % 2 == 0 ? 50.0 : Math.nextUp(50.0)));
+        }
+
+        assertThat(MetricFrameCodec.decode(MetricFrameCodec.encode(DEVICE, samples))).isEqualTo(samples);
+    }
+
+    @Test
+    void everyTruncationIsRejected() {
+        byte[] frame = MetricFrameCodec.encode(DEVICE, List.of(sample(AT, 12.5), sample(AT + 5000, 13.25)));
+
+        for (int length = 0; length < frame.length; length++) {
+            byte[] truncated = Arrays.copyOf(frame, length);
+            assertThatThrownBy(() -> MetricFrameCodec.decode(truncated))
+                    .as("frame cut at %d of %d bytes", length, frame.length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsWrongMagicAndVersion() {
+        byte[] frame = MetricFrameCodec.encode(DEVICE, List.of(sample(AT, 1.0)));
+
+        byte[] wrongMagic = frame.clone();
+        wrongMagic[0] = '[';
+        assertThatThrownBy(() -> MetricFrameCodec.decode(wrongMagic)).hasMessage("Not a metric frame");
+
+        byte[] wrongVersion = frame.clone();
+        wrongVersion[1] = 2;
+        assertThatThrownBy(() -> MetricFrameCodec.decode(wrongVersion))
+                .hasMessage("Unsupported metric frame version 2");
+    }
+
+    @Test
+    void rejectsSampleCountLargerThanFrame() {
+        byte[] frame = header(100, 0);
+
+        assertThatThrownBy(() -> MetricFrameCodec.decode(frame))
+                .hasMessage("Invalid metric frame sample count 100");
+    }
+
+    @Test
+    void rejectsOverlongVarint() {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.writeBytes(header());
+        for (int i = 0; i < 11; i++) {
+            frame.write(0x80);
+        }
+
+        assertThatThrownBy(() -> MetricFrameCodec.decode(frame.toByteArray()))
+                .hasMessage("Malformed varint in metric frame");
+    }
+
+    @Test
+    void rejectsReusedWindowBeforeAnyWasSet() {
+        // count 1, timestamp 0, then control bits '10'.
+        byte[] frame = header(1, 0, 0b1000_0000);
+
+        assertThatThrownBy(() -> MetricFrameCodec.decode(frame)).hasMessage("Malformed metric frame");
+    }
+
+    @Test
+    void rejectsWindowWiderThanSixtyFourBits() {
+        // count 1, timestamp 0, then '11', 31 leading zeros and a 64-bit length.
+        byte[] frame = header(1, 0, 0xFF, 0xF8);
+
+        assertThatThrownBy(() -> MetricFrameCodec.decode(frame)).hasMessage("Malformed metric frame");
+    }
+
+    @Test
+    void rangeChecksDecodedValues() {
+        byte[] cpu = MetricFrameCodec.encode(DEVICE, List.of(sample(AT, 100.5)));
+        byte[] nan = MetricFrameCodec.encode(DEVICE, List.of(sample(AT, 1.0), sample(AT + 1, Double.NaN)));
+        byte[] network = MetricFrameCodec.encode(DEVICE,
+                List.of(new MetricSample(DEVICE, AT, 1.0, 1.0, 1.0, -1.0, 0.0)));
+
+        assertThatThrownBy(() -> MetricFrameCodec.decode(cpu))
+                .hasMessage("[0].cpuUsage: must be between 0 and 100");
+        assertThatThrownBy(() -> MetricFrameCodec.decode(nan))
+                .hasMessage("[1].cpuUsage: must be between 0 and 100");
+        assertThatThrownBy(() -> MetricFrameCodec.decode(network))
+                .hasMessage("[0].networkIn: must be greater than or equal to 0");
+    }
+
+    private static MetricSample sample(long timestampMillis, double value) {
+        return new MetricSample(DEVICE, timestampMillis, value, value, value, value, value);
+    }
+
+    // Magic, version and device id, followed by the given raw bytes.
+    private static byte[] header(int... bytes) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write('M');
+        frame.write(MetricFrameCodec.VERSION);
+        frame.write(MetricFrameCodec.encode(DEVICE, List.of()), 2, 16);
+        for (int b : bytes) {
+            frame.write(b);
+        }
+        return frame.toByteArray();
+    }
+}
@@ -26,6 +26,7 @@ import { formatDateTime, formatNumber } from "@/lib/format";
 import type {
   Device,
   DeviceStatus,
+  LiveMetric,
   Metric,
   MetricDetail,
   DetailedMetricsPayload,
@@ -71,7 +72,7 @@ export default function DeviceDetailPage() {
   const params = useParams<{ deviceId?: string }>();
   const deviceId = params?.deviceId;
   const [device, setDevice] = useState<Device | null>(null);
-  const [metrics, setMetrics] = useState<Metric[]>([]);
+  const [metrics, setMetrics] = useState<LiveMetric[]>([]);
   const [detailedMetrics, setDetailedMetrics] = useState<MetricDetail[]>([]);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
@@ -162,8 +163,12 @@ export default function DeviceDetailPage() {
             return;
           }
           try {
-            const parsed = JSON.parse(message.body) as Metric;
-            setMetrics((prev) => [parsed, ...prev].slice(0, MAX_METRICS));
+            const parsed = JSON.parse(message.body) as LiveMetric;
+            setMetrics((prev) =>
+              prev.some((metric) => metric.createdAt === parsed.createdAt)
+                ? prev
+                : [parsed, ...prev].slice(0, MAX_METRICS),
+            );
             if (parsed.createdAt) {
               setDevice((current) =>
                 current
@@ -518,8 +523,8 @@ export default function DeviceDetailPage() {
                     </TableRow>
                   </TableHeader>
                   <TableBody>
-                    {metrics.slice(0, 10).map((metric) => (
-                      <TableRow key={metric.id}>
+                    {metrics.slice(0, 10).map((metric, index) => (
+                      <TableRow key={metric.createdAt ?? index}>
                         <TableCell>
                           {formatDateTime(metric.createdAt)}
                         </TableCell>
@@ -20,6 +20,9 @@ export type Metric = {
   device?: Device;
 };
 
+// Published before its row is stored, so it has no id; keyed by createdAt.
+export type LiveMetric = Omit<Metric, "id" | "device">;
+
 export type CompanyProfile = {
   id: string;
   name: string;
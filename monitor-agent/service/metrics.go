@@ -69,6 +69,7 @@ func CollectMetrics() map[string]interface{} {
 		"diskUsage":   diskUsage,
 		"networkIn":   netIn,
 		"networkOut":  netOut,
+		"timestamp":   time.Now().UnixMilli(),
 	}
 }
 
@@ -83,6 +84,7 @@ func SendMetrics(cfg *config.Config) error {
 		"diskUsage":   metrics["diskUsage"],
 		"networkIn":   metrics["networkIn"],
 		"networkOut":  metrics["networkOut"],
+		"timestamp":   metrics["timestamp"],
 	}
 
 	resp, err := postJSON(cfg.ServerURL+"/agent/metrics", payload)